@@ -0,0 +1,48 @@
+package in.codehub.benchmarks;
+
+import in.codehub.document.Document;
+import in.codehub.pdfreader.PdfReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The pdfs checked in under resources/corpus: synthetic single column papers of 1, 4 and 12 pages with a
+ * title, authors, abstract and keywords on the first page.
+ */
+public final class Corpus
+{
+    public static final String PAPER_1 = "paper-1.pdf";
+    public static final String PAPER_4 = "paper-4.pdf";
+    public static final String PAPER_12 = "paper-12.pdf";
+
+    private Corpus()
+    {
+    }
+
+    public static byte[] load(String name) throws IOException
+    {
+        InputStream in = Corpus.class.getResourceAsStream("/corpus/" + name);
+        if (in == null)
+            throw new IOException("No corpus file " + name);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    public static Document read(String name) throws IOException
+    {
+        return new PdfReader(1).read(new ByteArrayInputStream(load(name)));
+    }
+}
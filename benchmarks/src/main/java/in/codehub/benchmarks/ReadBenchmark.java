@@ -0,0 +1,50 @@
+package in.codehub.benchmarks;
+
+import in.codehub.document.Document;
+import in.codehub.pdfreader.PdfReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end PdfReader.read over the corpus, from bytes in memory to a Document. Pages read are counted as a
+ * secondary throughput, divide the allocation per operation by the page count of the file for bytes per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark
+{
+    @Param({Corpus.PAPER_1, Corpus.PAPER_4, Corpus.PAPER_12})
+    public String file;
+
+    private byte[] pdf;
+    private PdfReader reader;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Pages
+    {
+        public long pages;
+    }
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        pdf = Corpus.load(file);
+        reader = new PdfReader(1);
+    }
+
+    @Benchmark
+    public Document read(Pages pages) throws IOException
+    {
+        Document document = reader.read(new ByteArrayInputStream(pdf));
+        pages.pages += document.getPages().size();
+        return document;
+    }
+}
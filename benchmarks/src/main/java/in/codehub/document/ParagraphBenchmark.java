@@ -0,0 +1,46 @@
+package in.codehub.document;
+
+import in.codehub.benchmarks.Corpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paragraph.text() and fontSize() over every paragraph of the 12 page paper, one operation is the whole paper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParagraphBenchmark
+{
+    private List<Paragraph> paragraphs;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        paragraphs = new ArrayList<Paragraph>();
+        for (Page page : Corpus.read(Corpus.PAPER_12).getPages())
+            paragraphs.addAll(page.getParagraphs());
+    }
+
+    @Benchmark
+    public void text(Blackhole blackhole)
+    {
+        for (Paragraph paragraph : paragraphs)
+            blackhole.consume(paragraph.text());
+    }
+
+    @Benchmark
+    public void fontSize(Blackhole blackhole)
+    {
+        for (Paragraph paragraph : paragraphs)
+            blackhole.consume(paragraph.fontSize());
+    }
+}
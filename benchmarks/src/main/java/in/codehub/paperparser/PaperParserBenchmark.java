@@ -0,0 +1,45 @@
+package in.codehub.paperparser;
+
+import in.codehub.benchmarks.Corpus;
+import in.codehub.document.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PaperParser.parse on documents read once up front, so PDFBox is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaperParserBenchmark
+{
+    @Param({Corpus.PAPER_1, Corpus.PAPER_12})
+    public String file;
+
+    private Document document;
+    private PaperParser paperParser;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        document = Corpus.read(file);
+        paperParser = PaperParser.getInstance();
+    }
+
+    @Benchmark
+    public Paper parse()
+    {
+        return paperParser.parse(document);
+    }
+
+    @Benchmark
+    public Paper parseTitleAndAuthors()
+    {
+        return paperParser.parse(document, new ExtractionPlan(PaperField.TITLE, PaperField.AUTHORS));
+    }
+}
@@ -0,0 +1,72 @@
+package in.codehub.pdfreader;
+
+import in.codehub.benchmarks.Corpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The engine without PDFBox: collecting glyphs (duplicate suppression and article assignment in
+ * processTextPosition), segmenting collected pages into lines and paragraphs (parsePage), and turning lines into
+ * document lines (createLine and getString, through DocumentBuilder.newLine). One operation covers every page of
+ * the 12 page paper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark
+{
+    private PageFixture fixture;
+    private PDFParser parser;
+    private DocumentBuilder builder;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        fixture = new PageFixture(Corpus.PAPER_12);
+        parser = new PDFParser(PageFixture.NORMALIZE);
+        builder = new DocumentBuilder(PageFixture.NORMALIZE);
+        builder.startDocument(null);
+        builder.startPage(fixture.pages.get(0), 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        fixture.close();
+    }
+
+    @Benchmark
+    public void processTextPosition()
+    {
+        for (int page = 0; page < fixture.pages.size(); page++)
+            fixture.replay(parser, page);
+    }
+
+    @Benchmark
+    public void parsePage() throws IOException
+    {
+        for (PDFParser pageParser : fixture.parsers)
+            pageParser.parsePage();
+    }
+
+    @Benchmark
+    public void createLine()
+    {
+        builder.startParagraph();
+        for (TextLine line : fixture.lines)
+            builder.newLine(line);
+    }
+
+    @Benchmark
+    public void getString(Blackhole blackhole)
+    {
+        for (StringBuilder text : fixture.lineTexts)
+            blackhole.consume(builder.getString(text));
+    }
+}
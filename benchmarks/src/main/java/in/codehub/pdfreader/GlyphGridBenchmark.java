@@ -0,0 +1,55 @@
+package in.codehub.pdfreader;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duplicate glyph suppression on a glyph dense page, 80 lines of 250 glyphs where one glyph in ten is drawn twice
+ * slightly offset. One operation is the whole page through a cleared GlyphGrid.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlyphGridBenchmark
+{
+    private static final int GLYPHS = 20000;
+
+    private final float[] xs = new float[GLYPHS];
+    private final float[] ys = new float[GLYPHS];
+    private final String[] characters = new String[GLYPHS];
+    private GlyphGrid grid;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(1);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.,;";
+        for (int i = 0; i < GLYPHS; i++)
+        {
+            boolean duplicate = i > 0 && i % 10 == 0;
+            xs[i] = duplicate ? xs[i - 1] + .3f : 20 + (i % 250) * 2.3f;
+            ys[i] = duplicate ? ys[i - 1] : 30 + (i / 250) * 9.5f;
+            characters[i] = duplicate ? characters[i - 1]
+                    : String.valueOf(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        grid = new GlyphGrid();
+    }
+
+    @Benchmark
+    public int addIfAbsent()
+    {
+        grid.clear();
+        int shown = 0;
+        for (int i = 0; i < GLYPHS; i++)
+        {
+            if (grid.addIfAbsent(characters[i], xs[i], ys[i], .7f))
+                shown++;
+        }
+        return shown;
+    }
+}
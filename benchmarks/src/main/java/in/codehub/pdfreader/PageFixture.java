@@ -0,0 +1,111 @@
+package in.codehub.pdfreader;
+
+import in.codehub.benchmarks.Corpus;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.util.TextNormalize;
+import org.apache.pdfbox.util.TextPosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pages of a corpus file taken apart for the engine benchmarks: the glyphs PDFBox emits for every page, and
+ * an engine per page that holds the collected glyphs so line segmentation can run again and again. The document
+ * stays open for the lifetime of the fixture.
+ */
+class PageFixture
+{
+    static final TextNormalize NORMALIZE = new TextNormalize("UTF-8");
+    static final PDFParserListener NO_LISTENER = new PDFParserListener()
+    {
+    };
+
+    final List<PDPage> pages = new ArrayList<PDPage>();
+    final List<List<TextPosition>> glyphs = new ArrayList<List<TextPosition>>();
+    final List<PDFParser> parsers = new ArrayList<PDFParser>();
+    // the lines of every page as handed to the listener, and their raw text before getString.
+    final List<TextLine> lines = new ArrayList<TextLine>();
+    final List<StringBuilder> lineTexts = new ArrayList<StringBuilder>();
+
+    private final PDDocument document;
+
+    PageFixture(String file) throws IOException
+    {
+        document = PDDocument.load(new ByteArrayInputStream(Corpus.load(file)));
+        final List<TextPosition> recorded = new ArrayList<TextPosition>();
+        PDFParser recorder = new PDFParser(NORMALIZE)
+        {
+            @Override
+            protected void processTextPosition(TextPosition text)
+            {
+                recorded.add(text);
+                super.processTextPosition(text);
+            }
+        };
+        recorder.setListener(new PDFParserListener()
+        {
+            @Override
+            void endPage(PDPage page)
+            {
+                pages.add(page);
+                glyphs.add(new ArrayList<TextPosition>(recorded));
+                recorded.clear();
+            }
+        });
+        recorder.parse(document);
+
+        for (int i = 0; i < pages.size(); i++)
+        {
+            PDFParser parser = new PDFParser(NORMALIZE);
+            replay(parser, i);
+            parser.setListener(new PDFParserListener()
+            {
+                @Override
+                void newLine(TextLine line)
+                {
+                    if (line.isEmpty())
+                        return;
+                    lines.add(line.copy());
+                    StringBuilder text = new StringBuilder();
+                    for (int run = 0; run < line.runCount(); run++)
+                    {
+                        if (line.isSeparator(run))
+                            text.append(' ');
+                        else
+                            line.appendText(run, text);
+                    }
+                    lineTexts.add(text);
+                }
+            });
+            parser.parsePage();
+            parser.setListener(NO_LISTENER);
+            parsers.add(parser);
+        }
+    }
+
+    /**
+     * Collects the recorded glyphs of a page in the engine, as processing its content stream would.
+     */
+    void replay(PDFParser parser, int page)
+    {
+        parser.preparePage(pages.get(page));
+        for (TextPosition text : glyphs.get(page))
+            parser.processTextPosition(text);
+    }
+
+    int glyphCount()
+    {
+        int count = 0;
+        for (List<TextPosition> page : glyphs)
+            count += page.size();
+        return count;
+    }
+
+    void close() throws IOException
+    {
+        document.close();
+    }
+}
@@ -0,0 +1,144 @@
+package in.codehub.cache;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Files in one directory, bounded by their total size. Recency is kept in the last modified time of the files,
+ * so the least recently used entries are evicted first across restarts too.
+ */
+class DiskStore
+{
+    private static final String SUFFIX = ".json";
+
+    private final File directory;
+    private final long maxBytes;
+    // file name to size, in access order.
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long bytes = 0;
+
+    DiskStore(File directory, long maxBytes) throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create cache directory " + directory);
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+
+        File[] files = directory.listFiles();
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File o1, File o2)
+            {
+                long diff = o1.lastModified() - o2.lastModified();
+                return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+            }
+        });
+        for (File file : files)
+        {
+            if (file.isFile() && file.getName().endsWith(SUFFIX))
+            {
+                entries.put(file.getName(), file.length());
+                bytes += file.length();
+            }
+            else if (file.isFile() && file.getName().endsWith(".tmp"))
+            {
+                // left over from a write that did not complete.
+                file.delete();
+            }
+        }
+        evict();
+    }
+
+    /**
+     * @return the stored bytes, null when there is no entry for the key.
+     */
+    byte[] get(String key) throws IOException
+    {
+        String name = key + SUFFIX;
+        synchronized (this)
+        {
+            if (entries.get(name) == null)
+                return null;
+        }
+        File file = new File(directory, name);
+        byte[] data;
+        try
+        {
+            data = readFully(file);
+        } catch (FileNotFoundException e)
+        {
+            // evicted by another thread in the meantime.
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return data;
+    }
+
+    void put(String key, byte[] data) throws IOException
+    {
+        String name = key + SUFFIX;
+        if (data.length > maxBytes)
+            return;
+        File tmp = File.createTempFile("entry", ".tmp", directory);
+        OutputStream out = new FileOutputStream(tmp);
+        try
+        {
+            out.write(data);
+        } finally
+        {
+            out.close();
+        }
+        synchronized (this)
+        {
+            File file = new File(directory, name);
+            if (file.exists() && !file.delete() || !tmp.renameTo(file))
+            {
+                tmp.delete();
+                return;
+            }
+            Long previous = entries.put(name, (long) data.length);
+            bytes += data.length - (previous != null ? previous : 0);
+            evict();
+        }
+    }
+
+    synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private synchronized void evict()
+    {
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext())
+        {
+            Map.Entry<String, Long> entry = eldest.next();
+            new File(directory, entry.getKey()).delete();
+            bytes -= entry.getValue();
+            eldest.remove();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally
+        {
+            in.close();
+        }
+    }
+}
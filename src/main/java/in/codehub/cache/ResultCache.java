@@ -0,0 +1,291 @@
+package in.codehub.cache;
+
+import in.codehub.document.Document;
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonMethod;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the {@link Document} and {@link Paper} read from a pdf by a hash of its bytes, so the same file seen
+ * again (a mirror, a re-submission) is not parsed again. Results are kept in a small in memory LRU and, when a
+ * directory is given, in a size bounded store on disk. Hits never touch PDFBox.
+ *
+ * Documents are kept in memory in their {@link Document#compact} form.
+ *
+ * Cached results are shared between callers and must not be modified. PaperParser tags the lines of the
+ * document it parses, so parse papers through {@link #parse} rather than from a cached document. Documents
+ * truncated by read limits, and papers parsed from them, are never cached.
+ */
+public class ResultCache
+{
+    /**
+     * Part of every key. Bump it when a change to PdfReader or PaperParser changes their output, entries stored
+     * by earlier versions are then never hit again and age out of the disk store.
+     */
+    public static final int RESULT_VERSION = 2;
+
+    private static final String DOCUMENT = "document";
+    private static final String PAPER = "paper";
+
+    private final PdfReader reader;
+    private final PaperParser paperParser;
+    private final Map<String, Object> memory;
+    private final DiskStore disk;
+    private final ObjectMapper mapper = createMapper();
+
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long misses = 0;
+
+    /**
+     * @param memoryEntries number of results kept in memory.
+     * @param directory     directory of the disk store, null to keep results in memory only.
+     * @param maxDiskBytes  upper bound of the size of the disk store.
+     */
+    public ResultCache(PdfReader reader, PaperParser paperParser, final int memoryEntries, File directory,
+                       long maxDiskBytes) throws IOException
+    {
+        this.reader = reader;
+        this.paperParser = paperParser;
+        this.memory = new LinkedHashMap<String, Object>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest)
+            {
+                return size() > memoryEntries;
+            }
+        };
+        this.disk = directory != null ? new DiskStore(directory, maxDiskBytes) : null;
+    }
+
+    public Document read(File file) throws IOException
+    {
+        String hash = hash(file);
+        Document document = get(key(DOCUMENT, hash), Document.class);
+        if (document == null)
+        {
+            document = reader.read(file);
+            if (!document.isTruncated())
+                put(key(DOCUMENT, hash), document);
+        }
+        return document;
+    }
+
+    /**
+     * Reads the stream into memory while hashing it, the pdf is only parsed on a miss.
+     */
+    public Document read(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        String hash = hash(inputStream, pdf);
+        Document document = get(key(DOCUMENT, hash), Document.class);
+        if (document == null)
+        {
+            document = reader.read(new ByteArrayInputStream(pdf.toByteArray()));
+            if (!document.isTruncated())
+                put(key(DOCUMENT, hash), document);
+        }
+        return document;
+    }
+
+    public Paper parse(File file) throws IOException
+    {
+        String hash = hash(file);
+        Paper paper = get(key(PAPER, hash), Paper.class);
+        if (paper == null)
+        {
+            Document document = readUnshared(hash, file, null);
+            paper = paperParser.parse(document);
+            if (!document.isTruncated())
+                put(key(PAPER, hash), paper);
+        }
+        return paper;
+    }
+
+    public Paper parse(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        String hash = hash(inputStream, pdf);
+        Paper paper = get(key(PAPER, hash), Paper.class);
+        if (paper == null)
+        {
+            Document document = readUnshared(hash, null, pdf.toByteArray());
+            paper = paperParser.parse(document);
+            if (!document.isTruncated())
+                put(key(PAPER, hash), paper);
+        }
+        return paper;
+    }
+
+    public synchronized long getMemoryHits()
+    {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits()
+    {
+        return diskHits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * A document the paper parser can tag: a copy of the one in memory, a fresh copy from disk, or read and then
+     * cached.
+     */
+    private Document readUnshared(String hash, File file, byte[] pdf) throws IOException
+    {
+        String key = key(DOCUMENT, hash);
+        Document cached;
+        synchronized (this)
+        {
+            cached = (Document) memory.get(key);
+            if (cached != null)
+                memoryHits++;
+        }
+        if (cached != null)
+            return cached.copy();
+        byte[] stored = disk != null ? disk.get(key) : null;
+        if (stored != null)
+            return mapper.readValue(stored, Document.class);
+
+        Document document = file != null ? reader.read(file) : reader.read(new ByteArrayInputStream(pdf));
+        if (document.isTruncated())
+            return document;
+        // stored before the paper parser tags it.
+        byte[] data = mapper.writeValueAsBytes(document);
+        synchronized (this)
+        {
+            memory.put(key, mapper.readValue(data, Document.class).compact());
+        }
+        if (disk != null)
+            disk.put(key, data);
+        return document;
+    }
+
+    private <T> T get(String key, Class<T> type) throws IOException
+    {
+        synchronized (this)
+        {
+            Object result = memory.get(key);
+            if (result != null)
+            {
+                memoryHits++;
+                return type.cast(result);
+            }
+        }
+        byte[] stored = disk != null ? disk.get(key) : null;
+        if (stored != null)
+        {
+            T result = mapper.readValue(stored, type);
+            if (result instanceof Document)
+                result = type.cast(((Document) result).compact());
+            synchronized (this)
+            {
+                diskHits++;
+                memory.put(key, result);
+            }
+            return result;
+        }
+        synchronized (this)
+        {
+            misses++;
+        }
+        return null;
+    }
+
+    private void put(String key, Object result) throws IOException
+    {
+        Object kept = result instanceof Document ? ((Document) result).compact() : result;
+        synchronized (this)
+        {
+            memory.put(key, kept);
+        }
+        if (disk != null)
+            disk.put(key, mapper.writeValueAsBytes(result));
+    }
+
+    private static String key(String kind, String hash)
+    {
+        return hash + "-" + kind + "-v" + RESULT_VERSION;
+    }
+
+    private static String hash(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            return hash(in, null);
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * SHA-1 of the stream as hex, copying the bytes to copy when it is not null.
+     */
+    private static String hash(InputStream in, OutputStream copy) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        DigestInputStream digestIn = new DigestInputStream(in, digest);
+        byte[] buffer = new byte[65536];
+        int n;
+        while ((n = digestIn.read(buffer)) != -1)
+        {
+            if (copy != null)
+                copy.write(buffer, 0, n);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Maps fields directly, the model classes have getters but few setters.
+     */
+    private static ObjectMapper createMapper()
+    {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(JsonMethod.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(JsonMethod.FIELD, JsonAutoDetect.Visibility.ANY);
+        mapper.getDeserializationConfig().addMixInAnnotations(Paper.class, PaperMixIn.class);
+        return mapper;
+    }
+
+    private abstract static class PaperMixIn
+    {
+        @JsonCreator
+        PaperMixIn(@JsonProperty("id") String id)
+        {
+        }
+    }
+}
@@ -11,8 +11,11 @@ public class Document
     private int bottomMargin;
     private int contentFontSize;
     private List<Page> pages = new ArrayList<Page>();
+    // the pages of a compact document, pages is then null.
+    private DocumentColumns columns;
 
     private String id;
+    private boolean truncated;
 
     public Document()
     {
@@ -31,12 +34,71 @@ public class Document
 
     public List<Page> getPages()
     {
-        return pages;
+        return columns != null ? columns.getPages() : pages;
     }
 
     public void addPage(Page page)
     {
-        pages.add(page);
+        getPages().add(page);
+    }
+
+    /**
+     * A copy of the document that keeps its pages, paragraphs and lines in one block of bytes, several times smaller
+     * on the heap, the form a {@link DocumentFile} stores. Its pages, paragraphs and lines are views created on
+     * access, pages and lines cannot be added to it and only line tags can be changed. Use it for documents kept in
+     * memory. A compact document is returned as it is.
+     */
+    public Document compact()
+    {
+        if (columns != null)
+            return this;
+        return DocumentColumns.of(this).document();
+    }
+
+    /**
+     * A copy of the document with pages, paragraphs and lines of its own, which can be changed without touching
+     * this document. The copy of a compact document is not compact.
+     */
+    public Document copy()
+    {
+        Document copy = new Document(id);
+        copy.setMargins(leftMargin, rightMargin, topMargin, bottomMargin);
+        copy.setContentFontSize(contentFontSize);
+        copy.setTruncated(truncated);
+        for (Page page : getPages())
+        {
+            Page pageCopy = new Page(page.getSerialNo(), page.getWidth(), page.getHeight());
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                Paragraph paragraphCopy = new Paragraph();
+                for (Line line : paragraph.getLines())
+                {
+                    Line lineCopy = new Line(line.getText(), line.getFontSize(), line.getFirstX(), line.getLastX(),
+                            line.getY());
+                    lineCopy.setTag(line.tag());
+                    paragraphCopy.addLine(lineCopy);
+                }
+                pageCopy.addParagraph(paragraphCopy);
+            }
+            copy.addPage(pageCopy);
+        }
+        return copy;
+    }
+
+    DocumentColumns columns()
+    {
+        return columns;
+    }
+
+    void setColumns(DocumentColumns columns)
+    {
+        this.columns = columns;
+        this.pages = null;
+    }
+
+    boolean isCompact()
+    {
+        return columns != null;
     }
 
     public void setMargins(int l, int r, int t, int b)
@@ -77,6 +139,19 @@ public class Document
         return contentFontSize;
     }
 
+    /**
+     * Whether the reader stopped short of some pages or glyphs because a read limit was reached.
+     */
+    public boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated)
+    {
+        this.truncated = truncated;
+    }
+
     public DocumentIterator iterator()
     {
         return new DocumentIterator(this);
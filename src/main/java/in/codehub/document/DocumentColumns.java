@@ -0,0 +1,710 @@
+package in.codehub.document;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The pages, paragraphs and lines of a document in one block of bytes: a column per line field, the text of all
+ * lines and the first paragraph of every page and first line of every paragraph. The same block is the heap form
+ * of a compact document and a record of a {@link DocumentFile}, which reads it in place from the mapped file.
+ *
+ * Text is pooled: every line is split into runs of letters and digits and runs of other chars, each distinct run
+ * is stored once in modified UTF-8, one to three bytes a char, so any char sequence comes back as it was. A line is
+ * the sequence of the ids of its runs, one byte for the 128 most frequent runs and two for the next 16K. Lines with
+ * the same text, as running headers, share their ids. Coordinates and lengths are kept in shorts when they fit and
+ * font sizes, of which a document has a few, in a table.
+ *
+ * {@link Page}, {@link Paragraph} and {@link Line} objects are created on access as views of one row, they cannot
+ * be added to. Only line tags can change, the paper parser sets them. Tags are kept on the heap, they are not part
+ * of the block.
+ */
+final class DocumentColumns
+{
+    // header of a block, ints.
+    private static final int LINES = 0;
+    private static final int PARAGRAPHS = 4;
+    private static final int PAGES = 8;
+    private static final int RUNS = 12;
+    private static final int FONT_SIZES = 16;
+    private static final int RUN_BYTES = 20;
+    private static final int TEXT_BYTES = 24;
+    // a bit per column that needs ints, the others are shorts.
+    private static final int WIDE_COLUMNS = 28;
+    private static final int LEFT_MARGIN = 32;
+    private static final int RIGHT_MARGIN = 36;
+    private static final int TOP_MARGIN = 40;
+    private static final int BOTTOM_MARGIN = 44;
+    private static final int CONTENT_FONT_SIZE = 48;
+    private static final int TRUNCATED = 52;
+    // chars of the id, -1 for none, the chars follow.
+    private static final int ID_LENGTH = 56;
+    private static final int HEADER = 60;
+
+    // the columns that are shorts when their values fit.
+    private static final int LINE_BYTES_COLUMN = 0;
+    private static final int RUN_CHARS_COLUMN = 1;
+    private static final int FONT_SIZE_COLUMN = 2;
+    private static final int FIRST_X_COLUMN = 3;
+    private static final int LAST_X_COLUMN = 4;
+    private static final int Y_COLUMN = 5;
+    private static final int LINE_CHARS_COLUMN = 6;
+
+    // the block of a compact document on the heap, null when it is read from a file.
+    private byte[] bytes;
+    // allocated with the first tag set.
+    private String[] tags;
+
+    private transient ByteBuffer block;
+    private transient int wideColumns;
+    // offsets of the sections of the block.
+    private transient int runs;
+    private transient int runStart;
+    private transient int runChars;
+    private transient int text;
+    private transient int textStart;
+    private transient int textBytes;
+    private transient int lineChars;
+    private transient int fontSizes;
+    private transient int fontSize;
+    private transient int firstX;
+    private transient int lastX;
+    private transient int y;
+    private transient int paragraphStart;
+    private transient int pageStart;
+    private transient int serialNo;
+    private transient int width;
+    private transient int height;
+    private transient int end;
+
+    private transient List<Page> pages;
+
+    private DocumentColumns()
+    {
+    }
+
+    /**
+     * Columns read in place from a block, as written by {@link #writeTo}.
+     */
+    static DocumentColumns wrap(ByteBuffer block)
+    {
+        DocumentColumns columns = new DocumentColumns();
+        columns.init(block);
+        return columns;
+    }
+
+    static DocumentColumns of(Document document)
+    {
+        int pageCount = document.getPages().size();
+        int paragraphCount = 0;
+        int lineCount = 0;
+        // run counts, so the most frequent runs get the shortest ids.
+        Map<String, Integer> runCounts = new HashMap<String, Integer>();
+        for (Page page : document.getPages())
+        {
+            paragraphCount += page.getParagraphs().size();
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                for (Line line : paragraph.getLines())
+                {
+                    lineCount++;
+                    String lineText = line.getText();
+                    for (int i = 0; i < lineText.length(); )
+                    {
+                        int end = runEnd(lineText, i);
+                        String run = lineText.substring(i, end);
+                        Integer count = runCounts.get(run);
+                        runCounts.put(run, count == null ? 1 : count + 1);
+                        i = end;
+                    }
+                }
+            }
+        }
+
+        List<String> runs = sortByCount(runCounts);
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        int[] runStart = new int[runs.size() + 1];
+        int[] runChars = new int[runs.size()];
+        for (int id = 0; id < runs.size(); id++)
+        {
+            String run = runs.get(id);
+            ids.put(run, id);
+            runStart[id + 1] = runStart[id] + encodedLength(run);
+            runChars[id] = run.length();
+        }
+
+        int[] textStart = new int[lineCount];
+        int[] textBytes = new int[lineCount];
+        int[] lineChars = new int[lineCount];
+        int[] fontSize = new int[lineCount];
+        int[] firstX = new int[lineCount];
+        int[] lastX = new int[lineCount];
+        int[] y = new int[lineCount];
+        int[] paragraphStart = new int[paragraphCount + 1];
+        int[] pageStart = new int[pageCount + 1];
+        int[] serialNo = new int[pageCount];
+        int[] width = new int[pageCount];
+        int[] height = new int[pageCount];
+        String[] tags = null;
+
+        byte[] text = new byte[256];
+        int length = 0;
+        // the first line of every text.
+        Map<String, Integer> lines = new HashMap<String, Integer>();
+        Map<Integer, Integer> fontSizes = new LinkedHashMap<Integer, Integer>();
+        int pageIndex = 0;
+        int paragraphIndex = 0;
+        int lineIndex = 0;
+        for (Page page : document.getPages())
+        {
+            pageStart[pageIndex] = paragraphIndex;
+            serialNo[pageIndex] = page.getSerialNo();
+            width[pageIndex] = page.getWidth();
+            height[pageIndex] = page.getHeight();
+            pageIndex++;
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                paragraphStart[paragraphIndex++] = lineIndex;
+                for (Line line : paragraph.getLines())
+                {
+                    String lineText = line.getText();
+                    Integer same = lines.get(lineText);
+                    if (same != null)
+                    {
+                        textStart[lineIndex] = textStart[same];
+                        textBytes[lineIndex] = textBytes[same];
+                    }
+                    else
+                    {
+                        lines.put(lineText, lineIndex);
+                        textStart[lineIndex] = length;
+                        for (int i = 0; i < lineText.length(); )
+                        {
+                            int end = runEnd(lineText, i);
+                            if (text.length - length < 5)
+                                text = grow(text, length + 5);
+                            length = writeId(ids.get(lineText.substring(i, end)), text, length);
+                            i = end;
+                        }
+                        textBytes[lineIndex] = length - textStart[lineIndex];
+                    }
+                    lineChars[lineIndex] = lineText.length();
+                    Integer fontSizeIndex = fontSizes.get(line.getFontSize());
+                    if (fontSizeIndex == null)
+                    {
+                        fontSizeIndex = fontSizes.size();
+                        fontSizes.put(line.getFontSize(), fontSizeIndex);
+                    }
+                    fontSize[lineIndex] = fontSizeIndex;
+                    firstX[lineIndex] = line.getFirstX();
+                    lastX[lineIndex] = line.getLastX();
+                    y[lineIndex] = line.getY();
+                    if (line.tag() != null)
+                    {
+                        if (tags == null)
+                            tags = new String[lineCount];
+                        tags[lineIndex] = line.tag();
+                    }
+                    lineIndex++;
+                }
+            }
+        }
+        pageStart[pageIndex] = paragraphIndex;
+        paragraphStart[paragraphIndex] = lineIndex;
+
+        int[][] narrowable = {textBytes, runChars, fontSize, firstX, lastX, y, lineChars};
+        int wideColumns = 0;
+        int size = HEADER + (document.getId() != null ? document.getId().length() * 2 : 0) + runStart[runs.size()]
+                + length + 4 * (runStart.length + lineCount + fontSizes.size() + paragraphStart.length
+                + pageStart.length + 3 * pageCount);
+        for (int i = 0; i < narrowable.length; i++)
+        {
+            if (!fitShorts(narrowable[i]))
+                wideColumns |= 1 << i;
+            size += narrowable[i].length * ((wideColumns & 1 << i) != 0 ? 4 : 2);
+        }
+
+        ByteBuffer block = ByteBuffer.wrap(new byte[size]);
+        block.putInt(lineCount).putInt(paragraphCount).putInt(pageCount).putInt(runs.size())
+                .putInt(fontSizes.size()).putInt(runStart[runs.size()]).putInt(length).putInt(wideColumns);
+        block.putInt(document.getLeftMargin()).putInt(document.getRightMargin()).putInt(document.getTopMargin())
+                .putInt(document.getBottomMargin()).putInt(document.getContentFontSize())
+                .putInt(document.isTruncated() ? 1 : 0);
+        String id = document.getId();
+        block.putInt(id != null ? id.length() : -1);
+        if (id != null)
+        {
+            for (int i = 0; i < id.length(); i++)
+                block.putChar(id.charAt(i));
+        }
+        byte[] runBytes = new byte[runStart[runs.size()]];
+        for (int i = 0; i < runs.size(); i++)
+            encode(runs.get(i), runBytes, runStart[i]);
+        block.put(runBytes);
+        putInts(block, runStart);
+        putColumn(block, runChars, wideColumns, RUN_CHARS_COLUMN);
+        block.put(text, 0, length);
+        putInts(block, textStart);
+        putColumn(block, textBytes, wideColumns, LINE_BYTES_COLUMN);
+        putColumn(block, lineChars, wideColumns, LINE_CHARS_COLUMN);
+        for (int value : fontSizes.keySet())
+            block.putInt(value);
+        putColumn(block, fontSize, wideColumns, FONT_SIZE_COLUMN);
+        putColumn(block, firstX, wideColumns, FIRST_X_COLUMN);
+        putColumn(block, lastX, wideColumns, LAST_X_COLUMN);
+        putColumn(block, y, wideColumns, Y_COLUMN);
+        putInts(block, paragraphStart);
+        putInts(block, pageStart);
+        putInts(block, serialNo);
+        putInts(block, width);
+        putInts(block, height);
+
+        DocumentColumns columns = new DocumentColumns();
+        columns.bytes = block.array();
+        columns.tags = tags;
+        columns.init(ByteBuffer.wrap(columns.bytes));
+        return columns;
+    }
+
+    /**
+     * A document of these columns.
+     */
+    Document document()
+    {
+        ByteBuffer block = block();
+        int idLength = block.getInt(ID_LENGTH);
+        String id = null;
+        if (idLength >= 0)
+        {
+            char[] chars = new char[idLength];
+            for (int i = 0; i < idLength; i++)
+                chars[i] = block.getChar(HEADER + 2 * i);
+            id = new String(chars);
+        }
+        Document document = new Document(id);
+        document.setMargins(block.getInt(LEFT_MARGIN), block.getInt(RIGHT_MARGIN), block.getInt(TOP_MARGIN),
+                block.getInt(BOTTOM_MARGIN));
+        document.setContentFontSize(block.getInt(CONTENT_FONT_SIZE));
+        document.setTruncated(block.getInt(TRUNCATED) != 0);
+        document.setColumns(this);
+        return document;
+    }
+
+    /**
+     * Size of the block in bytes.
+     */
+    int size()
+    {
+        block();
+        return end;
+    }
+
+    void writeTo(WritableByteChannel channel) throws IOException
+    {
+        ByteBuffer data = block().duplicate();
+        data.limit(size()).position(0);
+        while (data.hasRemaining())
+            channel.write(data);
+    }
+
+    /**
+     * The block, set up on first use after the columns are deserialized from their bytes.
+     */
+    private ByteBuffer block()
+    {
+        if (block == null)
+            init(ByteBuffer.wrap(bytes));
+        return block;
+    }
+
+    private void init(ByteBuffer block)
+    {
+        int lineCount = block.getInt(LINES);
+        int paragraphCount = block.getInt(PARAGRAPHS);
+        int pageCount = block.getInt(PAGES);
+        int runCount = block.getInt(RUNS);
+        wideColumns = block.getInt(WIDE_COLUMNS);
+        runs = HEADER + Math.max(0, block.getInt(ID_LENGTH)) * 2;
+        runStart = runs + block.getInt(RUN_BYTES);
+        runChars = runStart + 4 * (runCount + 1);
+        text = runChars + runCount * columnWidth(RUN_CHARS_COLUMN);
+        textStart = text + block.getInt(TEXT_BYTES);
+        textBytes = textStart + 4 * lineCount;
+        lineChars = textBytes + lineCount * columnWidth(LINE_BYTES_COLUMN);
+        fontSizes = lineChars + lineCount * columnWidth(LINE_CHARS_COLUMN);
+        fontSize = fontSizes + 4 * block.getInt(FONT_SIZES);
+        firstX = fontSize + lineCount * columnWidth(FONT_SIZE_COLUMN);
+        lastX = firstX + lineCount * columnWidth(FIRST_X_COLUMN);
+        y = lastX + lineCount * columnWidth(LAST_X_COLUMN);
+        paragraphStart = y + lineCount * columnWidth(Y_COLUMN);
+        pageStart = paragraphStart + 4 * (paragraphCount + 1);
+        serialNo = pageStart + 4 * (pageCount + 1);
+        width = serialNo + 4 * pageCount;
+        height = width + 4 * pageCount;
+        end = height + 4 * pageCount;
+        this.block = block;
+    }
+
+    List<Page> getPages()
+    {
+        if (pages == null)
+        {
+            final int pageCount = block().getInt(PAGES);
+            pages = new AbstractList<Page>()
+            {
+                @Override
+                public Page get(int index)
+                {
+                    checkIndex(index, size());
+                    return new PageView(index);
+                }
+
+                @Override
+                public int size()
+                {
+                    return pageCount;
+                }
+            };
+        }
+        return pages;
+    }
+
+    private int columnWidth(int column)
+    {
+        return (wideColumns & 1 << column) != 0 ? 4 : 2;
+    }
+
+    private int get(int column, int offset, int index)
+    {
+        return (wideColumns & 1 << column) != 0 ? block.getInt(offset + 4 * index)
+                : block.getShort(offset + 2 * index);
+    }
+
+    private int getInt(int offset, int index)
+    {
+        return block.getInt(offset + 4 * index);
+    }
+
+    private String text(int line)
+    {
+        ByteBuffer block = this.block;
+        char[] chars = new char[get(LINE_CHARS_COLUMN, lineChars, line)];
+        int n = 0;
+        int start = text + getInt(textStart, line);
+        int end = start + get(LINE_BYTES_COLUMN, textBytes, line);
+        for (int i = start; i < end; )
+        {
+            int id = block.get(i) & 0x7F;
+            while (block.get(i++) < 0)
+                id = id << 7 | block.get(i) & 0x7F;
+            int j = runs + getInt(runStart, id);
+            int runEnd = runs + getInt(runStart, id + 1);
+            if (runEnd - j == get(RUN_CHARS_COLUMN, runChars, id))
+            {
+                // all one byte chars.
+                while (j < runEnd)
+                    chars[n++] = (char) block.get(j++);
+                continue;
+            }
+            while (j < runEnd)
+            {
+                int b = block.get(j++) & 0xFF;
+                if (b < 0x80)
+                    chars[n++] = (char) b;
+                else if (b < 0xE0)
+                    chars[n++] = (char) ((b & 0x1F) << 6 | block.get(j++) & 0x3F);
+                else
+                    chars[n++] = (char) ((b & 0x0F) << 12 | (block.get(j++) & 0x3F) << 6 | block.get(j++) & 0x3F);
+            }
+        }
+        return new String(chars);
+    }
+
+    private void setTag(int line, String tag)
+    {
+        if (tags == null)
+        {
+            if (tag == null)
+                return;
+            tags = new String[block.getInt(LINES)];
+        }
+        tags[line] = tag;
+    }
+
+    private static List<String> sortByCount(final Map<String, Integer> counts)
+    {
+        List<String> sorted = new ArrayList<String>(counts.keySet());
+        Collections.sort(sorted, new Comparator<String>()
+        {
+            @Override
+            public int compare(String o1, String o2)
+            {
+                return counts.get(o2) - counts.get(o1);
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * The end of the run of letters and digits, or of other chars, that starts at start.
+     */
+    private static int runEnd(String s, int start)
+    {
+        boolean letters = Character.isLetterOrDigit(s.charAt(start));
+        int end = start + 1;
+        while (end < s.length() && Character.isLetterOrDigit(s.charAt(end)) == letters)
+            end++;
+        return end;
+    }
+
+    /**
+     * Writes the id seven bits a byte, high bits first, the top bit set on all bytes but the last.
+     */
+    private static int writeId(int id, byte[] bytes, int offset)
+    {
+        for (int shift = 28; shift > 0; shift -= 7)
+        {
+            if (id >>> shift != 0)
+                bytes[offset++] = (byte) (0x80 | id >>> shift & 0x7F);
+        }
+        bytes[offset++] = (byte) (id & 0x7F);
+        return offset;
+    }
+
+    private static int encode(String s, byte[] bytes, int offset)
+    {
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c < 0x80)
+            {
+                bytes[offset++] = (byte) c;
+            }
+            else if (c < 0x800)
+            {
+                bytes[offset++] = (byte) (0xC0 | c >> 6);
+                bytes[offset++] = (byte) (0x80 | c & 0x3F);
+            }
+            else
+            {
+                bytes[offset++] = (byte) (0xE0 | c >> 12);
+                bytes[offset++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[offset++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return offset;
+    }
+
+    private static int encodedLength(String s)
+    {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+
+    private static boolean fitShorts(int[] values)
+    {
+        for (int value : values)
+        {
+            if (value != (short) value)
+                return false;
+        }
+        return true;
+    }
+
+    private static void putInts(ByteBuffer block, int[] values)
+    {
+        for (int value : values)
+            block.putInt(value);
+    }
+
+    private static void putColumn(ByteBuffer block, int[] values, int wideColumns, int column)
+    {
+        for (int value : values)
+        {
+            if ((wideColumns & 1 << column) != 0)
+                block.putInt(value);
+            else
+                block.putShort((short) value);
+        }
+    }
+
+    private static byte[] grow(byte[] bytes, int minLength)
+    {
+        byte[] grown = new byte[Math.max(minLength, bytes.length * 2)];
+        System.arraycopy(bytes, 0, grown, 0, bytes.length);
+        return grown;
+    }
+
+    private static void checkIndex(int index, int size)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private final class PageView extends Page
+    {
+        private final int page;
+
+        private PageView(int page)
+        {
+            this.page = page;
+        }
+
+        @Override
+        public List<Paragraph> getParagraphs()
+        {
+            return new AbstractList<Paragraph>()
+            {
+                @Override
+                public Paragraph get(int index)
+                {
+                    checkIndex(index, size());
+                    return new ParagraphView(getInt(pageStart, page) + index);
+                }
+
+                @Override
+                public int size()
+                {
+                    return getInt(pageStart, page + 1) - getInt(pageStart, page);
+                }
+            };
+        }
+
+        @Override
+        public void addParagraph(Paragraph paragraph)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getSerialNo()
+        {
+            return getInt(serialNo, page);
+        }
+
+        @Override
+        public int getWidth()
+        {
+            return getInt(width, page);
+        }
+
+        @Override
+        public int getHeight()
+        {
+            return getInt(height, page);
+        }
+    }
+
+    private final class ParagraphView extends Paragraph
+    {
+        private final int paragraph;
+
+        private ParagraphView(int paragraph)
+        {
+            this.paragraph = paragraph;
+        }
+
+        @Override
+        public List<Line> getLines()
+        {
+            return new AbstractList<Line>()
+            {
+                @Override
+                public Line get(int index)
+                {
+                    checkIndex(index, size());
+                    return new LineView(getInt(paragraphStart, paragraph) + index);
+                }
+
+                @Override
+                public int size()
+                {
+                    return lineCount();
+                }
+            };
+        }
+
+        @Override
+        public void addLine(Line line)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int lineCount()
+        {
+            return getInt(paragraphStart, paragraph + 1) - getInt(paragraphStart, paragraph);
+        }
+    }
+
+    private final class LineView extends Line
+    {
+        private final int line;
+
+        private LineView(int line)
+        {
+            this.line = line;
+        }
+
+        @Override
+        public String getText()
+        {
+            return text(line);
+        }
+
+        @Override
+        public int getFirstX()
+        {
+            return get(FIRST_X_COLUMN, firstX, line);
+        }
+
+        @Override
+        public int getLastX()
+        {
+            return get(LAST_X_COLUMN, lastX, line);
+        }
+
+        @Override
+        public int getY()
+        {
+            return get(Y_COLUMN, y, line);
+        }
+
+        @Override
+        public int getFontSize()
+        {
+            return getInt(fontSizes, get(FONT_SIZE_COLUMN, fontSize, line));
+        }
+
+        @Override
+        public int length()
+        {
+            return get(LINE_CHARS_COLUMN, lineChars, line);
+        }
+
+        @Override
+        public void setTag(String tag)
+        {
+            DocumentColumns.this.setTag(line, tag);
+        }
+
+        @Override
+        public String tag()
+        {
+            return tags != null ? tags[line] : null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package in.codehub.document;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Documents stored one after the other in a file, as written by a {@link DocumentFileWriter}. The file is mapped
+ * into memory and every document is a compact document read in place from the mapping: opening the file reads only
+ * its index and the text and coordinates of a line are decoded from the mapped pages when they are asked for, so
+ * reading documents costs little more than the disk reads of their pages. Files are mapped in segments of up to
+ * 2 GB, a document is never split across two.
+ *
+ * The file starts with a header, a magic number, the format version, the document count and the offset of the
+ * index, followed by the documents and the index, the offset of every document and of the end of the last.
+ * Documents are valid as long as the file is open.
+ */
+public class DocumentFile implements Closeable
+{
+    static final int MAGIC = 0x4E4D4446;
+    static final int VERSION = 1;
+    static final int HEADER = 24;
+
+    private final RandomAccessFile file;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    // per document, its segment and its offset in it.
+    private final int[] segment;
+    private final int[] start;
+    private final int[] end;
+
+    public DocumentFile(File file) throws IOException
+    {
+        this.file = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = this.file.getChannel();
+            long length = channel.size();
+            if (length < HEADER)
+                throw new IOException("Not a document file: " + file);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException("Not a document file: " + file);
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported document file version " + header.getInt(4) + ": " + file);
+            int count = header.getInt(8);
+            long indexOffset = header.getLong(16);
+            if (count < 0 || indexOffset < HEADER || indexOffset + 8L * (count + 1) > length)
+                throw new IOException("Corrupt document file: " + file);
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, 8L * (count + 1));
+
+            segment = new int[count];
+            start = new int[count];
+            end = new int[count];
+            long segmentStart = index.getLong(0);
+            long segmentEnd = segmentStart;
+            for (int i = 0; i < count; i++)
+            {
+                long documentStart = index.getLong(8 * i);
+                long documentEnd = index.getLong(8 * (i + 1));
+                if (documentStart < segmentEnd || documentEnd < documentStart || documentEnd > indexOffset
+                        || documentEnd - documentStart > Integer.MAX_VALUE)
+                    throw new IOException("Corrupt document file: " + file);
+                if (documentEnd - segmentStart > Integer.MAX_VALUE)
+                {
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+                    segmentStart = documentStart;
+                }
+                segmentEnd = documentEnd;
+                segment[i] = segments.size();
+                start[i] = (int) (documentStart - segmentStart);
+                end[i] = (int) (documentEnd - segmentStart);
+            }
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart));
+        } catch (IOException e)
+        {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    public int size()
+    {
+        return segment.length;
+    }
+
+    /**
+     * The document at the index, read in place from the file.
+     */
+    public Document get(int index)
+    {
+        if (index < 0 || index >= segment.length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + segment.length);
+        ByteBuffer block = segments.get(segment[index]).duplicate();
+        block.limit(end[index]).position(start[index]);
+        return DocumentColumns.wrap(block.slice()).document();
+    }
+
+    /**
+     * The documents in file order.
+     */
+    public List<Document> getDocuments()
+    {
+        return new AbstractList<Document>()
+        {
+            @Override
+            public Document get(int index)
+            {
+                return DocumentFile.this.get(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return DocumentFile.this.size();
+            }
+        };
+    }
+
+    /**
+     * Closes the file. The mappings are released when the documents are no longer referenced.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        file.close();
+    }
+}
@@ -0,0 +1,85 @@
+package in.codehub.document;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes documents one after the other into a {@link DocumentFile}. Documents are stored compact, without their
+ * line tags. The index is written on close, a file that is not closed cannot be opened.
+ */
+public class DocumentFileWriter implements Closeable
+{
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private long[] offsets = new long[64];
+    private int count;
+    private boolean closed;
+
+    public DocumentFileWriter(File file) throws IOException
+    {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        // the header is written again with the index offset on close.
+        channel.position(DocumentFile.HEADER);
+        offsets[0] = DocumentFile.HEADER;
+    }
+
+    public synchronized void add(Document document) throws IOException
+    {
+        if (closed)
+            throw new IOException("Document file is closed");
+        DocumentColumns columns = document.compact().columns();
+        columns.writeTo(channel);
+        if (count + 1 == offsets.length)
+        {
+            long[] grown = new long[offsets.length * 2];
+            System.arraycopy(offsets, 0, grown, 0, offsets.length);
+            offsets = grown;
+        }
+        offsets[count + 1] = offsets[count] + columns.size();
+        count++;
+    }
+
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (closed)
+            return;
+        closed = true;
+        try
+        {
+            // the start of every document and the end of the last.
+            long indexOffset = offsets[count];
+            ByteBuffer index = ByteBuffer.allocate(8 * (count + 1));
+            for (int i = 0; i <= count; i++)
+                index.putLong(offsets[i]);
+            index.flip();
+            write(index, indexOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(DocumentFile.HEADER);
+            header.putInt(DocumentFile.MAGIC).putInt(DocumentFile.VERSION).putInt(count).putInt(0)
+                    .putLong(indexOffset);
+            header.flip();
+            write(header, 0);
+        } finally
+        {
+            file.close();
+        }
+    }
+
+    private void write(ByteBuffer data, long position) throws IOException
+    {
+        while (data.hasRemaining())
+            position += channel.write(data, position);
+    }
+}
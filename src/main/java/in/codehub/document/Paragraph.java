@@ -10,7 +10,7 @@ public class Paragraph
     public int textLength()
     {
         int size = 0;
-        for (Line line : lines)
+        for (Line line : getLines())
             size += line.length();
         return size;
     }
@@ -33,7 +33,7 @@ public class Paragraph
     public String text()
     {
         StringBuilder sb = new StringBuilder();
-        for (Line line : lines)
+        for (Line line : getLines())
         {
             if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '-')
                 sb.deleteCharAt(sb.length() - 1);
@@ -47,7 +47,7 @@ public class Paragraph
     public int fontSize()
     {
         int fontSize = 0, count = 0;
-        for (Line line : lines)
+        for (Line line : getLines())
         {
             count += (fontSize == line.getFontSize() ? 1 : -1) * line.getText().length();
             fontSize = (count < 0 ? line.getFontSize() : fontSize);
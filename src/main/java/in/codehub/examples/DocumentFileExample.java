@@ -0,0 +1,106 @@
+package in.codehub.examples;
+
+import in.codehub.document.Document;
+import in.codehub.document.DocumentFile;
+import in.codehub.document.DocumentFileWriter;
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.pipeline.BatchPipeline;
+import in.codehub.pipeline.BatchReport;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The pdf reader and paper parser examples with one document file in between instead of a json file per pdf.
+ */
+public class DocumentFileExample
+{
+    public BatchReport write(String inputFolder, String documentFile) throws IOException, InterruptedException
+    {
+        final PdfReader pdfReader = PdfReader.getInstance();
+        File[] files = new File(inputFolder).listFiles(getFilter());
+        final DocumentFileWriter documents = new DocumentFileWriter(new File(documentFile));
+        try
+        {
+            BatchPipeline<PDDocument, Document> pipeline = new BatchPipeline<PDDocument, Document>(
+                    new BatchPipeline.Loader<PDDocument>()
+                    {
+                        @Override
+                        public PDDocument load(File file) throws IOException
+                        {
+                            return PDDocument.load(file);
+                        }
+                    },
+                    new BatchPipeline.Processor<PDDocument, Document>()
+                    {
+                        @Override
+                        public Document process(File file, PDDocument pdf) throws IOException
+                        {
+                            Document document = pdfReader.read(pdf);
+                            document.setId(file.getName());
+                            return document;
+                        }
+                    },
+                    new BatchPipeline.Writer<Document>()
+                    {
+                        @Override
+                        public void write(File file, Document document) throws IOException
+                        {
+                            documents.add(document);
+                        }
+                    });
+            // PDDocument is not Closeable, documents left over by an interrupted run are closed here.
+            pipeline.setSourceDiscarder(new BatchPipeline.Discarder<PDDocument>()
+            {
+                @Override
+                public void discard(PDDocument pdf) throws IOException
+                {
+                    pdf.close();
+                }
+            });
+            return pipeline.run(Arrays.asList(files));
+        } finally
+        {
+            documents.close();
+        }
+    }
+
+    public int parse(String documentFile, String outFolder) throws IOException
+    {
+        PaperParser parser = PaperParser.getInstance();
+        ObjectMapper mapper = new ObjectMapper();
+        DocumentFile documents = new DocumentFile(new File(documentFile));
+        try
+        {
+            for (Document document : documents.getDocuments())
+            {
+                Paper paper = parser.parse(document);
+                String outFilename = outFolder + StringUtils.removeEndIgnoreCase(document.getId(), ".pdf") + "-paper.json";
+                mapper.writeValue(new File(outFilename), paper);
+            }
+            return documents.size();
+        } finally
+        {
+            documents.close();
+        }
+    }
+
+    private FilenameFilter getFilter()
+    {
+        return new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return StringUtils.endsWithIgnoreCase(name, ".pdf");
+            }
+        };
+    }
+}
@@ -3,29 +3,50 @@ package in.codehub.examples;
 import in.codehub.document.Document;
 import in.codehub.paperparser.Paper;
 import in.codehub.paperparser.PaperParser;
+import in.codehub.pipeline.BatchPipeline;
+import in.codehub.pipeline.BatchReport;
 import org.apache.commons.lang3.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class PaperParserExample
 {
-    public void run(String inputFolder, String outFolder) throws IOException
+    public BatchReport run(String inputFolder, final String outFolder) throws InterruptedException
     {
         File[] files = new File(inputFolder).listFiles(getFilter());
-        PaperParser builder = PaperParser.getInstance();
-        ObjectMapper mapper = new ObjectMapper();
-        for (final File file : files)
-        {
-            String inFilePath = file.getAbsolutePath();
-            String inFilename = file.getName();
-          Document document = mapper.readValue(new File(inFilePath), Document.class);
-            Paper paper = builder.parse(document);
-            String outFilename = outFolder + StringUtils.removeEndIgnoreCase(inFilename, ".json") + "-paper.json";
-            mapper.writeValue(new File(outFilename), paper);
-        }
+        final PaperParser builder = PaperParser.getInstance();
+        final ObjectMapper mapper = new ObjectMapper();
+        BatchPipeline<Document, Paper> pipeline = new BatchPipeline<Document, Paper>(
+                new BatchPipeline.Loader<Document>()
+                {
+                    @Override
+                    public Document load(File file) throws IOException
+                    {
+                        return mapper.readValue(file, Document.class);
+                    }
+                },
+                new BatchPipeline.Processor<Document, Paper>()
+                {
+                    @Override
+                    public Paper process(File file, Document document) throws IOException
+                    {
+                        return builder.parse(document);
+                    }
+                },
+                new BatchPipeline.Writer<Paper>()
+                {
+                    @Override
+                    public void write(File file, Paper paper) throws IOException
+                    {
+                        String outFilename = outFolder + StringUtils.removeEndIgnoreCase(file.getName(), ".json") + "-paper.json";
+                        mapper.writeValue(new File(outFilename), paper);
+                    }
+                });
+        return pipeline.run(Arrays.asList(files));
     }
 
     private FilenameFilter getFilter()
@@ -2,29 +2,62 @@ package in.codehub.examples;
 
 import in.codehub.document.Document;
 import in.codehub.pdfreader.PdfReader;
+import in.codehub.pipeline.BatchPipeline;
+import in.codehub.pipeline.BatchReport;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.codehaus.jackson.map.ObjectMapper;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class PdfReaderExample
 {
-    public void run(String inputFolder, String outFolder) throws IOException
+    public BatchReport run(String inputFolder, final String outFolder) throws IOException, InterruptedException
     {
-        PdfReader pdfReader = PdfReader.getInstance();
+        final PdfReader pdfReader = PdfReader.getInstance();
         File[] files = new File(inputFolder).listFiles(getFilter());
-        ObjectMapper mapper = new ObjectMapper();
-        for (final File fileEntry : files)
+        final ObjectMapper mapper = new ObjectMapper();
+        BatchPipeline<PDDocument, Document> pipeline = new BatchPipeline<PDDocument, Document>(
+                new BatchPipeline.Loader<PDDocument>()
+                {
+                    @Override
+                    public PDDocument load(File file) throws IOException
+                    {
+                        return PDDocument.load(file);
+                    }
+                },
+                new BatchPipeline.Processor<PDDocument, Document>()
+                {
+                    @Override
+                    public Document process(File file, PDDocument pdf) throws IOException
+                    {
+                        Document document = pdfReader.read(pdf);
+                        document.setId(file.getName());
+                        return document;
+                    }
+                },
+                new BatchPipeline.Writer<Document>()
+                {
+                    @Override
+                    public void write(File file, Document document) throws IOException
+                    {
+                        String outFilePath = outFolder + StringUtils.removeEndIgnoreCase(file.getName(), ".pdf") + ".json";
+                        mapper.writeValue(new File(outFilePath), document);
+                    }
+                });
+        // PDDocument is not Closeable, documents left over by an interrupted run are closed here.
+        pipeline.setSourceDiscarder(new BatchPipeline.Discarder<PDDocument>()
         {
-            String inFilePath = fileEntry.getAbsolutePath();
-            String inFilename = fileEntry.getName();
-            Document document = pdfReader.read(inFilePath);
-            document.setId(inFilename);
-            String outFilePath = outFolder + StringUtils.removeEndIgnoreCase(inFilename, ".pdf") + ".json";
-            mapper.writeValue(new File(outFilePath), document);
-        }
+            @Override
+            public void discard(PDDocument pdf) throws IOException
+            {
+                pdf.close();
+            }
+        });
+        return pipeline.run(Arrays.asList(files));
     }
 
     private FilenameFilter getFilter()
@@ -1,9 +1,10 @@
 package in.codehub.examples;
 
-import in.codehub.document.Document;
+import in.codehub.paperparser.ExtractionPlan;
 import in.codehub.paperparser.Paper;
 import in.codehub.paperparser.PaperParser;
 import in.codehub.pdfreader.PdfReader;
+import in.codehub.pdfreader.ReadSession;
 
 import java.io.IOException;
 
@@ -11,7 +12,13 @@ public class SimpleExample
 {
     public Paper run(String filePath) throws IOException
     {
-        Document document = PdfReader.getInstance().read(filePath);
-        return PaperParser.getInstance().parse(document);
+        ReadSession session = PdfReader.getInstance().open(filePath);
+        try
+        {
+            return PaperParser.getInstance().parse(session, ExtractionPlan.all());
+        } finally
+        {
+            session.close();
+        }
     }
 }
@@ -0,0 +1,21 @@
+package in.codehub.examples;
+
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.synthetic.CorpusHarness;
+import in.codehub.synthetic.HarnessReport;
+import in.codehub.synthetic.PaperGenerator;
+
+import java.io.IOException;
+
+public class SyntheticCorpusExample
+{
+    public HarnessReport run(int documents, int columns) throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setColumns(columns);
+        generator.setPages(4);
+        CorpusHarness harness = new CorpusHarness(PdfReader.getInstance(), PaperParser.getInstance());
+        return harness.run(generator, 1, documents);
+    }
+}
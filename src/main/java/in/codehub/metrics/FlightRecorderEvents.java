@@ -0,0 +1,203 @@
+package in.codehub.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * The Flight Recorder side of {@link Tracing}, loaded only on JVMs with jdk.jfr.
+ */
+class FlightRecorderEvents implements Tracing.Recorder
+{
+    @Override
+    public Tracing.Span beginDocument()
+    {
+        DocumentRead event = new DocumentRead();
+        if (!event.isEnabled())
+            return Tracing.Span.NONE;
+        event.begin();
+        return new DocumentSpan(event);
+    }
+
+    @Override
+    public Tracing.Span beginPage()
+    {
+        PageParse event = new PageParse();
+        if (!event.isEnabled())
+            return Tracing.Span.NONE;
+        event.begin();
+        return new PageSpan(event);
+    }
+
+    @Override
+    public Tracing.Span beginPaper()
+    {
+        PaperParse event = new PaperParse();
+        if (!event.isEnabled())
+            return Tracing.Span.NONE;
+        event.begin();
+        return new PaperSpan(event);
+    }
+
+    @Name("in.codehub.DocumentRead")
+    @Label("Document Read")
+    @Category({"Research Paper Parser"})
+    @Description("PdfReader.read of one pdf, loading included")
+    static class DocumentRead extends Event
+    {
+        @Label("Document Id")
+        String documentId;
+        @Label("Path")
+        String path;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Pages")
+        int pages;
+        @Label("Glyphs")
+        long glyphs;
+        @Label("Lines")
+        long lines;
+        @Label("Truncated")
+        @Description("A read limit cut the read short")
+        boolean truncated;
+        @Label("Failed")
+        @Description("The read threw, the counts are those up to the failure")
+        boolean failed;
+    }
+
+    @Name("in.codehub.PageParse")
+    @Label("Page Parse")
+    @Category({"Research Paper Parser"})
+    @Description("Collecting the glyphs of one page and splitting them into lines and paragraphs")
+    static class PageParse extends Event
+    {
+        @Label("Document Id")
+        String documentId;
+        @Label("Page")
+        int page;
+        @Label("Content Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Glyphs")
+        long glyphs;
+        @Label("Lines")
+        long lines;
+        @Label("Truncated")
+        @Description("A read limit cut the page short")
+        boolean truncated;
+        @Label("Failed")
+        @Description("The page threw, the counts are those up to the failure")
+        boolean failed;
+    }
+
+    @Name("in.codehub.PaperParse")
+    @Label("Paper Parse")
+    @Category({"Research Paper Parser"})
+    @Description("PaperParser.parse of one document")
+    static class PaperParse extends Event
+    {
+        @Label("Document Id")
+        String documentId;
+        @Label("Pages")
+        int pages;
+        @Label("Lines")
+        long lines;
+    }
+
+    private static class DocumentSpan extends Tracing.Span
+    {
+        private final DocumentRead event;
+
+        private DocumentSpan(DocumentRead event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isRecording()
+        {
+            return true;
+        }
+
+        @Override
+        public void commitDocument(String documentId, String path, long bytes, int pages, long glyphs, long lines,
+                                   boolean truncated, boolean failed)
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.documentId = documentId;
+                event.path = path;
+                event.bytes = bytes;
+                event.pages = pages;
+                event.glyphs = glyphs;
+                event.lines = lines;
+                event.truncated = truncated;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private static class PageSpan extends Tracing.Span
+    {
+        private final PageParse event;
+
+        private PageSpan(PageParse event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isRecording()
+        {
+            return true;
+        }
+
+        @Override
+        public void commitPage(String documentId, int page, long bytes, long glyphs, long lines, boolean truncated,
+                               boolean failed)
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.documentId = documentId;
+                event.page = page;
+                event.bytes = bytes;
+                event.glyphs = glyphs;
+                event.lines = lines;
+                event.truncated = truncated;
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+
+    private static class PaperSpan extends Tracing.Span
+    {
+        private final PaperParse event;
+
+        private PaperSpan(PaperParse event)
+        {
+            this.event = event;
+        }
+
+        @Override
+        public boolean isRecording()
+        {
+            return true;
+        }
+
+        @Override
+        public void commitPaper(String documentId, int pages, long lines)
+        {
+            event.end();
+            if (event.shouldCommit())
+            {
+                event.documentId = documentId;
+                event.pages = pages;
+                event.lines = lines;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package in.codehub.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps a latency histogram per stage and the counters in memory, cheap enough to leave on in production. Share
+ * one instance between the readers and parsers to observe, and publish it with {@link #registerMBean}.
+ */
+public class InMemoryMetrics implements Metrics
+{
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+
+    public InMemoryMetrics()
+    {
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i] = new LatencyHistogram();
+    }
+
+    @Override
+    public void record(Stage stage, long nanos)
+    {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void increment(Counter counter, long delta)
+    {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * Latencies of the stage in nanoseconds.
+     */
+    public LatencyHistogram getHistogram(Stage stage)
+    {
+        return histograms[stage.ordinal()];
+    }
+
+    public long getCount(Counter counter)
+    {
+        return counters.get(counter.ordinal());
+    }
+
+    public void reset()
+    {
+        for (LatencyHistogram histogram : histograms)
+            histogram.reset();
+        for (int i = 0; i < counters.length(); i++)
+            counters.set(i, 0);
+    }
+
+    /**
+     * Publishes the counters and the count, mean, median, 99th percentile and max of every stage (in
+     * microseconds) as attributes of an MBean of the platform MBean server, with a reset operation.
+     */
+    public ObjectName registerMBean(String name) throws JMException
+    {
+        ObjectName objectName = new ObjectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(new MetricsMBean(this), objectName);
+        return objectName;
+    }
+
+    public void unregisterMBean(ObjectName name) throws JMException
+    {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+}
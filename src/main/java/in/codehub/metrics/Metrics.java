@@ -0,0 +1,67 @@
+package in.codehub.metrics;
+
+/**
+ * Receives the stage latencies and counters of reading and parsing papers. Implementations are called from every
+ * thread that reads, concurrently, and on the hot path of the parser, so recording must be cheap and must not
+ * block. {@link #NONE} is the default and makes the readers skip timing altogether.
+ */
+public interface Metrics
+{
+    enum Stage
+    {
+        /**
+         * PDDocument.load, parsing the file structure.
+         */
+        LOAD,
+        /**
+         * Running the content stream of a page, collecting its glyphs.
+         */
+        PROCESS_STREAM,
+        /**
+         * Splitting the glyphs of a page into lines and paragraphs, without the listener callbacks.
+         */
+        PARSE_PAGE,
+        /**
+         * Listener callbacks of a page: building lines, paragraphs and layout stats.
+         */
+        LISTENER,
+        /**
+         * PaperParser.parse of one document.
+         */
+        PAPER_PARSE
+    }
+
+    enum Counter
+    {
+        PAGES,
+        GLYPHS,
+        /**
+         * Glyphs dropped because they overlap the same glyph drawn before, as done for fake bold text.
+         */
+        SUPPRESSED_GLYPHS,
+        /**
+         * Glyphs of repeated form XObjects, such as running headers, drawn from the glyphs kept from an earlier
+         * draw instead of interpreting the form again.
+         */
+        REPLAYED_GLYPHS,
+        LINES,
+        PARAGRAPHS
+    }
+
+    Metrics NONE = new Metrics()
+    {
+        @Override
+        public void record(Stage stage, long nanos)
+        {
+        }
+
+        @Override
+        public void increment(Counter counter, long delta)
+        {
+        }
+    };
+
+    void record(Stage stage, long nanos);
+
+    void increment(Counter counter, long delta);
+}
@@ -0,0 +1,134 @@
+package in.codehub.metrics;
+
+import javax.management.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attributes of {@link InMemoryMetrics}: one per counter, named like "suppressedGlyphs", and "parsePage.p99Micros"
+ * style ones per stage.
+ */
+class MetricsMBean implements DynamicMBean
+{
+    private static final String[] STATISTICS = {"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"};
+    private static final String RESET = "reset";
+
+    private final InMemoryMetrics metrics;
+    private final MBeanInfo info;
+
+    MetricsMBean(InMemoryMetrics metrics)
+    {
+        this.metrics = metrics;
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (Metrics.Counter counter : Metrics.Counter.values())
+        {
+            attributes.add(new MBeanAttributeInfo(name(counter), "long", counter.name(), true, false, false));
+        }
+        for (Metrics.Stage stage : Metrics.Stage.values())
+        {
+            for (String statistic : STATISTICS)
+            {
+                String type = statistic.equals("meanMicros") ? "double" : "long";
+                attributes.add(new MBeanAttributeInfo(name(stage) + "." + statistic, type,
+                        statistic + " of " + stage.name(), true, false, false));
+            }
+        }
+        MBeanOperationInfo reset = new MBeanOperationInfo(RESET, "Clears all counters and histograms",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        this.info = new MBeanInfo(InMemoryMetrics.class.getName(), "Paper reading metrics",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null,
+                new MBeanOperationInfo[]{reset}, null);
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException
+    {
+        for (Metrics.Counter counter : Metrics.Counter.values())
+        {
+            if (attribute.equals(name(counter)))
+                return metrics.getCount(counter);
+        }
+        int dot = attribute.indexOf('.');
+        if (dot > 0)
+        {
+            String statistic = attribute.substring(dot + 1);
+            for (Metrics.Stage stage : Metrics.Stage.values())
+            {
+                if (attribute.substring(0, dot).equals(name(stage)))
+                {
+                    LatencyHistogram histogram = metrics.getHistogram(stage);
+                    if (statistic.equals("count"))
+                        return histogram.getCount();
+                    if (statistic.equals("meanMicros"))
+                        return histogram.getMean() / 1000;
+                    if (statistic.equals("p50Micros"))
+                        return histogram.getValueAtPercentile(50) / 1000;
+                    if (statistic.equals("p99Micros"))
+                        return histogram.getValueAtPercentile(99) / 1000;
+                    if (statistic.equals("maxMicros"))
+                        return histogram.getMax() / 1000;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes)
+    {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes)
+        {
+            try
+            {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e)
+            {
+                // left out, as the contract of getAttributes asks.
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(attribute.getName() + " is read only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+    {
+        if (RESET.equals(actionName))
+        {
+            metrics.reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        return info;
+    }
+
+    /**
+     * PARSE_PAGE as parsePage.
+     */
+    private static String name(Enum<?> value)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String word : value.name().toLowerCase().split("_"))
+        {
+            sb.append(sb.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,119 @@
+package in.codehub.metrics;
+
+/**
+ * JDK Flight Recorder events of the reader and the paper parser: one per document read, per page parsed and per
+ * paper parsed, each with its duration, so a recording shows the slowest documents and pages. On a JVM without
+ * jdk.jfr nothing is recorded, and when no recording is running a begin costs a flag check.
+ */
+public final class Tracing
+{
+    private static final Recorder RECORDER = load();
+
+    interface Recorder
+    {
+        Span beginDocument();
+
+        Span beginPage();
+
+        Span beginPaper();
+    }
+
+    /**
+     * An event begun, commit it with the method matching the begin call. Spans of events that are not being
+     * recorded ignore commits.
+     */
+    public static class Span
+    {
+        static final Span NONE = new Span();
+
+        public boolean isRecording()
+        {
+            return false;
+        }
+
+        /**
+         * @param path      file read, null when read from a stream or a loaded document.
+         * @param bytes     size of the pdf, -1 when not known.
+         * @param truncated whether a read limit cut the read short.
+         * @param failed    whether the read threw, the counts are then those up to the failure.
+         */
+        public void commitDocument(String documentId, String path, long bytes, int pages, long glyphs, long lines,
+                                   boolean truncated, boolean failed)
+        {
+        }
+
+        /**
+         * @param bytes encoded size of the content stream of the page.
+         */
+        public void commitPage(String documentId, int page, long bytes, long glyphs, long lines, boolean truncated,
+                               boolean failed)
+        {
+        }
+
+        public void commitPaper(String documentId, int pages, long lines)
+        {
+        }
+    }
+
+    private Tracing()
+    {
+    }
+
+    public static Span beginDocument()
+    {
+        return RECORDER.beginDocument();
+    }
+
+    public static Span beginPage()
+    {
+        return RECORDER.beginPage();
+    }
+
+    public static Span beginPaper()
+    {
+        return RECORDER.beginPaper();
+    }
+
+    private static Recorder load()
+    {
+        try
+        {
+            // the events extend jdk.jfr.Event, only load them where it exists (Java 11, 8u262 and later).
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName("in.codehub.metrics.FlightRecorderEvents").getDeclaredConstructor()
+                    .newInstance();
+        } catch (Exception e)
+        {
+            // no jdk.jfr, or the events could not be created.
+            return none();
+        } catch (LinkageError e)
+        {
+            // a jdk.jfr without the API the events use.
+            return none();
+        }
+    }
+
+    private static Recorder none()
+    {
+        return new Recorder()
+        {
+            @Override
+            public Span beginDocument()
+            {
+                return Span.NONE;
+            }
+
+            @Override
+            public Span beginPage()
+            {
+                return Span.NONE;
+            }
+
+            @Override
+            public Span beginPaper()
+            {
+                return Span.NONE;
+            }
+        };
+    }
+}
@@ -0,0 +1,55 @@
+package in.codehub.paperparser;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The {@link Paper} fields a caller needs and the most pages that may be parsed to find them. Title and authors
+ * only ever need the first page, abstract and keywords extend the parse a page at a time until they are found.
+ */
+public class ExtractionPlan
+{
+    private static final int DEFAULT_MAX_PAGES = 3;
+
+    private final Set<PaperField> fields;
+    private final int maxPages;
+
+    public ExtractionPlan(PaperField... fields)
+    {
+        this(DEFAULT_MAX_PAGES, fields);
+    }
+
+    public ExtractionPlan(int maxPages, PaperField... fields)
+    {
+        this.fields = fields.length == 0 ? EnumSet.noneOf(PaperField.class) : EnumSet.copyOf(Arrays.asList(fields));
+        this.maxPages = Math.max(1, maxPages);
+    }
+
+    public static ExtractionPlan all()
+    {
+        return new ExtractionPlan(PaperField.values());
+    }
+
+    public boolean needs(PaperField field)
+    {
+        return fields.contains(field);
+    }
+
+    public int getMaxPages()
+    {
+        return maxPages;
+    }
+
+    /**
+     * Fields are extracted in declaration order, each one starting where the previous one ended, so everything up
+     * to the last requested field has to be extracted.
+     */
+    PaperField lastField()
+    {
+        PaperField last = null;
+        for (PaperField field : fields)
+            last = field;
+        return last;
+    }
+}
@@ -0,0 +1,217 @@
+package in.codehub.paperparser;
+
+import in.codehub.pdfreader.DocumentMetadata;
+import in.codehub.pdfreader.ReadSession;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * A first tier in front of the layout parser: the paper is taken from the title, authors, keywords and subject the
+ * pdf declares in its metadata when they are plausible and show up in the first lines of the first page, which are
+ * decoded straight from its content stream. The page is then never laid out. Papers whose metadata is missing, looks
+ * like a file name or a user account, or does not match the page fall through to the {@link PaperParser}.
+ * The abstract is only taken from the subject when it is long enough to be one, otherwise a plan that needs it
+ * goes to the layout parser.
+ */
+public class MetadataFirstParser
+{
+    // the first lines of a page, where title and authors are.
+    static final int FIRST_LINES_CHARS = 1500;
+    // the part of the page the abstract and keywords are looked for in.
+    static final int PROBE_CHARS = 6000;
+    private static final double TITLE_WORDS_FOUND = 0.8;
+    private static final int MIN_ABSTRACT_WORDS = 20;
+    private static final int ABSTRACT_START_WORDS = 6;
+
+    // file names, placeholders and what word processors put in by default.
+    private static final Pattern NOT_A_TITLE = Pattern.compile("(?i)^microsoft (word|powerpoint) - .*"
+            + "|^(untitled|title|document|slide|paper|draft|manuscript|main|article)[\\s\\d._-]*$"
+            + "|.*\\.(pdf|docx?|rtf|tex|dvi|ps|indd|odt|qxd)$");
+    private static final Set<String> NOT_AN_AUTHOR = new HashSet<String>(Arrays.asList("admin", "administrator",
+            "user", "owner", "author", "unknown", "editor", "publisher"));
+
+    private final PaperParser layoutParser;
+    private final AtomicLong metadataPapers = new AtomicLong();
+    private final AtomicLong layoutPapers = new AtomicLong();
+
+    public MetadataFirstParser(PaperParser layoutParser)
+    {
+        this.layoutParser = layoutParser;
+    }
+
+    public Paper parse(ReadSession session, ExtractionPlan plan) throws IOException
+    {
+        Paper paper = fromMetadata(session, plan);
+        if (paper != null)
+        {
+            metadataPapers.incrementAndGet();
+            return paper;
+        }
+        layoutPapers.incrementAndGet();
+        return layoutParser.parse(session, plan);
+    }
+
+    public long getMetadataPapers()
+    {
+        return metadataPapers.get();
+    }
+
+    public long getLayoutPapers()
+    {
+        return layoutPapers.get();
+    }
+
+    /**
+     * The fraction of papers taken from their metadata.
+     */
+    public double getMetadataFraction()
+    {
+        long metadata = metadataPapers.get();
+        long total = metadata + layoutPapers.get();
+        return total == 0 ? 0 : (double) metadata / total;
+    }
+
+    /**
+     * The paper as the metadata declares it, null when the layout parser has to read it.
+     */
+    Paper fromMetadata(ReadSession session, ExtractionPlan plan) throws IOException
+    {
+        PaperField last = plan.lastField();
+        if (last == null || session.getPageCount() == 0)
+            return null;
+        DocumentMetadata metadata = session.getMetadata();
+        if (!isPlausibleTitle(metadata.getTitle()))
+            return null;
+        boolean needsAuthors = last.compareTo(PaperField.AUTHORS) >= 0;
+        boolean needsAbstract = last.compareTo(PaperField.ABSTRACT) >= 0;
+        boolean needsKeywords = last.compareTo(PaperField.KEYWORDS) >= 0;
+        if (needsAuthors && !arePlausibleAuthors(metadata.getAuthors()))
+            return null;
+        if (needsAbstract && words(metadata.getSubject()).length < MIN_ABSTRACT_WORDS)
+            return null;
+        if (needsKeywords && metadata.getKeywords().isEmpty())
+            return null;
+
+        String text = normalize(session.peekFirstPage(needsAbstract ? PROBE_CHARS : FIRST_LINES_CHARS));
+        Set<String> firstLines = new HashSet<String>(Arrays.asList(words(
+                text.substring(0, Math.min(text.length(), FIRST_LINES_CHARS)))));
+        if (!containsTitle(firstLines, metadata.getTitle()))
+            return null;
+        if (needsAuthors && !containsAuthors(firstLines, metadata.getAuthors()))
+            return null;
+        if (needsAbstract && !text.contains(start(metadata.getSubject())))
+            return null;
+        if (needsKeywords && !containsKeywords(text, metadata.getKeywords()))
+            return null;
+
+        // sessions carry no document id, as on the layout path.
+        Paper paper = new Paper(null);
+        paper.setTitle(metadata.getTitle());
+        if (needsAuthors)
+            paper.getAuthors().addAll(metadata.getAuthors());
+        if (needsAbstract)
+            paper.setAbstract(metadata.getSubject());
+        if (needsKeywords)
+            paper.getKeywords().addAll(metadata.getKeywords());
+        return paper;
+    }
+
+    static boolean isPlausibleTitle(String title)
+    {
+        return title.length() >= 10 && title.length() <= 300 && words(normalize(title)).length >= 2
+                && !NOT_A_TITLE.matcher(title.trim()).matches();
+    }
+
+    /**
+     * Names of two to six words, none an account name, without digits or mail addresses.
+     */
+    static boolean arePlausibleAuthors(List<String> authors)
+    {
+        if (authors.isEmpty())
+            return false;
+        for (String author : authors)
+        {
+            String[] names = StringUtils.split(author);
+            if (names.length < 2 || names.length > 6 || author.contains("@")
+                    || StringUtils.containsAny(author, "0123456789")
+                    || NOT_AN_AUTHOR.contains(author.trim().toLowerCase()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether most words of the title are on the first lines, short words aside.
+     */
+    private static boolean containsTitle(Set<String> firstLines, String title)
+    {
+        int words = 0;
+        int found = 0;
+        for (String word : words(normalize(title)))
+        {
+            if (word.length() < 3)
+                continue;
+            words++;
+            if (firstLines.contains(word))
+                found++;
+        }
+        return words > 0 && found >= words * TITLE_WORDS_FOUND;
+    }
+
+    /**
+     * Whether the last name of every author is on the first lines.
+     */
+    private static boolean containsAuthors(Set<String> firstLines, List<String> authors)
+    {
+        for (String author : authors)
+        {
+            String[] names = words(normalize(author));
+            if (names.length == 0 || !firstLines.contains(names[names.length - 1]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Whether at least half of the keywords are on the page.
+     */
+    private static boolean containsKeywords(String text, List<String> keywords)
+    {
+        int found = 0;
+        for (String keyword : keywords)
+        {
+            String normalized = normalize(keyword);
+            if (normalized.length() > 0 && text.contains(normalized))
+                found++;
+        }
+        return found * 2 >= keywords.size();
+    }
+
+    private static String start(String abstract_)
+    {
+        String[] words = words(normalize(abstract_));
+        return StringUtils.join(words, ' ', 0, Math.min(words.length, ABSTRACT_START_WORDS));
+    }
+
+    /**
+     * Lower case letters and digits with single spaces, so text decoded from the page compares with the metadata
+     * however it was broken into lines and hyphenated.
+     */
+    private static String normalize(String text)
+    {
+        return StringUtils.normalizeSpace(text.replaceAll("-\\s*\\n\\s*", "").replaceAll("[^\\p{L}\\p{N}]+", " "))
+                .toLowerCase();
+    }
+
+    private static String[] words(String text)
+    {
+        return StringUtils.split(text);
+    }
+}
@@ -0,0 +1,6 @@
+package in.codehub.paperparser;
+
+public enum PaperField
+{
+    TITLE, AUTHORS, ABSTRACT, KEYWORDS
+}
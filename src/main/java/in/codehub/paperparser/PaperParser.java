@@ -1,8 +1,12 @@
 package in.codehub.paperparser;
 
 import in.codehub.document.*;
+import in.codehub.metrics.Metrics;
+import in.codehub.metrics.Tracing;
+import in.codehub.pdfreader.ReadSession;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -15,14 +19,22 @@ public class PaperParser
             "Abstract", "Email", " of ", ","};
     private Pattern EMAIL_REGEX = Pattern.compile("^[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,6}$", Pattern.CASE_INSENSITIVE);
     private static final String SPACE = " ";
-    private float absConf = 1;
+    private final Metrics metrics;
 
     private PaperParser()
     {
+        this(Metrics.NONE);
+    }
 
+    /**
+     * A parser that records the latency of every parse, the shared instance records nothing.
+     */
+    public PaperParser(Metrics metrics)
+    {
+        this.metrics = metrics;
     }
 
-    public static PaperParser getInstance()
+    public static synchronized PaperParser getInstance()
     {
         if (instance == null)
         {
@@ -33,19 +45,99 @@ public class PaperParser
 
     public Paper parse(Document document)
     {
-        absConf = 1;
+        return parse(document, ExtractionPlan.all());
+    }
+
+    public Paper parse(Document document, ExtractionPlan plan)
+    {
+        Tracing.Span span = Tracing.beginPaper();
+        if (metrics == Metrics.NONE && !span.isRecording())
+            return extract(document, plan);
+        long start = System.nanoTime();
+        Paper paper = extract(document, plan);
+        metrics.record(Metrics.Stage.PAPER_PARSE, System.nanoTime() - start);
+        if (span.isRecording())
+            span.commitPaper(document.getId(), document.getPages().size(), countLines(document));
+        return paper;
+    }
+
+    private static long countLines(Document document)
+    {
+        long lines = 0;
+        for (Page page : document.getPages())
+        {
+            for (Paragraph paragraph : page.getParagraphs())
+                lines += paragraph.getLines().size();
+        }
+        return lines;
+    }
+
+    private Paper extract(Document document, ExtractionPlan plan)
+    {
         Paper paper = new Paper(document.getId());
+        PaperField last = plan.lastField();
+        if (last == null) return paper;
+
         markUseless(document);
         DocumentIterator iterator = new DocumentIterator(document);
         paper.setTitle(extractTitle(iterator));
-        paper.getAuthors().addAll(extractAuthors(iterator));
-        paper.setAbstract(extractAbstract(iterator));
-        paper.getKeywords().addAll(extractKeywords(iterator));
+        if (last.compareTo(PaperField.AUTHORS) >= 0)
+            paper.getAuthors().addAll(extractAuthors(iterator));
+        if (last.compareTo(PaperField.ABSTRACT) >= 0)
+            paper.setAbstract(extractAbstract(iterator));
+        if (last.compareTo(PaperField.KEYWORDS) >= 0)
+            paper.getKeywords().addAll(extractKeywords(iterator));
         return paper;
     }
 
+    /**
+     * Parses only as many pages of the session as the plan needs: the first page, then one more at a time while
+     * a requested abstract or keyword section has not been found, up to the plan's page budget.
+     */
+    public Paper parse(ReadSession session, ExtractionPlan plan) throws IOException
+    {
+        int pages = 1;
+        Document document = session.readPages(pages);
+        Paper paper = parse(document, plan);
+        while (pages < plan.getMaxPages() && session.hasMorePages() && needsMorePages(paper, document, plan))
+        {
+            document = session.readPages(++pages);
+            clearTags(document);
+            paper = parse(document, plan);
+        }
+        return paper;
+    }
+
+    private boolean needsMorePages(Paper paper, Document document, ExtractionPlan plan)
+    {
+        if (plan.needs(PaperField.KEYWORDS) && paper.getKeywords().isEmpty())
+            return true;
+        if (plan.needs(PaperField.ABSTRACT))
+        {
+            // an abstract that runs into the last parsed paragraph may continue on the next page.
+            Paragraph last = lastParagraph(document);
+            return paper.getAbstract().length() == 0 || (last != null && paper.getAbstract().endsWith(last.text()));
+        }
+        return false;
+    }
+
+    private Paragraph lastParagraph(Document document)
+    {
+        List<Page> pages = document.getPages();
+        if (pages.isEmpty()) return null;
+        List<Paragraph> paragraphs = pages.get(pages.size() - 1).getParagraphs();
+        return paragraphs.isEmpty() ? null : paragraphs.get(paragraphs.size() - 1);
+    }
+
+    private void clearTags(Document document)
+    {
+        for (DocumentIterator iterator = document.iterator(); iterator.hasNextLine(); )
+            iterator.nextLine().setTag(null);
+    }
+
     private String extractAbstract(DocumentIterator iterator)
     {
+        if (iterator.currParagraph() == null) return "";
         String abs = iterator.currParagraph().text();
         int abstractFontSize = iterator.currParagraph().fontSize();
         Paragraph paragraph;
@@ -110,7 +202,7 @@ public class PaperParser
                 String str = StringUtils.normalizeSpace(keyword).replaceAll("[^A-Za-z0-9 ]", " ");
                 keywords.add(StringUtils.removeStart(str, "and "));
             }
-            paragraph = iterator.nextParagraph();
+            paragraph = iterator.hasNextParagraph() ? iterator.nextParagraph() : null;
         }
         return new ArrayList<String>(keywords);
     }
@@ -207,6 +299,7 @@ public class PaperParser
 
     private boolean isKeyWordSection(Paragraph paragraph)
     {
+        if (paragraph == null) return false;
         String getText = paragraph.text().trim().toLowerCase();
         return getText.length() < 150 && StringUtils.startsWithAny(getText, PREFIXES);
     }
@@ -219,12 +312,7 @@ public class PaperParser
         String getText = currPara.text();
         if (getText.length() > 20 && StringUtils.startsWithIgnoreCase(getText, ABSTRACT)) return true;
 
-        if (getText.length() > 350)
-        {
-            absConf *= .9;
-            return true;
-        }
-        return false;
+        return getText.length() > 350;
     }
 
     private void markUseless(Document document)
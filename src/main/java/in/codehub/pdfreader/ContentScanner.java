@@ -0,0 +1,509 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tokenizes a content stream for text extraction. The decoded stream is read into a buffer in bulk and operands are
+ * only turned into COS objects for the operators the engine processes, everything else (path construction and
+ * painting, colour, shading, marked content) is skipped without parsing its operands. Inline image data is skipped
+ * as a whole. Strings keep their raw end of line bytes, as in the PDFBox tokenizer.
+ */
+final class ContentScanner
+{
+    interface Handler
+    {
+        void operator(String name, List<COSBase> operands) throws IOException;
+
+        /**
+         * Called for every operator that is skipped, inline images included.
+         */
+        void skipped() throws IOException;
+    }
+
+    private static final int TRIMMED_SIZE = 1 << 16;
+
+    private final int[] processedKeys;
+    private final String[] processedNames;
+    private final List<COSBase> operands = new ArrayList<COSBase>();
+    private byte[] data = new byte[TRIMMED_SIZE];
+    private int length;
+    // read position while operands are parsed.
+    private int cursor;
+
+    /**
+     * @param processed names of the operators whose operands are parsed, at most four bytes long.
+     */
+    ContentScanner(String[] processed)
+    {
+        processedKeys = new int[processed.length];
+        for (int i = 0; i < processed.length; i++)
+            processedKeys[i] = key(processed[i]);
+        Arrays.sort(processedKeys);
+        processedNames = new String[processed.length];
+        for (String name : processed)
+            processedNames[Arrays.binarySearch(processedKeys, key(name))] = name;
+    }
+
+    /**
+     * Drops a buffer grown by a large stream.
+     */
+    void trim()
+    {
+        if (data.length > TRIMMED_SIZE)
+            data = new byte[TRIMMED_SIZE];
+    }
+
+    private static int key(String name)
+    {
+        int key = 0;
+        for (int i = 0; i < name.length(); i++)
+            key = key << 8 | name.charAt(i) & 0xff;
+        return key;
+    }
+
+    void scan(InputStream in, Handler handler) throws IOException
+    {
+        read(in);
+        int operandStart = -1;
+        int pos = 0;
+        while (pos < length)
+        {
+            int b = data[pos] & 0xff;
+            if (isWhitespace(b))
+            {
+                pos++;
+            }
+            else if (b == '%')
+            {
+                pos = skipComment(pos);
+            }
+            else if (isDelimiter(b) || isNumberStart(b))
+            {
+                if (operandStart < 0)
+                    operandStart = pos;
+                pos = skipOperand(pos);
+            }
+            else
+            {
+                int end = skipRegular(pos);
+                if (isOperand(pos, end))
+                {
+                    if (operandStart < 0)
+                        operandStart = pos;
+                }
+                else
+                {
+                    operator(pos, end, operandStart, handler);
+                    if (end - pos == 2 && data[pos] == 'B' && data[pos + 1] == 'I')
+                        end = skipInlineImage(end);
+                    operandStart = -1;
+                }
+                pos = end;
+            }
+        }
+    }
+
+    private void read(InputStream in) throws IOException
+    {
+        length = 0;
+        try
+        {
+            int n;
+            while ((n = in.read(data, length, data.length - length)) != -1)
+            {
+                length += n;
+                if (length == data.length)
+                    data = Arrays.copyOf(data, data.length * 2);
+            }
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    private void operator(int start, int end, int operandStart, Handler handler) throws IOException
+    {
+        int index = -1;
+        if (end - start <= 4)
+        {
+            int key = 0;
+            for (int i = start; i < end; i++)
+                key = key << 8 | data[i] & 0xff;
+            index = Arrays.binarySearch(processedKeys, key);
+        }
+        if (index < 0)
+        {
+            handler.skipped();
+            return;
+        }
+        operands.clear();
+        if (operandStart >= 0)
+        {
+            cursor = operandStart;
+            while (skipWhitespace(start) < start)
+            {
+                COSBase operand = parseObject(start);
+                if (operand != null)
+                    operands.add(operand);
+            }
+        }
+        handler.operator(processedNames[index], operands);
+    }
+
+    // the skipping tokenizer.
+
+    private int skipOperand(int pos)
+    {
+        int b = data[pos] & 0xff;
+        if (b == '(')
+            return skipLiteralString(pos);
+        if (b == '<')
+        {
+            if (pos + 1 < length && data[pos + 1] == '<')
+                return pos + 2;
+            return indexOf('>', pos + 1) + 1;
+        }
+        if (b == '>')
+            return pos + 1 < length && data[pos + 1] == '>' ? pos + 2 : pos + 1;
+        if (b == '/')
+            return skipRegular(pos + 1);
+        if (isDelimiter(b))
+            return pos + 1;
+        return skipRegular(pos);
+    }
+
+    private int skipLiteralString(int pos)
+    {
+        int depth = 0;
+        for (; pos < length; pos++)
+        {
+            int b = data[pos];
+            if (b == '\\')
+                pos++;
+            else if (b == '(')
+                depth++;
+            else if (b == ')' && --depth == 0)
+                return pos + 1;
+        }
+        return length;
+    }
+
+    private int skipComment(int pos)
+    {
+        while (pos < length && data[pos] != '\r' && data[pos] != '\n')
+            pos++;
+        return pos;
+    }
+
+    private int skipRegular(int pos)
+    {
+        while (pos < length && !isWhitespace(data[pos] & 0xff) && !isDelimiter(data[pos] & 0xff))
+            pos++;
+        return pos;
+    }
+
+    private int skipWhitespace(int limit)
+    {
+        while (cursor < limit)
+        {
+            int b = data[cursor] & 0xff;
+            if (b == '%')
+                cursor = skipComment(cursor);
+            else if (isWhitespace(b))
+                cursor++;
+            else
+                break;
+        }
+        return cursor;
+    }
+
+    /**
+     * Skips the image dictionary, the ID operator and the image data up to and including the EI operator.
+     */
+    private int skipInlineImage(int pos)
+    {
+        while (pos < length)
+        {
+            int b = data[pos] & 0xff;
+            if (isWhitespace(b))
+            {
+                pos++;
+            }
+            else if (b == '%')
+            {
+                pos = skipComment(pos);
+            }
+            else if (isDelimiter(b))
+            {
+                pos = skipOperand(pos);
+            }
+            else
+            {
+                int end = skipRegular(pos);
+                boolean imageData = end - pos == 2 && data[pos] == 'I' && data[pos + 1] == 'D';
+                pos = end;
+                if (!imageData)
+                    continue;
+                // one whitespace byte separates ID from the data, which ends at EI between whitespace.
+                for (pos = end + 1; pos + 1 < length; pos++)
+                {
+                    if (data[pos] == 'E' && data[pos + 1] == 'I' && isWhitespace(data[pos - 1] & 0xff)
+                            && (pos + 2 == length || isWhitespace(data[pos + 2] & 0xff)))
+                        return pos + 2;
+                }
+                return length;
+            }
+        }
+        return length;
+    }
+
+    private int indexOf(int b, int pos)
+    {
+        while (pos < length && data[pos] != b)
+            pos++;
+        return Math.min(pos, length - 1);
+    }
+
+    private boolean isOperand(int start, int end)
+    {
+        return matches(start, end, "true") || matches(start, end, "false") || matches(start, end, "null");
+    }
+
+    private boolean matches(int start, int end, String keyword)
+    {
+        if (end - start != keyword.length())
+            return false;
+        for (int i = 0; i < keyword.length(); i++)
+        {
+            if (data[start + i] != keyword.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(int b)
+    {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+
+    private static boolean isDelimiter(int b)
+    {
+        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']' || b == '{' || b == '}'
+                || b == '/' || b == '%';
+    }
+
+    private static boolean isNumberStart(int b)
+    {
+        return b >= '0' && b <= '9' || b == '-' || b == '+' || b == '.';
+    }
+
+    // the parsing tokenizer, only run over the operands of processed operators.
+
+    /**
+     * The object at the cursor, null for a stray delimiter.
+     */
+    private COSBase parseObject(int limit) throws IOException
+    {
+        int b = data[cursor] & 0xff;
+        switch (b)
+        {
+            case '(':
+                return parseLiteralString(limit);
+            case '<':
+                if (cursor + 1 < limit && data[cursor + 1] == '<')
+                    return parseDictionary(limit);
+                return parseHexString(limit);
+            case '[':
+                return parseArray(limit);
+            case '/':
+                return parseName(limit);
+            default:
+                if (isDelimiter(b))
+                {
+                    cursor++;
+                    return null;
+                }
+                int start = cursor;
+                cursor = Math.min(skipRegular(cursor), limit);
+                if (isNumberStart(b))
+                    return parseNumber(start, cursor);
+                if (matches(start, cursor, "true"))
+                    return COSBoolean.TRUE;
+                if (matches(start, cursor, "false"))
+                    return COSBoolean.FALSE;
+                return COSNull.NULL;
+        }
+    }
+
+    private COSBase parseNumber(int start, int end)
+    {
+        try
+        {
+            return COSNumber.get(new String(data, start, end - start, "ISO-8859-1"));
+        } catch (IOException e)
+        {
+            return COSInteger.ZERO;
+        } catch (NumberFormatException e)
+        {
+            return COSInteger.ZERO;
+        }
+    }
+
+    private COSArray parseArray(int limit) throws IOException
+    {
+        COSArray array = new COSArray();
+        cursor++;
+        while (skipWhitespace(limit) < limit)
+        {
+            if (data[cursor] == ']')
+            {
+                cursor++;
+                break;
+            }
+            COSBase item = parseObject(limit);
+            if (item != null)
+                array.add(item);
+        }
+        return array;
+    }
+
+    private COSDictionary parseDictionary(int limit) throws IOException
+    {
+        COSDictionary dictionary = new COSDictionary();
+        cursor += 2;
+        while (skipWhitespace(limit) < limit)
+        {
+            if (data[cursor] == '>')
+            {
+                cursor = Math.min(cursor + 2, limit);
+                break;
+            }
+            COSBase key = parseObject(limit);
+            if (skipWhitespace(limit) >= limit)
+                break;
+            COSBase value = parseObject(limit);
+            if (key instanceof COSName && value != null)
+                dictionary.setItem((COSName) key, value);
+        }
+        return dictionary;
+    }
+
+    private COSName parseName(int limit) throws IOException
+    {
+        int end = Math.min(skipRegular(cursor + 1), limit);
+        StringBuilder name = new StringBuilder(end - cursor);
+        for (int i = cursor + 1; i < end; i++)
+        {
+            int b = data[i] & 0xff;
+            if (b == '#' && i + 2 < end && hex(data[i + 1]) >= 0 && hex(data[i + 2]) >= 0)
+            {
+                b = hex(data[i + 1]) << 4 | hex(data[i + 2]);
+                i += 2;
+            }
+            name.append((char) b);
+        }
+        cursor = end;
+        return COSName.getPDFName(name.toString());
+    }
+
+    private COSString parseHexString(int limit) throws IOException
+    {
+        COSString string = new COSString();
+        int high = -1;
+        for (cursor++; cursor < limit && data[cursor] != '>'; cursor++)
+        {
+            int digit = hex(data[cursor]);
+            if (digit < 0)
+                continue;
+            if (high < 0)
+            {
+                high = digit;
+            }
+            else
+            {
+                string.append(high << 4 | digit);
+                high = -1;
+            }
+        }
+        if (high >= 0)
+            string.append(high << 4);
+        cursor = Math.min(cursor + 1, limit);
+        return string;
+    }
+
+    private COSString parseLiteralString(int limit) throws IOException
+    {
+        COSString string = new COSString();
+        int depth = 1;
+        for (cursor++; cursor < limit; cursor++)
+        {
+            int b = data[cursor] & 0xff;
+            if (b == '(')
+            {
+                depth++;
+            }
+            else if (b == ')' && --depth == 0)
+            {
+                cursor++;
+                break;
+            }
+            else if (b == '\\' && cursor + 1 < limit)
+            {
+                b = data[++cursor] & 0xff;
+                switch (b)
+                {
+                    case 'n':
+                        b = '\n';
+                        break;
+                    case 'r':
+                        b = '\r';
+                        break;
+                    case 't':
+                        b = '\t';
+                        break;
+                    case 'b':
+                        b = '\b';
+                        break;
+                    case 'f':
+                        b = '\f';
+                        break;
+                    case '\r':
+                        // a backslash at the end of a line continues the string on the next one.
+                        if (cursor + 1 < limit && data[cursor + 1] == '\n')
+                            cursor++;
+                        continue;
+                    case '\n':
+                        continue;
+                    default:
+                        if (b >= '0' && b <= '7')
+                        {
+                            int octal = b - '0';
+                            for (int i = 0; i < 2 && cursor + 1 < limit && data[cursor + 1] >= '0'
+                                    && data[cursor + 1] <= '7'; i++)
+                                octal = octal * 8 + data[++cursor] - '0';
+                            b = octal & 0xff;
+                        }
+                }
+            }
+            string.append(b);
+        }
+        return string;
+    }
+
+    private static int hex(byte b)
+    {
+        if (b >= '0' && b <= '9')
+            return b - '0';
+        if (b >= 'a' && b <= 'f')
+            return b - 'a' + 10;
+        if (b >= 'A' && b <= 'F')
+            return b - 'A' + 10;
+        return -1;
+    }
+}
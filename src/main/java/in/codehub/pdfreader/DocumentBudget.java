@@ -0,0 +1,47 @@
+package in.codehub.pdfreader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The document budgets of a parallel read, shared by all of its workers: one deadline, one count of drawn glyphs
+ * and the first document limit a worker reached, which stops the others at their next check.
+ */
+final class DocumentBudget
+{
+    private final long deadline;
+    private final AtomicLong drawnGlyphs = new AtomicLong();
+    private volatile ReadLimits.Limit reached;
+
+    DocumentBudget(ReadLimits limits)
+    {
+        deadline = limits != null && limits.getDocumentDeadlineMillis() > 0
+                ? System.nanoTime() + limits.getDocumentDeadlineMillis() * 1000000 : Long.MAX_VALUE;
+    }
+
+    long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * Adds glyphs drawn by a worker, returns the glyphs drawn by all of them.
+     */
+    long addDrawnGlyphs(long glyphs)
+    {
+        return drawnGlyphs.addAndGet(glyphs);
+    }
+
+    void reach(ReadLimits.Limit limit)
+    {
+        if (reached == null)
+            reached = limit;
+    }
+
+    /**
+     * The document limit reached by any worker, null while the read goes on.
+     */
+    ReadLimits.Limit getReached()
+    {
+        return reached;
+    }
+}
@@ -0,0 +1,184 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.util.TextNormalize;
+
+class DocumentBuilder extends PDFParserListener
+{
+    private final LineNormalizer normalizer;
+    private final StringBuilder lineBuilder = new StringBuilder();
+    private final FontSizeVote fontSizeVote = new FontSizeVote();
+    private Document document;
+    private PageListener pageListener;
+    private boolean done;
+
+    private final LayoutStats stats = new LayoutStats();
+    private Page currPage;
+    private Paragraph currParagraph;
+    private static final String SPACE = " ";
+
+    DocumentBuilder(TextNormalize normalize)
+    {
+        this.normalizer = new LineNormalizer(normalize);
+    }
+
+    Document getDocument()
+    {
+        return document;
+    }
+
+    LayoutStats getStats()
+    {
+        return stats;
+    }
+
+    void setPageListener(PageListener pageListener)
+    {
+        this.pageListener = pageListener;
+    }
+
+    @Override
+    void startPage(PDPage page, int pageNo)
+    {
+        PDRectangle box = page.getTrimBox();
+        currPage = new Page(pageNo, Math.round(box.getWidth()), Math.round(box.getHeight()));
+        stats.setPageWidth(currPage.getWidth());
+    }
+
+    @Override
+    void startParagraph()
+    {
+        currParagraph = new Paragraph();
+    }
+
+    @Override
+    void endParagraph()
+    {
+        if (currParagraph.getLines().size() > 0)
+            currPage.addParagraph(currParagraph);
+    }
+
+    @Override
+    void newLine(TextLine line)
+    {
+        extractParams(line, currPage);
+        if (!line.isEmpty())
+        {
+            Line l = createLine(line);
+            if (l.length() > 0) currParagraph.addLine(l);
+        }
+    }
+
+    @Override
+    void endLine()
+    {
+    }
+
+    @Override
+    void endPage(PDPage page)
+    {
+        if (currPage.getParagraphs().size() > 0)
+        {
+            document.addPage(currPage);
+            if (pageListener != null)
+            {
+                stats.apply(document);
+                done = !pageListener.pageRead(currPage, document);
+            }
+        }
+    }
+
+    @Override
+    boolean isDone()
+    {
+        return done;
+    }
+
+    @Override
+    void startDocument(PDDocument pdf)
+    {
+        document = new Document();
+    }
+
+    @Override
+    void endDocument(PDDocument pdf)
+    {
+        stats.apply(document);
+    }
+
+    @Override
+    void startArticle()
+    {
+    }
+
+    @Override
+    void endArticle()
+    {
+    }
+
+    private void extractParams(TextLine line, Page page)
+    {
+        for (int run = 0; run < line.runCount(); run++)
+            stats.addFontSize(Math.round(line.fontSizeInPt(run)), line.glyphCount(run));
+
+        if (!line.isEmpty() && !line.isSeparator(0))
+        {
+            int margin = normalize(line.firstX(0), false);
+            if (margin < page.getWidth() * .25)
+                stats.addLeftMargin(margin);
+        }
+
+        int last = line.runCount() - 1;
+        if (!line.isEmpty() && !line.isSeparator(last))
+        {
+            int margin = normalize(line.lastX(last), true);
+            if (margin > page.getWidth() * .7)
+                stats.addRightMargin(margin);
+        }
+    }
+
+    private Line createLine(TextLine line)
+    {
+        fontSizeVote.clear();
+        lineBuilder.setLength(0);
+        int firstRun = -1;
+        int lastRun = -1;
+        for (int run = 0; run < line.runCount(); run++)
+        {
+            if (line.isSeparator(run))
+            {
+                lineBuilder.append(SPACE);
+            }
+            else
+            {
+                line.appendText(run, lineBuilder);
+                fontSizeVote.add(line.styleKey(run), line.glyphCount(run));
+                if (firstRun == -1) firstRun = run;
+                lastRun = run;
+            }
+        }
+        int firstX = firstRun != -1 ? Math.round(line.firstX(firstRun)) : -1;
+        int lastX = lastRun != -1 ? Math.round(line.lastX(lastRun)) : -1;
+        int y = firstRun != -1 ? Math.round(line.firstY(firstRun)) : -1;
+
+        return new Line(getString(lineBuilder), fontSizeVote.get(), firstX, lastX, y);
+    }
+
+    String getString(StringBuilder sb)
+    {
+        return normalizer.toString(sb);
+    }
+
+    private int normalize(float number, boolean toUpper)
+    {
+        int n = Math.round(number);
+        int delta = 4;
+        return toUpper ? n + delta - n % delta : n - n % delta;
+    }
+}
@@ -0,0 +1,138 @@
+package in.codehub.pdfreader;
+
+import org.apache.jempbox.xmp.XMPMetadata;
+import org.apache.jempbox.xmp.XMPSchemaDublinCore;
+import org.apache.jempbox.xmp.XMPSchemaPDF;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The title, authors, keywords and subject a pdf declares about itself in its XMP metadata packet and its document
+ * information dictionary. XMP values are preferred, the information dictionary fills in the ones it lacks. Values
+ * are as the producer wrote them: often right for published papers, often a file name or the account of whoever
+ * typed the document.
+ */
+public class DocumentMetadata
+{
+    private static final Pattern AUTHOR_SEPARATOR = Pattern.compile("\\s*(?:;|,|&|\\band\\b)\\s*");
+    private static final Pattern KEYWORD_SEPARATOR = Pattern.compile("\\s*[;,]\\s*");
+
+    private String title = "";
+    private List<String> authors = Collections.emptyList();
+    private List<String> keywords = Collections.emptyList();
+    private String subject = "";
+
+    DocumentMetadata()
+    {
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public List<String> getAuthors()
+    {
+        return authors;
+    }
+
+    public List<String> getKeywords()
+    {
+        return keywords;
+    }
+
+    /**
+     * The subject or description, which some producers fill with the abstract.
+     */
+    public String getSubject()
+    {
+        return subject;
+    }
+
+    static DocumentMetadata read(PDDocument doc)
+    {
+        DocumentMetadata metadata = new DocumentMetadata();
+        metadata.readXmp(doc);
+        PDDocumentInformation info = doc.getDocumentInformation();
+        if (metadata.title.length() == 0)
+            metadata.title = trim(info.getTitle());
+        if (metadata.authors.isEmpty())
+            metadata.authors = split(info.getAuthor(), AUTHOR_SEPARATOR);
+        if (metadata.keywords.isEmpty())
+            metadata.keywords = split(info.getKeywords(), KEYWORD_SEPARATOR);
+        if (metadata.subject.length() == 0)
+            metadata.subject = trim(info.getSubject());
+        return metadata;
+    }
+
+    /**
+     * Reads the Dublin Core and pdf schemas of the XMP packet, a packet that cannot be parsed is ignored.
+     */
+    private void readXmp(PDDocument doc)
+    {
+        try
+        {
+            PDMetadata packet = doc.getDocumentCatalog().getMetadata();
+            if (packet == null)
+                return;
+            XMPMetadata xmp = packet.exportXMPMetadata();
+            XMPSchemaDublinCore dublinCore = xmp.getDublinCoreSchema();
+            if (dublinCore != null)
+            {
+                title = trim(dublinCore.getTitle());
+                authors = trim(dublinCore.getCreators());
+                keywords = trim(dublinCore.getSubjects());
+                subject = trim(dublinCore.getDescription());
+            }
+            XMPSchemaPDF pdf = xmp.getPDFSchema();
+            if (keywords.isEmpty() && pdf != null)
+                keywords = split(pdf.getKeywords(), KEYWORD_SEPARATOR);
+        } catch (IOException e)
+        {
+            // the information dictionary is used alone.
+        } catch (RuntimeException e)
+        {
+            // the information dictionary is used alone.
+        }
+    }
+
+    private static String trim(String value)
+    {
+        return value == null ? "" : value.trim();
+    }
+
+    private static List<String> trim(List<String> values)
+    {
+        List<String> trimmed = new ArrayList<String>();
+        if (values != null)
+        {
+            for (String value : values)
+            {
+                if (value != null && value.trim().length() > 0)
+                    trimmed.add(value.trim());
+            }
+        }
+        return trimmed;
+    }
+
+    private static List<String> split(String value, Pattern separator)
+    {
+        List<String> values = new ArrayList<String>();
+        if (value != null)
+        {
+            for (String part : separator.split(value.trim()))
+            {
+                if (part.length() > 0)
+                    values.add(part);
+            }
+        }
+        return values;
+    }
+}
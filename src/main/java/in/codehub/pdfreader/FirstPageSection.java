@@ -0,0 +1,254 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.persistence.util.COSObjectKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The start of a pdf stream. A linearized pdf begins with its first page section: the linearization dictionary,
+ * the catalog, and the first page with every object it needs, up to the offset given by the E entry of the
+ * dictionary. Only that section is read from the stream and parsed into a one page document. When the stream is
+ * not linearized, or the first page refers to objects outside the section, the document is null and the bytes
+ * already read are put back in front of the rest of the stream, so it can be loaded in full. Incremental updates
+ * appended to a linearized file are not seen. The E entry is not trusted: a section longer than
+ * MAX_SECTION_LENGTH is not read on its own, and the section is read into a buffer that grows with the bytes that
+ * actually arrive.
+ */
+final class FirstPageSection
+{
+    // the linearization dictionary has to be the first object, within the first kilobyte of the file.
+    private static final int HEAD_LENGTH = 1024;
+    // a first page is rarely more than a few megabytes, longer sections are loaded with the rest of the file.
+    private static final int MAX_SECTION_LENGTH = 16 << 20;
+    private static final Pattern LINEARIZATION = Pattern.compile("\\d+\\s+\\d+\\s+obj\\s*<<(.*?)>>",
+            Pattern.DOTALL);
+    private static final Pattern END = Pattern.compile("/E\\s+(\\d+)");
+    private static final Pattern FIRST_PAGE = Pattern.compile("/O\\s+(\\d+)");
+    // the inheritable page attributes, a page needs the first two.
+    private static final COSName[] INHERITED = {COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX,
+            COSName.ROTATE};
+
+    private final PDDocument document;
+    private final InputStream input;
+
+    private FirstPageSection(PDDocument document, InputStream input)
+    {
+        this.document = document;
+        this.input = input;
+    }
+
+    /**
+     * The first page of a linearized pdf, null when the whole stream has to be loaded.
+     */
+    PDDocument getDocument()
+    {
+        return document;
+    }
+
+    /**
+     * The whole stream when the document is null, the bytes read so far followed by the rest of the stream.
+     */
+    InputStream getInput()
+    {
+        return input;
+    }
+
+    static FirstPageSection read(InputStream in) throws IOException
+    {
+        byte[] head = readFully(in, new byte[0], HEAD_LENGTH);
+        Matcher dictionary = LINEARIZATION.matcher(new String(head, "ISO-8859-1"));
+        if (!dictionary.find() || !dictionary.group(1).contains("/Linearized"))
+            return new FirstPageSection(null, unread(head, in));
+        long end = number(END, dictionary.group(1));
+        long firstPage = number(FIRST_PAGE, dictionary.group(1));
+        if (end <= head.length || end > MAX_SECTION_LENGTH || firstPage <= 0)
+            return new FirstPageSection(null, unread(head, in));
+
+        byte[] section = readFully(in, head, (int) end);
+        PDDocument document = section.length == end ? parse(section, firstPage) : null;
+        return new FirstPageSection(document, document == null ? unread(section, in) : null);
+    }
+
+    private static long number(Pattern pattern, String dictionary)
+    {
+        Matcher matcher = pattern.matcher(dictionary);
+        return matcher.find() && matcher.group(1).length() < 19 ? Long.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * The bytes read so far followed by bytes of the stream up to length in all, fewer when the stream ends first.
+     * The buffer is doubled as it fills up, not allocated to length up front.
+     */
+    private static byte[] readFully(InputStream in, byte[] read, int length) throws IOException
+    {
+        byte[] buffer = Arrays.copyOf(read, Math.min(length, Math.max(HEAD_LENGTH, read.length * 2)));
+        int offset = read.length;
+        int n;
+        while (offset < length)
+        {
+            if (offset == buffer.length)
+                buffer = Arrays.copyOf(buffer, (int) Math.min(length, buffer.length * 2L));
+            if ((n = in.read(buffer, offset, buffer.length - offset)) == -1)
+                break;
+            offset += n;
+        }
+        return offset < buffer.length ? Arrays.copyOf(buffer, offset) : buffer;
+    }
+
+    private static InputStream unread(byte[] bytes, InputStream in)
+    {
+        return new SequenceInputStream(new ByteArrayInputStream(bytes), in);
+    }
+
+    private static PDDocument parse(byte[] section, long firstPage) throws IOException
+    {
+        SectionParser parser = new SectionParser(section);
+        COSDocument cos = null;
+        try
+        {
+            parser.parse();
+            cos = parser.getDocument();
+            PDDocument document = firstPage(cos, firstPage);
+            if (document != null)
+                cos = null;
+            return document;
+        } catch (IOException e)
+        {
+            return null;
+        } catch (RuntimeException e)
+        {
+            return null;
+        } finally
+        {
+            if (cos != null)
+                cos.close();
+        }
+    }
+
+    /**
+     * A document whose page tree is only the first page, null when the page is not complete in the section.
+     */
+    private static PDDocument firstPage(COSDocument cos, long number) throws IOException
+    {
+        COSBase catalog = cos.getTrailer() != null ? cos.getTrailer().getDictionaryObject(COSName.ROOT) : null;
+        COSBase object = cos.getObjectFromPool(new COSObjectKey(number, 0)).getObject();
+        if (!(catalog instanceof COSDictionary) || !(object instanceof COSDictionary))
+            return null;
+        COSDictionary page = (COSDictionary) object;
+        if (!inherit(page) || !isComplete(page, new IdentityHashMap<COSBase, Boolean>()))
+            return null;
+
+        COSDictionary pages = new COSDictionary();
+        pages.setItem(COSName.TYPE, COSName.PAGES);
+        COSArray kids = new COSArray();
+        kids.add(page);
+        pages.setItem(COSName.KIDS, kids);
+        pages.setInt(COSName.COUNT, 1);
+        page.setItem(COSName.PARENT, pages);
+        ((COSDictionary) catalog).setItem(COSName.PAGES, pages);
+        return new PDDocument(cos);
+    }
+
+    /**
+     * Copies the attributes the page inherits from the part of its page tree that is in the section, false when
+     * the page still has no resources or media box.
+     */
+    private static boolean inherit(COSDictionary page)
+    {
+        COSBase parent = page.getDictionaryObject(COSName.PARENT);
+        for (int depth = 0; parent instanceof COSDictionary && depth < 64; depth++)
+        {
+            COSDictionary node = (COSDictionary) parent;
+            for (COSName name : INHERITED)
+            {
+                if (page.getItem(name) == null && node.getItem(name) != null)
+                    page.setItem(name, node.getItem(name));
+            }
+            parent = node.getDictionaryObject(COSName.PARENT);
+        }
+        return page.getDictionaryObject(COSName.RESOURCES) != null
+                && page.getDictionaryObject(COSName.MEDIA_BOX) != null;
+    }
+
+    /**
+     * Whether every object the page refers to, its page tree aside, was parsed.
+     */
+    private static boolean isComplete(COSBase base, Map<COSBase, Boolean> visited)
+    {
+        if (base instanceof COSObject)
+        {
+            base = ((COSObject) base).getObject();
+            if (base == null)
+                return false;
+        }
+        if (visited.put(base, Boolean.TRUE) != null)
+            return true;
+        if (base instanceof COSDictionary)
+        {
+            for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) base).entrySet())
+            {
+                if (!COSName.PARENT.equals(entry.getKey()) && !isComplete(entry.getValue(), visited))
+                    return false;
+            }
+        }
+        else if (base instanceof COSArray)
+        {
+            for (COSBase item : (COSArray) base)
+            {
+                if (!isComplete(item, visited))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the section sequentially. Its trailer is found through the first page cross reference table, as
+     * the startxref after it is 0, and the main table it points to is not part of the section.
+     */
+    private static class SectionParser extends org.apache.pdfbox.pdfparser.PDFParser
+    {
+        private long firstXref = -1;
+
+        private SectionParser(byte[] section) throws IOException
+        {
+            super(new ByteArrayInputStream(section));
+        }
+
+        @Override
+        protected boolean parseXrefTable(long startByteOffset) throws IOException
+        {
+            if (firstXref < 0)
+                firstXref = startByteOffset;
+            return super.parseXrefTable(startByteOffset);
+        }
+
+        @Override
+        protected boolean parseTrailer() throws IOException
+        {
+            boolean parsed = super.parseTrailer();
+            if (parsed)
+                xrefTrailerResolver.getCurrentTrailer().removeItem(COSName.PREV);
+            return parsed;
+        }
+
+        @Override
+        protected boolean parseStartXref() throws IOException
+        {
+            boolean parsed = super.parseStartXref();
+            if (firstXref >= 0 && getDocument().getStartXref() == 0)
+                getDocument().setStartXref(firstXref);
+            return parsed;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Fonts shared by all documents read with one {@link PdfReader}, keyed by a hash of the font dictionary and
+ * everything it references, embedded font programs included. Papers built from the same template embed the
+ * same fonts, with the cache their programs and encodings are parsed once instead of once per document.
+ *
+ * PDFBox reads everything the text extraction path needs from a font when the font is created, so a cached font
+ * stays usable after its document is closed. It is not thread safe though, widths and glyph sizes are cached in
+ * plain maps as they are used. A font is therefore lent to one engine at a time, from {@link #acquire} until it is
+ * released when the engine is done with the document, and engines reading documents of one template at the same
+ * time each get their own instance. Type 3 fonts are never cached, their glyphs are content streams that belong to
+ * the document.
+ *
+ * The cache is bounded by the encoded size of the font streams of the idle fonts it holds, least recently used
+ * fonts are evicted first.
+ */
+public class FontCache
+{
+    // rough size of a font without streams: dictionaries, widths and encoding tables.
+    private static final long FONT_OVERHEAD = 1024;
+
+    private final long maxBytes;
+    // idle fonts by key, in access order.
+    private final Map<ByteBuffer, Entry> fonts = new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true);
+    private final Map<PDFont, Lent> lent = new IdentityHashMap<PDFont, Lent>();
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private static class Entry
+    {
+        private final List<PDFont> idle = new ArrayList<PDFont>(1);
+        private final long size;
+
+        private Entry(long size)
+        {
+            this.size = size;
+        }
+    }
+
+    private static class Lent
+    {
+        private final ByteBuffer key;
+        private final long size;
+
+        private Lent(ByteBuffer key, long size)
+        {
+            this.key = key;
+            this.size = size;
+        }
+    }
+
+    /**
+     * @param maxBytes upper bound of the encoded size of all cached fonts.
+     */
+    public FontCache(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A font of the dictionary for the sole use of the caller until it is given back with {@link #release}.
+     */
+    PDFont acquire(COSDictionary fontDictionary) throws IOException
+    {
+        if (COSName.TYPE3.equals(fontDictionary.getDictionaryObject(COSName.SUBTYPE)))
+            return PDFontFactory.createFont(fontDictionary);
+
+        FontHash hash = new FontHash();
+        hash.add(fontDictionary);
+        ByteBuffer key = ByteBuffer.wrap(hash.digest.digest());
+        long size = hash.streamBytes + FONT_OVERHEAD;
+        synchronized (this)
+        {
+            Entry entry = fonts.get(key);
+            if (entry != null)
+            {
+                hits++;
+                PDFont font = entry.idle.remove(entry.idle.size() - 1);
+                if (entry.idle.isEmpty())
+                    fonts.remove(key);
+                bytes -= entry.size;
+                lent.put(font, new Lent(key, entry.size));
+                return font;
+            }
+            misses++;
+        }
+
+        // created outside the lock, the font is kept when it is released.
+        PDFont font = PDFontFactory.createFont(fontDictionary);
+        synchronized (this)
+        {
+            lent.put(font, new Lent(key, size));
+        }
+        return font;
+    }
+
+    /**
+     * Gives back a font taken with {@link #acquire}, other engines may use it from now on.
+     */
+    synchronized void release(PDFont font)
+    {
+        Lent lease = lent.remove(font);
+        if (lease == null || lease.size > maxBytes)
+            return;
+        Entry entry = fonts.get(lease.key);
+        if (entry == null)
+        {
+            entry = new Entry(lease.size);
+            fonts.put(lease.key, entry);
+        }
+        entry.idle.add(font);
+        bytes += entry.size;
+        Iterator<Entry> eldest = fonts.values().iterator();
+        while (bytes > maxBytes)
+        {
+            Entry evicted = eldest.next();
+            bytes -= evicted.size * evicted.idle.size();
+            evictions += evicted.idle.size();
+            eldest.remove();
+        }
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    /**
+     * Idle fonts held by the cache.
+     */
+    public synchronized int size()
+    {
+        int size = 0;
+        for (Entry entry : fonts.values())
+            size += entry.idle.size();
+        return size;
+    }
+
+    /**
+     * Encoded size of the idle fonts, the measure bounded by maxBytes.
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+
+    public synchronized void clear()
+    {
+        fonts.clear();
+        bytes = 0;
+    }
+
+    /**
+     * SHA-1 over a COS object graph. Dictionary keys are hashed in sorted order and objects reached twice are
+     * hashed as a back reference, so cycles terminate.
+     */
+    private static class FontHash
+    {
+        private final MessageDigest digest;
+        private final Map<COSBase, Integer> visited = new IdentityHashMap<COSBase, Integer>();
+        private final byte[] buffer = new byte[8192];
+        private long streamBytes = 0;
+
+        private FontHash()
+        {
+            try
+            {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void add(COSBase object) throws IOException
+        {
+            if (object instanceof COSObject)
+                object = ((COSObject) object).getObject();
+
+            if (object instanceof COSDictionary || object instanceof COSArray)
+            {
+                Integer index = visited.get(object);
+                if (index != null)
+                {
+                    addTag('r');
+                    addLong(index);
+                    return;
+                }
+                visited.put(object, visited.size());
+            }
+
+            if (object == null || object instanceof COSNull)
+            {
+                addTag('0');
+            }
+            else if (object instanceof COSName)
+            {
+                addTag('n');
+                addString(((COSName) object).getName());
+            }
+            else if (object instanceof COSString)
+            {
+                byte[] value = ((COSString) object).getBytes();
+                addTag('s');
+                addLong(value.length);
+                digest.update(value);
+            }
+            else if (object instanceof COSInteger)
+            {
+                addTag('i');
+                addLong(((COSInteger) object).longValue());
+            }
+            else if (object instanceof COSNumber)
+            {
+                addTag('f');
+                addLong(Float.floatToIntBits(((COSNumber) object).floatValue()));
+            }
+            else if (object instanceof COSBoolean)
+            {
+                addTag(((COSBoolean) object).getValue() ? 't' : 'b');
+            }
+            else if (object instanceof COSArray)
+            {
+                COSArray array = (COSArray) object;
+                addTag('a');
+                addLong(array.size());
+                for (int i = 0; i < array.size(); i++)
+                    add(array.get(i));
+            }
+            else if (object instanceof COSDictionary)
+            {
+                COSDictionary dictionary = (COSDictionary) object;
+                List<COSName> keys = new ArrayList<COSName>(dictionary.keySet());
+                Collections.sort(keys);
+                addTag('d');
+                addLong(keys.size());
+                for (COSName key : keys)
+                {
+                    addString(key.getName());
+                    add(dictionary.getItem(key));
+                }
+                if (object instanceof COSStream)
+                    addStream((COSStream) object);
+            }
+            else
+            {
+                addTag('?');
+                addString(object.getClass().getName());
+            }
+        }
+
+        private void addStream(COSStream stream) throws IOException
+        {
+            addTag('x');
+            InputStream in = stream.getFilteredStream();
+            try
+            {
+                int n;
+                while ((n = in.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, n);
+                    streamBytes += n;
+                }
+            } finally
+            {
+                in.close();
+            }
+        }
+
+        private void addTag(char tag)
+        {
+            digest.update((byte) tag);
+        }
+
+        private void addLong(long value)
+        {
+            for (int shift = 56; shift >= 0; shift -= 8)
+                digest.update((byte) (value >>> shift));
+        }
+
+        private void addString(String value) throws IOException
+        {
+            byte[] bytes = value.getBytes("UTF-8");
+            addLong(bytes.length);
+            digest.update(bytes);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package in.codehub.pdfreader;
+
+/**
+ * Cap height and italic angle of one font, read once from its descriptor, and the style key lines are grouped
+ * by: the font size in points combined with both metrics.
+ */
+final class FontMetrics
+{
+    private static final int FONT_OFFSET = 1000000;
+    private static final int CAP_OFFSET = 100;
+
+    private final int id;
+    private final float capHeight;
+    private final float italicAngle;
+    // runs of one font mostly share the size, so the last key is kept.
+    private float lastFontSize = Float.NaN;
+    private int lastStyleKey;
+
+    FontMetrics(int id, float capHeight, float italicAngle)
+    {
+        this.id = id;
+        this.capHeight = capHeight;
+        this.italicAngle = italicAngle;
+    }
+
+    /**
+     * Id of the font within the document, the same for every glyph drawn with it.
+     */
+    int getId()
+    {
+        return id;
+    }
+
+    int styleKey(float fontSizeInPt)
+    {
+        if (fontSizeInPt != lastFontSize)
+        {
+            lastStyleKey = (int) (fontSizeInPt * FONT_OFFSET + capHeight * CAP_OFFSET + italicAngle);
+            lastFontSize = fontSizeInPt;
+        }
+        return lastStyleKey;
+    }
+}
@@ -0,0 +1,56 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of the fonts of one document, keyed by PDFont identity. Reading the font descriptor is expensive in
+ * PDFBox, this way it happens once per font instead of once per glyph. Glyphs without a font share metrics of
+ * id -1 with no cap height and no italic angle. Metrics memoize their last style key, so they belong to one cache
+ * and one engine, those of glyphs without a font included.
+ */
+final class FontMetricsCache
+{
+    private final FontMetrics noFont = new FontMetrics(-1, 0, 0);
+
+    private final Map<PDFont, FontMetrics> metricsByFont = new IdentityHashMap<PDFont, FontMetrics>();
+    private final List<FontMetrics> metricsById = new ArrayList<FontMetrics>();
+
+    FontMetrics get(PDFont font)
+    {
+        if (font == null)
+            return noFont;
+        FontMetrics metrics = metricsByFont.get(font);
+        if (metrics == null)
+        {
+            float capHeight = 0;
+            float italicAngle = 0;
+            PDFontDescriptor descriptor = font.getFontDescriptor();
+            if (descriptor != null)
+            {
+                capHeight = descriptor.getCapHeight();
+                italicAngle = descriptor.getItalicAngle();
+            }
+            metrics = new FontMetrics(metricsById.size(), capHeight, italicAngle);
+            metricsByFont.put(font, metrics);
+            metricsById.add(metrics);
+        }
+        return metrics;
+    }
+
+    FontMetrics get(int id)
+    {
+        return id < 0 ? noFont : metricsById.get(id);
+    }
+
+    void clear()
+    {
+        metricsByFont.clear();
+        metricsById.clear();
+    }
+}
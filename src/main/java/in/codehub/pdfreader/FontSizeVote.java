@@ -0,0 +1,42 @@
+package in.codehub.pdfreader;
+
+/**
+ * The font size of a line, by the running majority vote over its glyphs that the reader has always used, fed a
+ * run of glyphs of one size at a time. The count goes negative when the vote switches to a new size and is not
+ * reset, runs reproduce that glyph by glyph.
+ */
+final class FontSizeVote
+{
+    private int fontSize;
+    private int count;
+
+    void clear()
+    {
+        fontSize = 0;
+        count = 0;
+    }
+
+    void add(int runFontSize, int glyphs)
+    {
+        if (runFontSize == fontSize)
+        {
+            count += glyphs;
+        }
+        else if (count >= glyphs)
+        {
+            count -= glyphs;
+        }
+        else
+        {
+            // the vote switches once the count drops below zero, the rest of the run counts for the new size.
+            int switchAt = count < 0 ? 1 : count + 1;
+            fontSize = runFontSize;
+            count = count - switchAt + (glyphs - switchAt);
+        }
+    }
+
+    int get()
+    {
+        return fontSize;
+    }
+}
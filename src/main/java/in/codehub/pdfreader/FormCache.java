@@ -0,0 +1,458 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.text.PDTextState;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.PDFStreamEngine;
+import org.apache.pdfbox.util.TextPosition;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The glyphs drawn by form XObjects, kept for the document so a form drawn on every page, such as a running header
+ * or a logo, is interpreted once. A form is replayed when it is drawn again with the same page geometry, under a
+ * transformation that differs only by a translation, and with the same values for the part of the text state it
+ * reads before setting it. The glyphs are translated and the text state the form leaves behind is restored.
+ * Forms that leave the graphics state stack unbalanced are not kept.
+ */
+final class FormCache
+{
+    // forms with more glyphs are body text moved into a form, not a repeated fragment.
+    static final int MAX_FORM_GLYPHS = 4096;
+    static final int MAX_GLYPHS = 1 << 16;
+    // the states a form is kept for, as on odd and even pages.
+    static final int MAX_VARIANTS = 4;
+
+    // the parts of the text state a form can inherit.
+    private static final int FONT = 1;
+    private static final int CHARACTER_SPACING = 1 << 1;
+    private static final int WORD_SPACING = 1 << 2;
+    private static final int SCALING = 1 << 3;
+    private static final int LEADING = 1 << 4;
+    private static final int RISE = 1 << 5;
+    // the text and text line matrices, which are not saved with the graphics state.
+    private static final int MATRIX = 1 << 6;
+    private static final int ALL = (1 << 7) - 1;
+
+    private static final int SAVE = -1;
+    private static final int RESTORE = -2;
+    // what each text operator reads and then sets, the parts read are in the second byte.
+    private static final Map<String, Integer> OPERATORS = new HashMap<String, Integer>();
+
+    static
+    {
+        OPERATORS.put("q", SAVE);
+        OPERATORS.put("Q", RESTORE);
+        OPERATORS.put("BT", effect(0, MATRIX));
+        OPERATORS.put("Tm", effect(0, MATRIX));
+        OPERATORS.put("Tf", effect(0, FONT));
+        OPERATORS.put("Tc", effect(0, CHARACTER_SPACING));
+        OPERATORS.put("Tw", effect(0, WORD_SPACING));
+        OPERATORS.put("Tz", effect(0, SCALING));
+        OPERATORS.put("TL", effect(0, LEADING));
+        OPERATORS.put("Ts", effect(0, RISE));
+        // an extended graphics state may or may not set the font.
+        OPERATORS.put("gs", effect(FONT, FONT));
+        OPERATORS.put("Tj", effect(ALL, 0));
+        OPERATORS.put("TJ", effect(ALL, 0));
+        OPERATORS.put("'", effect(ALL, 0));
+        OPERATORS.put("Td", effect(ALL, 0));
+        OPERATORS.put("T*", effect(ALL, 0));
+        OPERATORS.put("TD", effect(ALL, LEADING));
+        OPERATORS.put("\"", effect(ALL, WORD_SPACING | CHARACTER_SPACING));
+    }
+
+    private static int effect(int reads, int sets)
+    {
+        return reads << 8 | sets;
+    }
+
+    // the end of a glyph is only kept in private fields of the text position. Null when they cannot be reached.
+    private static final Field END_X = positionField("endX");
+    private static final Field END_Y = positionField("endY");
+
+    private static Field positionField(String name)
+    {
+        try
+        {
+            Field field = TextPosition.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private final Map<COSStream, List<Form>> forms = new IdentityHashMap<COSStream, List<Form>>();
+    private final List<Form> recording = new ArrayList<Form>();
+    // the glyphs drawn since the outermost form being recorded started.
+    private final List<Glyph> journal = new ArrayList<Glyph>();
+    private int glyphs;
+    private int rotation;
+    private float pageWidth;
+    private float pageHeight;
+    private int replayed;
+
+    static boolean isAvailable()
+    {
+        return END_X != null && END_Y != null;
+    }
+
+    void clear()
+    {
+        forms.clear();
+        recording.clear();
+        journal.clear();
+        glyphs = 0;
+    }
+
+    /**
+     * Sets the page geometry the text positions are made with, as the engine does for the glyphs it draws.
+     */
+    void startPage(PDPage page)
+    {
+        rotation = page.findRotation();
+        PDRectangle box = page.findCropBox();
+        pageWidth = box.getWidth();
+        pageHeight = box.getHeight();
+        replayed = 0;
+    }
+
+    /**
+     * The number of form glyphs replayed on the page.
+     */
+    int getReplayed()
+    {
+        return replayed;
+    }
+
+    boolean isRecording()
+    {
+        return !recording.isEmpty();
+    }
+
+    /**
+     * Draws the glyphs kept for the form through the parser, false when the form has to be interpreted.
+     */
+    boolean replay(COSStream stream, PDFParser parser)
+    {
+        Form form = find(stream, parser);
+        if (form == null)
+            return false;
+
+        Matrix ctm = parser.getGraphicsState().getCurrentTransformationMatrix();
+        float dx = ctm.getValue(2, 0) - form.ctm.getValue(2, 0);
+        float dy = ctm.getValue(2, 1) - form.ctm.getValue(2, 1);
+        for (Glyph glyph : form.glyphs)
+        {
+            Matrix position = glyph.position.copy();
+            position.setValue(2, 0, position.getValue(2, 0) + dx);
+            position.setValue(2, 1, position.getValue(2, 1) + dy);
+            parser.processTextPosition(new TextPosition(rotation, pageWidth, pageHeight, position,
+                    glyph.endX + dx, glyph.endY + dy, glyph.height, glyph.width, glyph.spaceWidth, glyph.text,
+                    glyph.codePoints == null ? null : glyph.codePoints.clone(), glyph.font, glyph.fontSize,
+                    glyph.fontSizePt));
+        }
+        form.restore(parser, dx, dy);
+        for (Form outer : recording)
+            outer.include(form);
+        replayed += form.glyphs.length;
+        return true;
+    }
+
+    private Form find(COSStream stream, PDFStreamEngine engine)
+    {
+        List<Form> variants = forms.get(stream);
+        if (variants != null)
+        {
+            for (Form form : variants)
+            {
+                if (form.matches(engine, rotation, pageWidth, pageHeight))
+                    return form;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts recording a form about to be interpreted.
+     */
+    Form start(PDFStreamEngine engine)
+    {
+        Form form = new Form(engine, rotation, pageWidth, pageHeight, journal.size());
+        recording.add(form);
+        return form;
+    }
+
+    /**
+     * Keeps a form that was interpreted to its end.
+     */
+    void finish(COSStream stream, Form form, PDFStreamEngine engine)
+    {
+        recording.remove(form);
+        int count = journal.size() - form.journalStart;
+        if (form.cacheable && engine.getGraphicsStack().size() == form.stackSize && count <= MAX_FORM_GLYPHS
+                && glyphs + count <= MAX_GLYPHS)
+        {
+            form.end(engine, journal.subList(form.journalStart, journal.size()).toArray(new Glyph[count]));
+            List<Form> variants = forms.get(stream);
+            if (variants == null)
+            {
+                variants = new ArrayList<Form>(1);
+                forms.put(stream, variants);
+            }
+            else if (variants.size() == MAX_VARIANTS)
+            {
+                glyphs -= variants.remove(0).glyphs.length;
+            }
+            variants.add(form);
+            glyphs += count;
+        }
+        if (recording.isEmpty())
+            journal.clear();
+    }
+
+    /**
+     * Drops a form that was not interpreted to its end.
+     */
+    void abort(Form form)
+    {
+        recording.remove(form);
+        if (recording.isEmpty())
+            journal.clear();
+    }
+
+    /**
+     * Notes a glyph drawn while forms are recorded, before the parser sees it.
+     */
+    void record(TextPosition text)
+    {
+        try
+        {
+            journal.add(new Glyph(text, END_X.getFloat(text), END_Y.getFloat(text)));
+        } catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Notes an operator processed while forms are recorded.
+     */
+    void operator(String name)
+    {
+        Integer effect = OPERATORS.get(name);
+        if (effect == null)
+            return;
+        for (Form form : recording)
+            form.operator(effect);
+    }
+
+    static final class Form
+    {
+        private final int rotation;
+        private final float pageWidth;
+        private final float pageHeight;
+        private final int stackSize;
+        private final int journalStart;
+        // the state the form was drawn in.
+        private final Matrix ctm;
+        private final PDTextState textState;
+        private final Matrix textMatrix;
+        private final Matrix textLineMatrix;
+        // the parts of the text state set by the form and the ones read before being set.
+        private int set;
+        private int inherited;
+        private final List<Integer> saved = new ArrayList<Integer>();
+        private boolean cacheable = true;
+        // the state the form leaves.
+        private Matrix endCtm;
+        private PDTextState endTextState;
+        private Matrix endTextMatrix;
+        private Matrix endTextLineMatrix;
+        private Glyph[] glyphs;
+
+        private Form(PDFStreamEngine engine, int rotation, float pageWidth, float pageHeight, int journalStart)
+        {
+            this.rotation = rotation;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.journalStart = journalStart;
+            stackSize = engine.getGraphicsStack().size();
+            PDGraphicsState state = engine.getGraphicsState();
+            ctm = state.getCurrentTransformationMatrix().copy();
+            textState = (PDTextState) state.getTextState().clone();
+            textMatrix = copy(engine.getTextMatrix());
+            textLineMatrix = copy(engine.getTextLineMatrix());
+        }
+
+        private void operator(int effect)
+        {
+            if (effect == SAVE)
+            {
+                saved.add(set);
+            }
+            else if (effect == RESTORE)
+            {
+                // a restore of a state saved before the form started cannot be replayed.
+                if (saved.isEmpty())
+                    cacheable = false;
+                else
+                    set = saved.remove(saved.size() - 1) & ~MATRIX | set & MATRIX;
+            }
+            else
+            {
+                inherited |= effect >> 8 & ~set;
+                set |= effect & ALL;
+            }
+        }
+
+        /**
+         * Takes in the effect of a form replayed while this one is recorded.
+         */
+        private void include(Form form)
+        {
+            inherited |= form.inherited & ~set;
+            set |= form.set;
+        }
+
+        private void end(PDFStreamEngine engine, Glyph[] glyphs)
+        {
+            this.glyphs = glyphs;
+            PDGraphicsState state = engine.getGraphicsState();
+            endCtm = state.getCurrentTransformationMatrix().copy();
+            endTextState = (PDTextState) state.getTextState().clone();
+            endTextMatrix = copy(engine.getTextMatrix());
+            endTextLineMatrix = copy(engine.getTextLineMatrix());
+        }
+
+        private boolean matches(PDFStreamEngine engine, int rotation, float pageWidth, float pageHeight)
+        {
+            if (rotation != this.rotation || pageWidth != this.pageWidth || pageHeight != this.pageHeight)
+                return false;
+            PDGraphicsState state = engine.getGraphicsState();
+            Matrix current = state.getCurrentTransformationMatrix();
+            for (int i = 0; i < 2; i++)
+            {
+                for (int j = 0; j < 2; j++)
+                {
+                    if (current.getValue(i, j) != ctm.getValue(i, j))
+                        return false;
+                }
+            }
+            PDTextState text = state.getTextState();
+            return ((inherited & FONT) == 0
+                    || text.getFont() == textState.getFont() && text.getFontSize() == textState.getFontSize())
+                    && ((inherited & CHARACTER_SPACING) == 0
+                    || text.getCharacterSpacing() == textState.getCharacterSpacing())
+                    && ((inherited & WORD_SPACING) == 0 || text.getWordSpacing() == textState.getWordSpacing())
+                    && ((inherited & SCALING) == 0
+                    || text.getHorizontalScalingPercent() == textState.getHorizontalScalingPercent())
+                    && ((inherited & LEADING) == 0 || text.getLeading() == textState.getLeading())
+                    && ((inherited & RISE) == 0 || text.getRise() == textState.getRise())
+                    && ((inherited & MATRIX) == 0 || same(engine.getTextMatrix(), textMatrix)
+                    && same(engine.getTextLineMatrix(), textLineMatrix));
+        }
+
+        /**
+         * Leaves the state as interpreting the form would: the parts of the text state the form set or read are
+         * restored, the others keep their values.
+         */
+        private void restore(PDFStreamEngine engine, float dx, float dy)
+        {
+            PDGraphicsState state = engine.getGraphicsState();
+            if (!same(endCtm, ctm))
+            {
+                Matrix end = endCtm.copy();
+                end.setValue(2, 0, end.getValue(2, 0) + dx);
+                end.setValue(2, 1, end.getValue(2, 1) + dy);
+                state.setCurrentTransformationMatrix(end);
+            }
+            int known = set | inherited;
+            PDTextState text = state.getTextState();
+            if ((known & FONT) != 0)
+            {
+                text.setFont(endTextState.getFont());
+                text.setFontSize(endTextState.getFontSize());
+            }
+            if ((known & CHARACTER_SPACING) != 0)
+                text.setCharacterSpacing(endTextState.getCharacterSpacing());
+            if ((known & WORD_SPACING) != 0)
+                text.setWordSpacing(endTextState.getWordSpacing());
+            if ((known & SCALING) != 0)
+                text.setHorizontalScalingPercent(endTextState.getHorizontalScalingPercent());
+            if ((known & LEADING) != 0)
+                text.setLeading(endTextState.getLeading());
+            if ((known & RISE) != 0)
+                text.setRise(endTextState.getRise());
+            if ((known & MATRIX) != 0)
+            {
+                engine.setTextMatrix(copy(endTextMatrix));
+                engine.setTextLineMatrix(copy(endTextLineMatrix));
+            }
+        }
+    }
+
+    private static Matrix copy(Matrix matrix)
+    {
+        return matrix == null ? null : matrix.copy();
+    }
+
+    private static boolean same(Matrix first, Matrix second)
+    {
+        if (first == null || second == null)
+            return first == second;
+        for (int i = 0; i < 3; i++)
+        {
+            for (int j = 0; j < 2; j++)
+            {
+                if (first.getValue(i, j) != second.getValue(i, j))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A glyph as the engine drew it, before the parser merged diacritics into it.
+     */
+    private static final class Glyph
+    {
+        private final Matrix position;
+        private final float endX;
+        private final float endY;
+        private final float height;
+        private final float width;
+        private final float spaceWidth;
+        private final String text;
+        private final int[] codePoints;
+        private final PDFont font;
+        private final float fontSize;
+        private final int fontSizePt;
+
+        private Glyph(TextPosition position, float endX, float endY)
+        {
+            this.position = position.getTextPos().copy();
+            this.endX = endX;
+            this.endY = endY;
+            height = position.getHeight();
+            width = position.getIndividualWidths()[0];
+            spaceWidth = position.getWidthOfSpace();
+            text = position.getCharacter();
+            codePoints = position.getCodePoints() == null ? null : position.getCodePoints().clone();
+            font = position.getFont();
+            fontSize = position.getFontSize();
+            fontSizePt = (int) position.getFontSizeInPt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObjectForm;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.PDFOperator;
+import org.apache.pdfbox.util.operator.OperatorProcessor;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The Do operator for text extraction: form XObjects are processed as by the PDFBox Invoke operator, image and
+ * PostScript XObjects are skipped by their subtype without building the XObject map of the resources.
+ */
+final class FormInvoke extends OperatorProcessor
+{
+    @Override
+    public void process(PDFOperator operator, List<COSBase> arguments) throws IOException
+    {
+        PDResources resources = context.getResources();
+        if (arguments.isEmpty() || !(arguments.get(0) instanceof COSName) || resources == null)
+            return;
+        COSBase xobjects = resources.getCOSDictionary().getDictionaryObject(COSName.XOBJECT);
+        if (!(xobjects instanceof COSDictionary))
+            return;
+        COSBase xobject = ((COSDictionary) xobjects).getDictionaryObject((COSName) arguments.get(0));
+        if (!(xobject instanceof COSStream)
+                || !COSName.FORM.equals(((COSStream) xobject).getDictionaryObject(COSName.SUBTYPE)))
+            return;
+
+        PDXObjectForm form = new PDXObjectForm((COSStream) xobject);
+        Matrix matrix = form.getMatrix();
+        if (matrix != null)
+        {
+            Matrix ctm = matrix.multiply(context.getGraphicsState().getCurrentTransformationMatrix());
+            context.getGraphicsState().setCurrentTransformationMatrix(ctm);
+        }
+        context.processSubStream(context.getCurrentPage(), form.getResources(), form.getCOSStream());
+    }
+}
@@ -0,0 +1,375 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.util.TextPosition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The glyphs of one page stored column wise: geometry as floats, font ids and flags as ints and the text of all
+ * glyphs in one char buffer. Line and paragraph segmentation runs over the columns, reading every TextPosition
+ * getter once when the page is loaded, the TextPositions themselves are not kept. The buffer is reused from page
+ * to page and only grows; a page with more glyphs than the off heap threshold gets direct buffers so pathological
+ * pages do not blow up the heap.
+ */
+final class GlyphBuffer
+{
+    static final int LINE_START = 1;
+    static final int PARAGRAPH_START = 1 << 1;
+    static final int ARTICLE_START = 1 << 2;
+    static final int HANGING_INDENT = 1 << 3;
+    private static final int HAS_TEXT = 1 << 4;
+    private static final int ENDS_WITH_SPACE = 1 << 5;
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final int offHeapThreshold;
+    private int capacity;
+    private int size;
+    private boolean offHeap;
+
+    // positions adjusted for text direction when sorting by position, as used for line detection.
+    private FloatBuffer xs;
+    private FloatBuffer ys;
+    private FloatBuffer widths;
+    private FloatBuffer heights;
+    // direction adjusted positions and the raw width, as used for paragraph detection.
+    private FloatBuffer xDirAdjs;
+    private FloatBuffer yDirAdjs;
+    private FloatBuffer plainWidths;
+    // raw positions, as used for margins and line positions.
+    private FloatBuffer plainXs;
+    private FloatBuffer plainYs;
+    private FloatBuffer spaceWidths;
+    private FloatBuffer fontSizes;
+    private FloatBuffer fontSizesInPt;
+    private IntBuffer fontIds;
+    private IntBuffer charCounts;
+    private IntBuffer flags;
+    private IntBuffer textEnds;
+    private CharBuffer text;
+
+    private int[] articleEnds = new int[8];
+    private int articleCount;
+    private final FontMetricsCache fontMetrics;
+
+    GlyphBuffer(FontMetricsCache fontMetrics, int offHeapThreshold)
+    {
+        this.fontMetrics = fontMetrics;
+        this.offHeapThreshold = offHeapThreshold;
+        allocate(INITIAL_CAPACITY, false);
+    }
+
+    void clear()
+    {
+        size = 0;
+        articleCount = 0;
+    }
+
+    /**
+     * Releases oversized or off heap storage, called when the owning engine is done with a document.
+     */
+    void trim()
+    {
+        clear();
+        if (offHeap || capacity > INITIAL_CAPACITY * 16)
+            allocate(INITIAL_CAPACITY, false);
+    }
+
+    void addArticle(List<TextPosition> textList, boolean sortByPosition)
+    {
+        ensureCapacity(size + textList.size());
+        for (TextPosition position : textList)
+            add(position, sortByPosition);
+        if (articleCount == articleEnds.length)
+            articleEnds = Arrays.copyOf(articleEnds, articleCount * 2);
+        articleEnds[articleCount++] = size;
+    }
+
+    private void add(TextPosition position, boolean sortByPosition)
+    {
+        int i = size++;
+        if (sortByPosition)
+        {
+            xs.put(i, position.getXDirAdj());
+            ys.put(i, position.getYDirAdj());
+            widths.put(i, position.getWidthDirAdj());
+            heights.put(i, position.getHeightDir());
+        }
+        else
+        {
+            xs.put(i, position.getX());
+            ys.put(i, position.getY());
+            widths.put(i, position.getWidth());
+            heights.put(i, position.getHeight());
+        }
+        xDirAdjs.put(i, position.getXDirAdj());
+        yDirAdjs.put(i, position.getYDirAdj());
+        plainWidths.put(i, position.getWidth());
+        plainXs.put(i, position.getX());
+        plainYs.put(i, position.getY());
+        spaceWidths.put(i, position.getWidthOfSpace());
+        fontSizes.put(i, position.getFontSize());
+        fontSizesInPt.put(i, position.getFontSizeInPt());
+        fontIds.put(i, fontMetrics.get(position.getFont()).getId());
+        charCounts.put(i, position.getIndividualWidths().length);
+
+        int start = textStart(i);
+        String character = position.getCharacter();
+        int glyphFlags = 0;
+        if (character != null)
+        {
+            glyphFlags = HAS_TEXT | (character.endsWith(" ") ? ENDS_WITH_SPACE : 0);
+            if (start + character.length() > text.capacity())
+                growText(start, start + character.length());
+            for (int c = 0; c < character.length(); c++)
+                text.put(start + c, character.charAt(c));
+            start += character.length();
+        }
+        flags.put(i, glyphFlags);
+        textEnds.put(i, start);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    int articleCount()
+    {
+        return articleCount;
+    }
+
+    int articleStart(int article)
+    {
+        return article == 0 ? 0 : articleEnds[article - 1];
+    }
+
+    int articleEnd(int article)
+    {
+        return articleEnds[article];
+    }
+
+    float x(int glyph)
+    {
+        return xs.get(glyph);
+    }
+
+    float y(int glyph)
+    {
+        return ys.get(glyph);
+    }
+
+    float width(int glyph)
+    {
+        return widths.get(glyph);
+    }
+
+    float height(int glyph)
+    {
+        return heights.get(glyph);
+    }
+
+    float xDirAdj(int glyph)
+    {
+        return xDirAdjs.get(glyph);
+    }
+
+    float yDirAdj(int glyph)
+    {
+        return yDirAdjs.get(glyph);
+    }
+
+    float plainWidth(int glyph)
+    {
+        return plainWidths.get(glyph);
+    }
+
+    float plainX(int glyph)
+    {
+        return plainXs.get(glyph);
+    }
+
+    float plainY(int glyph)
+    {
+        return plainYs.get(glyph);
+    }
+
+    float spaceWidth(int glyph)
+    {
+        return spaceWidths.get(glyph);
+    }
+
+    float fontSize(int glyph)
+    {
+        return fontSizes.get(glyph);
+    }
+
+    float fontSizeInPt(int glyph)
+    {
+        return fontSizesInPt.get(glyph);
+    }
+
+    int fontId(int glyph)
+    {
+        return fontIds.get(glyph);
+    }
+
+    FontMetrics fontMetrics(int glyph)
+    {
+        return fontMetrics.get(fontIds.get(glyph));
+    }
+
+    int charCount(int glyph)
+    {
+        return charCounts.get(glyph);
+    }
+
+    boolean hasText(int glyph)
+    {
+        return (flags.get(glyph) & HAS_TEXT) != 0;
+    }
+
+    boolean endsWithSpace(int glyph)
+    {
+        return (flags.get(glyph) & ENDS_WITH_SPACE) != 0;
+    }
+
+    boolean is(int glyph, int flag)
+    {
+        return (flags.get(glyph) & flag) != 0;
+    }
+
+    void set(int glyph, int flag)
+    {
+        flags.put(glyph, flags.get(glyph) | flag);
+    }
+
+    int textStart(int glyph)
+    {
+        return glyph == 0 ? 0 : textEnds.get(glyph - 1);
+    }
+
+    int textEnd(int glyph)
+    {
+        return textEnds.get(glyph);
+    }
+
+    /**
+     * The text of a glyph, null for glyphs without one. Allocates a view, so it is meant for rare checks only.
+     */
+    CharSequence text(int glyph)
+    {
+        return hasText(glyph) ? text.subSequence(textStart(glyph), textEnd(glyph)) : null;
+    }
+
+    CharBuffer text()
+    {
+        return text;
+    }
+
+    private void ensureCapacity(int required)
+    {
+        if (required > capacity)
+        {
+            int newCapacity = capacity;
+            while (newCapacity < required)
+                newCapacity *= 2;
+            allocate(newCapacity, newCapacity > offHeapThreshold);
+        }
+    }
+
+    private void allocate(int newCapacity, boolean direct)
+    {
+        xs = copy(xs, floats(newCapacity, direct));
+        ys = copy(ys, floats(newCapacity, direct));
+        widths = copy(widths, floats(newCapacity, direct));
+        heights = copy(heights, floats(newCapacity, direct));
+        xDirAdjs = copy(xDirAdjs, floats(newCapacity, direct));
+        yDirAdjs = copy(yDirAdjs, floats(newCapacity, direct));
+        plainWidths = copy(plainWidths, floats(newCapacity, direct));
+        plainXs = copy(plainXs, floats(newCapacity, direct));
+        plainYs = copy(plainYs, floats(newCapacity, direct));
+        spaceWidths = copy(spaceWidths, floats(newCapacity, direct));
+        fontSizes = copy(fontSizes, floats(newCapacity, direct));
+        fontSizesInPt = copy(fontSizesInPt, floats(newCapacity, direct));
+        fontIds = copy(fontIds, ints(newCapacity, direct));
+        charCounts = copy(charCounts, ints(newCapacity, direct));
+        flags = copy(flags, ints(newCapacity, direct));
+        textEnds = copy(textEnds, ints(newCapacity, direct));
+        int textLength = text == null ? 0 : textStart(size);
+        text = copy(text, chars(Math.max(newCapacity, textLength), direct), textLength);
+        capacity = newCapacity;
+        offHeap = direct;
+    }
+
+    /**
+     * Grows the text buffer while a glyph is added, its textEnds entry is not written yet so the length in use is
+     * passed in.
+     */
+    private void growText(int length, int required)
+    {
+        int newCapacity = text.capacity();
+        while (newCapacity < required)
+            newCapacity *= 2;
+        text = copy(text, chars(newCapacity, offHeap), length);
+    }
+
+    private FloatBuffer copy(FloatBuffer from, FloatBuffer to)
+    {
+        if (from != null && size > 0)
+        {
+            FloatBuffer source = from.duplicate();
+            source.clear().limit(size);
+            to.put(source).clear();
+        }
+        return to;
+    }
+
+    private IntBuffer copy(IntBuffer from, IntBuffer to)
+    {
+        if (from != null && size > 0)
+        {
+            IntBuffer source = from.duplicate();
+            source.clear().limit(size);
+            to.put(source).clear();
+        }
+        return to;
+    }
+
+    private CharBuffer copy(CharBuffer from, CharBuffer to, int length)
+    {
+        if (length > 0)
+        {
+            CharBuffer source = from.duplicate();
+            source.clear().limit(length);
+            to.put(source).clear();
+        }
+        return to;
+    }
+
+    private static FloatBuffer floats(int capacity, boolean direct)
+    {
+        return direct ? bytes(capacity * 4).asFloatBuffer() : FloatBuffer.allocate(capacity);
+    }
+
+    private static IntBuffer ints(int capacity, boolean direct)
+    {
+        return direct ? bytes(capacity * 4).asIntBuffer() : IntBuffer.allocate(capacity);
+    }
+
+    private static CharBuffer chars(int capacity, boolean direct)
+    {
+        return direct ? bytes(capacity * 2).asCharBuffer() : CharBuffer.allocate(capacity);
+    }
+
+    private static ByteBuffer bytes(int capacity)
+    {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,237 @@
+package in.codehub.pdfreader;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the glyphs shown on a page to detect duplicates: the same character drawn again within a tolerance
+ * of an earlier one, which is how fake bold text is usually produced. Glyphs are bucketed into square cells of a
+ * quantized (x, y) grid kept in an open addressing table, so a lookup probes the few cells the tolerance box
+ * covers and nothing is allocated per glyph once the arrays have grown to the size of a page.
+ *
+ * Ranges are half open, [v - tolerance, v + tolerance), and compared with Float.compare to behave exactly as the
+ * TreeMap subMap/subSet lookups this replaces, including for NaN and infinite values.
+ */
+final class GlyphGrid
+{
+    private static final int INITIAL_CAPACITY = 256;
+    private static final float CELL_SIZE = 8f;
+    private static final float INV_CELL_SIZE = 1f / CELL_SIZE;
+    // wider tolerance boxes are rare, they fall back to scanning every glyph.
+    private static final int MAX_CELL_SPAN = 8;
+    private static final int NONE = -1;
+
+    // open addressing table of cells, keyed by (cell x, cell y, character hash).
+    private int[] slotX;
+    private int[] slotY;
+    private int[] slotHash;
+    private int[] slotHead;
+    // the slots in use, so clearing a page touches only those. The table is at most half full.
+    private int[] used;
+    private int usedSlots = 0;
+
+    // glyphs, chained per cell through next.
+    private float[] xs;
+    private float[] ys;
+    private String[] characters;
+    private int[] next;
+    private int size = 0;
+
+    GlyphGrid()
+    {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds the glyph unless the same character was already seen within tolerance of (x, y).
+     *
+     * @return true when the glyph was added, false when it is a duplicate.
+     */
+    boolean addIfAbsent(String character, float x, float y, float tolerance)
+    {
+        float minX = x - tolerance;
+        float maxX = x + tolerance;
+        float minY = y - tolerance;
+        float maxY = y + tolerance;
+        int hash = character.hashCode();
+
+        if (isFinite(minX) && isFinite(maxX) && isFinite(minY) && isFinite(maxY))
+        {
+            int fromX = cell(minX), toX = cell(maxX);
+            int fromY = cell(minY), toY = cell(maxY);
+            if ((long) toX - fromX < MAX_CELL_SPAN && (long) toY - fromY < MAX_CELL_SPAN)
+            {
+                // counted loops, cells of huge coordinates saturate at Integer.MAX_VALUE.
+                for (int i = 0; i <= toX - fromX; i++)
+                {
+                    for (int j = 0; j <= toY - fromY; j++)
+                    {
+                        int slot = findSlot(fromX + i, fromY + j, hash);
+                        if (slotHead[slot] != NONE
+                                && containsInChain(slotHead[slot], character, minX, maxX, minY, maxY))
+                        {
+                            return false;
+                        }
+                    }
+                }
+            }
+            else if (containsAny(character, minX, maxX, minY, maxY))
+            {
+                return false;
+            }
+        }
+        else if (containsAny(character, minX, maxX, minY, maxY))
+        {
+            return false;
+        }
+
+        add(character, hash, x, y);
+        return true;
+    }
+
+    void clear()
+    {
+        for (int i = 0; i < usedSlots; i++)
+            slotHead[used[i]] = NONE;
+        usedSlots = 0;
+        Arrays.fill(characters, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Releases the arrays grown by an oversized page, called when the owning engine is done with a document.
+     */
+    void trim()
+    {
+        clear();
+        if (xs.length > INITIAL_CAPACITY * 16 || slotHead.length > INITIAL_CAPACITY * 16)
+            allocate(INITIAL_CAPACITY);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private void add(String character, int hash, float x, float y)
+    {
+        if (size == xs.length)
+        {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            characters = Arrays.copyOf(characters, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        // glyphs at NaN or infinite positions can only be found by a full scan, they are not put in a cell.
+        boolean finite = isFinite(x) && isFinite(y);
+        // grown before the glyph is added, a rehash would put it in its cell a second time.
+        if (finite && (usedSlots + 1) * 2 > slotHead.length)
+            rehash(slotHead.length * 2);
+        int glyph = size++;
+        xs[glyph] = x;
+        ys[glyph] = y;
+        characters[glyph] = character;
+        next[glyph] = NONE;
+        if (finite)
+            insert(glyph, cell(x), cell(y), hash);
+    }
+
+    private void insert(int glyph, int cx, int cy, int hash)
+    {
+        int slot = findSlot(cx, cy, hash);
+        if (slotHead[slot] == NONE)
+        {
+            slotX[slot] = cx;
+            slotY[slot] = cy;
+            slotHash[slot] = hash;
+            used[usedSlots++] = slot;
+        }
+        next[glyph] = slotHead[slot];
+        slotHead[slot] = glyph;
+    }
+
+    private int findSlot(int cx, int cy, int hash)
+    {
+        int mask = slotHead.length - 1;
+        int slot = mix(cx, cy, hash) & mask;
+        while (slotHead[slot] != NONE
+                && (slotX[slot] != cx || slotY[slot] != cy || slotHash[slot] != hash))
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity)
+    {
+        allocateSlots(capacity);
+        for (int glyph = 0; glyph < size; glyph++)
+        {
+            if (isFinite(xs[glyph]) && isFinite(ys[glyph]))
+                insert(glyph, cell(xs[glyph]), cell(ys[glyph]), characters[glyph].hashCode());
+        }
+    }
+
+    private void allocateSlots(int capacity)
+    {
+        slotX = new int[capacity];
+        slotY = new int[capacity];
+        slotHash = new int[capacity];
+        slotHead = new int[capacity];
+        Arrays.fill(slotHead, NONE);
+        used = new int[capacity / 2];
+        usedSlots = 0;
+    }
+
+    private void allocate(int capacity)
+    {
+        allocateSlots(capacity);
+        xs = new float[capacity];
+        ys = new float[capacity];
+        characters = new String[capacity];
+        next = new int[capacity];
+    }
+
+    private boolean containsInChain(int glyph, String character, float minX, float maxX, float minY, float maxY)
+    {
+        for (; glyph != NONE; glyph = next[glyph])
+        {
+            if (matches(glyph, character, minX, maxX, minY, maxY))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean containsAny(String character, float minX, float maxX, float minY, float maxY)
+    {
+        for (int glyph = 0; glyph < size; glyph++)
+        {
+            if (matches(glyph, character, minX, maxX, minY, maxY))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean matches(int glyph, String character, float minX, float maxX, float minY, float maxY)
+    {
+        return Float.compare(xs[glyph], minX) >= 0 && Float.compare(xs[glyph], maxX) < 0
+                && Float.compare(ys[glyph], minY) >= 0 && Float.compare(ys[glyph], maxY) < 0
+                && characters[glyph].equals(character);
+    }
+
+    private static int cell(float value)
+    {
+        return (int) Math.floor(value * INV_CELL_SIZE);
+    }
+
+    private static boolean isFinite(float value)
+    {
+        return Math.abs(value) <= Float.MAX_VALUE;
+    }
+
+    private static int mix(int cx, int cy, int hash)
+    {
+        int h = cx * 0x9E3779B1 + cy * 0x85EBCA6B + hash * 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+}
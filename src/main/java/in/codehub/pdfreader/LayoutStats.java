@@ -0,0 +1,114 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+
+import java.util.*;
+
+/**
+ * Font size and margin histograms collected while reading pages, used to derive the content font size and the
+ * margins of a document. Stats of disjoint page ranges can be merged.
+ */
+class LayoutStats
+{
+    private static final int TOP_MARGIN = 40;
+
+    private Map<Integer, Integer> fontSizeMap = new HashMap<Integer, Integer>();
+    private Map<Integer, Integer> leftMarginMap = new HashMap<Integer, Integer>();
+    private Map<Integer, Integer> rightMarginMap = new HashMap<Integer, Integer>();
+    private int pageWidth = -1;
+
+    void addFontSize(int fontSize, int glyphs)
+    {
+        addToMap(fontSizeMap, fontSize, glyphs);
+    }
+
+    void addLeftMargin(int margin)
+    {
+        addToMap(leftMarginMap, margin, 1);
+    }
+
+    void addRightMargin(int margin)
+    {
+        addToMap(rightMarginMap, margin, 1);
+    }
+
+    /**
+     * Width of the last page read, the right margin is measured from it.
+     */
+    void setPageWidth(int pageWidth)
+    {
+        this.pageWidth = pageWidth;
+    }
+
+    /**
+     * Adds the stats of pages that come after the ones already collected.
+     */
+    void merge(LayoutStats next)
+    {
+        for (Map.Entry<Integer, Integer> entry : next.fontSizeMap.entrySet())
+            addToMap(fontSizeMap, entry.getKey(), entry.getValue());
+        for (Map.Entry<Integer, Integer> entry : next.leftMarginMap.entrySet())
+            addToMap(leftMarginMap, entry.getKey(), entry.getValue());
+        for (Map.Entry<Integer, Integer> entry : next.rightMarginMap.entrySet())
+            addToMap(rightMarginMap, entry.getKey(), entry.getValue());
+        if (next.pageWidth >= 0)
+            pageWidth = next.pageWidth;
+    }
+
+    void apply(Document document)
+    {
+        document.setContentFontSize(getMax(fontSizeMap, 1));
+        if (pageWidth < 0)
+            return;
+        int l = getMax(leftMarginMap, 1);
+        int r = pageWidth - getMax(rightMarginMap, -1);
+        document.setMargins(l, r, TOP_MARGIN, TOP_MARGIN);
+    }
+
+    private void addToMap(Map<Integer, Integer> map, Integer key, int weight)
+    {
+        Integer count = map.get(key);
+        if (count == null)
+            count = 0;
+        count += weight;
+        map.put(key, count);
+    }
+
+    private int getMax(Map<Integer, Integer> map, final int order)
+    {
+        List<Map.Entry<Integer, Integer>> list = new ArrayList<Map.Entry<Integer, Integer>>();
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : map.entrySet())
+        {
+            list.add(entry);
+            count += entry.getValue();
+        }
+        Collections.sort(list, new Comparator<Map.Entry<Integer, Integer>>()
+        {
+            @Override
+            public int compare(Map.Entry<Integer, Integer> o1, Map.Entry<Integer, Integer> o2)
+            {
+                int diff = o2.getValue() - o1.getValue();
+                if (diff == 0)
+                {
+                    diff = (o1.getKey() - o2.getKey()) * order;
+                }
+                return diff;
+            }
+        });
+        int result = list.size() > 0 ? list.get(0).getKey() : 0;
+        if (list.size() > 1)
+        {
+            Map.Entry<Integer, Integer> entry = list.get(1);
+            int diff = Math.abs(percentage(list.get(0).getValue(), count) - percentage(entry.getValue(), count));
+            if (order == 1 && entry.getKey() < result && diff < 10)
+                result = entry.getKey();
+        }
+        return result;
+    }
+
+    private int percentage(int value, int count)
+    {
+        return (int) Math.round(value * 100.0 / count);
+    }
+}
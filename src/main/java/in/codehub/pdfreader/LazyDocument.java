@@ -0,0 +1,329 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.io.RandomAccessFile;
+import org.apache.pdfbox.pdfparser.NonSequentialPDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.util.AbstractList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A document read by the non sequential parser of PDFBox, which parses objects as they are asked for. Opening it
+ * reads the cross reference table, the trailer and the page tree count, a page is parsed together with
+ * everything it references (inherited attributes included) the first time it is asked for, see
+ * {@link #getPages}. Other pages it references, through annotations or destinations, are not parsed with it. Stream data goes to a scratch file. Closing the document closes the parser and deletes the
+ * scratch file and the copy of stream input.
+ */
+class LazyDocument extends PDDocument
+{
+    // the inheritable page attributes, looked up along the Parent chain.
+    private static final COSName[] INHERITED = {COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX,
+            COSName.ROTATE};
+
+    private final PageParser parser;
+    private final RandomAccessFile scratch;
+    private final File scratchFile;
+    private final File copy;
+    private final PDPage[] pages;
+
+    private LazyDocument(PageParser parser, RandomAccessFile scratch, File scratchFile, File copy, int pageCount)
+            throws IOException
+    {
+        super(parser.getDocument());
+        this.parser = parser;
+        this.scratch = scratch;
+        this.scratchFile = scratchFile;
+        this.copy = copy;
+        this.pages = new PDPage[pageCount];
+    }
+
+    static PDDocument load(File file, LoadOptions options) throws IOException
+    {
+        PDDocument doc = open(file, null, options);
+        return doc != null ? doc : PDDocument.load(file);
+    }
+
+    static PDDocument load(InputStream inputStream, LoadOptions options) throws IOException
+    {
+        File copy = File.createTempFile("input", ".pdf", options.getScratchDirectory());
+        try
+        {
+            OutputStream out = new FileOutputStream(copy);
+            try
+            {
+                byte[] buffer = new byte[65536];
+                int n;
+                while ((n = inputStream.read(buffer)) != -1)
+                    out.write(buffer, 0, n);
+            } finally
+            {
+                out.close();
+            }
+            PDDocument doc = open(copy, copy, options);
+            if (doc != null)
+            {
+                copy = null;
+                return doc;
+            }
+            return PDDocument.load(copy);
+        } finally
+        {
+            if (copy != null)
+                copy.delete();
+        }
+    }
+
+    /**
+     * The document, null when it has to be loaded the default way.
+     */
+    private static PDDocument open(File file, File copy, LoadOptions options) throws IOException
+    {
+        File scratchFile = File.createTempFile("scratch", ".bin", options.getScratchDirectory());
+        RandomAccessFile scratch = null;
+        PageParser parser = null;
+        LazyDocument doc = null;
+        try
+        {
+            scratch = new RandomAccessFile(scratchFile, "rw");
+            parser = new PageParser(file, scratch);
+            int pageCount = parser.getPageNumber();
+            if (!parser.getDocument().isEncrypted())
+                doc = new LazyDocument(parser, scratch, scratchFile, copy, pageCount);
+            return doc;
+        } catch (IOException e)
+        {
+            // the lazy parser is stricter about broken cross reference tables than the default one.
+            return null;
+        } catch (RuntimeException e)
+        {
+            return null;
+        } finally
+        {
+            if (doc == null)
+            {
+                if (parser != null)
+                    parser.close();
+                if (scratch != null)
+                    scratch.close();
+                scratchFile.delete();
+            }
+        }
+    }
+
+    /**
+     * The pages of the document, a lazily loaded one parses a page when it is first asked for.
+     */
+    static List<COSObjectable> getPages(PDDocument doc)
+    {
+        if (doc instanceof LazyDocument)
+            return ((LazyDocument) doc).getPages();
+        @SuppressWarnings("unchecked")
+        List<COSObjectable> pages = doc.getDocumentCatalog().getAllPages();
+        return pages;
+    }
+
+    private List<COSObjectable> getPages()
+    {
+        return new AbstractList<COSObjectable>()
+        {
+            @Override
+            public COSObjectable get(int index)
+            {
+                if (pages[index] == null)
+                {
+                    try
+                    {
+                        pages[index] = parser.loadPage(index);
+                    } catch (IOException e)
+                    {
+                        throw new IllegalStateException("Page " + (index + 1) + " could not be parsed", e);
+                    }
+                }
+                return pages[index];
+            }
+
+            @Override
+            public int size()
+            {
+                return pages.length;
+            }
+        };
+    }
+
+    /**
+     * Whether the page at index was parsed.
+     */
+    boolean isLoaded(int index)
+    {
+        return pages[index] != null;
+    }
+
+    @Override
+    public int getNumberOfPages()
+    {
+        return pages.length;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            super.close();
+        } finally
+        {
+            parser.close();
+            scratch.close();
+            scratchFile.delete();
+            if (copy != null)
+                copy.delete();
+        }
+    }
+
+    private static class PageParser extends NonSequentialPDFParser
+    {
+        private PageParser(File file, RandomAccessFile scratch) throws IOException
+        {
+            super(file, scratch);
+            parseMinimalCatalog();
+            initialParse();
+        }
+
+        /**
+         * Without this the initial parse reads every object reachable from the catalog. The flag is otherwise
+         * only set from a system property, which would change every non sequential parser of the JVM.
+         */
+        private void parseMinimalCatalog() throws IOException
+        {
+            try
+            {
+                Field field = NonSequentialPDFParser.class.getDeclaredField("parseMinimalCatalog");
+                field.setAccessible(true);
+                field.setBoolean(this, true);
+            } catch (Exception e)
+            {
+                throw new IOException("Lazy loading is not supported by this PDFBox version", e);
+            }
+        }
+
+        private PDPage loadPage(int index) throws IOException
+        {
+            COSDictionary dictionary = findPage(pageTree(), index);
+            if (dictionary == null)
+                throw new IOException("Page " + (index + 1) + " is missing from the page tree");
+            Map<COSBase, Boolean> visited = new IdentityHashMap<COSBase, Boolean>();
+            visited.put(dictionary, Boolean.TRUE);
+            resolveEntries(dictionary, visited);
+            for (COSDictionary parent = parent(dictionary); parent != null; parent = parent(parent))
+            {
+                for (COSName name : INHERITED)
+                    resolve(parent.getItem(name), visited);
+            }
+            return new PDPage(dictionary);
+        }
+
+        private COSDictionary pageTree() throws IOException
+        {
+            COSBase catalog = resolveObject(getDocument().getTrailer().getItem(COSName.ROOT));
+            COSBase pages = catalog instanceof COSDictionary
+                    ? resolveObject(((COSDictionary) catalog).getItem(COSName.PAGES)) : null;
+            if (!(pages instanceof COSDictionary))
+                throw new IOException("The document has no page tree");
+            return (COSDictionary) pages;
+        }
+
+        /**
+         * The page at index below node, walking down the page tree by the page counts of its nodes. Only the
+         * nodes on the way to the page are parsed, not the pages before it.
+         */
+        private COSDictionary findPage(COSDictionary node, int index) throws IOException
+        {
+            COSBase kids = resolveObject(node.getItem(COSName.KIDS));
+            if (!(kids instanceof COSArray))
+                return null;
+            for (COSBase item : (COSArray) kids)
+            {
+                COSBase kid = resolveObject(item);
+                if (!(kid instanceof COSDictionary))
+                    continue;
+                COSDictionary dictionary = (COSDictionary) kid;
+                if (COSName.PAGES.equals(dictionary.getItem(COSName.TYPE)))
+                {
+                    int count = dictionary.getInt(COSName.COUNT, 0);
+                    if (index < count)
+                        return findPage(dictionary, index);
+                    index -= count;
+                }
+                else if (index-- == 0)
+                {
+                    return dictionary;
+                }
+            }
+            return null;
+        }
+
+        private COSDictionary parent(COSDictionary dictionary) throws IOException
+        {
+            COSBase parent = resolveObject(dictionary.getItem(COSName.PARENT));
+            return parent instanceof COSDictionary ? (COSDictionary) parent : null;
+        }
+
+        /**
+         * Parses the objects reachable from base, the page tree and the pages in it excluded: those are parsed
+         * when their page is asked for.
+         */
+        private void resolve(COSBase base, Map<COSBase, Boolean> visited) throws IOException
+        {
+            base = resolveObject(base);
+            if (base == null || visited.put(base, Boolean.TRUE) != null)
+                return;
+            if (base instanceof COSDictionary)
+            {
+                COSDictionary dictionary = (COSDictionary) base;
+                COSBase type = dictionary.getItem(COSName.TYPE);
+                if (!COSName.PAGE.equals(type) && !COSName.PAGES.equals(type))
+                    resolveEntries(dictionary, visited);
+            }
+            else if (base instanceof COSArray)
+            {
+                COSArray array = (COSArray) base;
+                for (int i = 0; i < array.size(); i++)
+                    resolve(array.get(i), visited);
+            }
+        }
+
+        private void resolveEntries(COSDictionary dictionary, Map<COSBase, Boolean> visited) throws IOException
+        {
+            for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet())
+            {
+                if (!COSName.PARENT.equals(entry.getKey()))
+                    resolve(entry.getValue(), visited);
+            }
+        }
+
+        private COSBase resolveObject(COSBase base) throws IOException
+        {
+            if (base instanceof COSObject)
+            {
+                COSObject object = (COSObject) base;
+                if (object.getObject() == null)
+                    object.setObject(parseObjectDynamically(object, false));
+                return object.getObject();
+            }
+            return base;
+        }
+
+        private void close() throws IOException
+        {
+            if (pdfSource != null)
+                pdfSource.close();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.util.TextNormalize;
+
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes the text of a line in one pass over a reused buffer: presentation forms are expanded, code points in
+ * the Unicode category Other (\p{C}) are dropped and the result is trimmed. The text is the same as that of
+ * {@code normalize.normalizePres(line).replaceAll("\\p{C}", "").trim()}. Presentation forms are normalized one
+ * char at a time by PDFBox, so their expansions are cached per char.
+ */
+final class LineNormalizer
+{
+    private static final char FORMS_A_START = '\uFB00';
+    private static final char FORMS_A_END = '\uFDFF';
+    private static final char FORMS_B_START = '\uFE70';
+    private static final char FORMS_B_END = '\uFEFF';
+    // normalized depending on the char before it, lines that have it are normalized by PDFBox as a whole.
+    private static final char ALLAH = '\uFDF2';
+    // whether \p{C} takes in unassigned code points differs between Java versions, U+0378 is unassigned.
+    private static final boolean OTHER_UNASSIGNED = Pattern.compile("\\p{C}").matcher("\u0378").matches();
+    // so does how it steps over a surrogate pair outside \p{C}: Java 8 steps one char and drops the low surrogate
+    // on its own, later versions keep the pair. U+1D400 is a letter.
+    private static final boolean PAIRS_KEPT = "\uD835\uDC00".replaceAll("\\p{C}", "").length() == 2;
+
+    private final TextNormalize normalize;
+    private final String[] forms = new String[FORMS_A_END - FORMS_A_START + 1 + FORMS_B_END - FORMS_B_START + 1];
+    private final StringBuilder expanded = new StringBuilder();
+    private char[] chars = new char[256];
+
+    LineNormalizer(TextNormalize normalize)
+    {
+        this.normalize = normalize;
+    }
+
+    /**
+     * Normalizes the line into the buffer, see {@link #chars()}.
+     *
+     * @return the length of the normalized text.
+     */
+    int normalize(CharSequence line)
+    {
+        int length;
+        if (indexOf(line, ALLAH) >= 0)
+        {
+            length = filter(normalize.normalizePres(line.toString()), false);
+        }
+        else
+        {
+            length = filter(line, true);
+            if (length < 0)
+                length = filter(expand(line), false);
+        }
+        int start = 0;
+        while (start < length && chars[start] <= ' ')
+            start++;
+        while (length > start && chars[length - 1] <= ' ')
+            length--;
+        if (start > 0)
+            System.arraycopy(chars, start, chars, 0, length - start);
+        return length - start;
+    }
+
+    String toString(CharSequence line)
+    {
+        int length = normalize(line);
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * The normalized text, valid up to the next call to normalize.
+     */
+    char[] chars()
+    {
+        return chars;
+    }
+
+    /**
+     * Copies the text without \p{C} into the buffer. A surrogate pair outside \p{C} is kept whole or, like the
+     * regex on Java 8, only its high surrogate is kept, see PAIRS_KEPT.
+     *
+     * @return the length copied, -1 if stopOnForms and the text has presentation forms.
+     */
+    private int filter(CharSequence text, boolean stopOnForms)
+    {
+        if (chars.length < text.length())
+            chars = new char[Math.max(text.length(), chars.length * 2)];
+        int length = 0;
+        for (int i = 0; i < text.length(); )
+        {
+            char c = text.charAt(i);
+            if (stopOnForms && isForm(c))
+                return -1;
+            int codePoint = Character.codePointAt(text, i);
+            if (isOther(codePoint))
+            {
+                i += Character.charCount(codePoint);
+            }
+            else if (PAIRS_KEPT && codePoint != c)
+            {
+                chars[length++] = c;
+                chars[length++] = text.charAt(i + 1);
+                i += 2;
+            }
+            else
+            {
+                chars[length++] = c;
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The line with its presentation forms normalized.
+     */
+    private CharSequence expand(CharSequence line)
+    {
+        expanded.setLength(0);
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+            if (isForm(c))
+                expanded.append(form(c));
+            else
+                expanded.append(c);
+        }
+        return expanded;
+    }
+
+    private String form(char c)
+    {
+        int index = c <= FORMS_A_END ? c - FORMS_A_START : FORMS_A_END - FORMS_A_START + 1 + c - FORMS_B_START;
+        String expanded = forms[index];
+        if (expanded == null)
+        {
+            expanded = normalize.normalizePres(String.valueOf(c));
+            forms[index] = expanded;
+        }
+        return expanded;
+    }
+
+    private static boolean isForm(char c)
+    {
+        return c >= FORMS_A_START && c <= FORMS_A_END || c >= FORMS_B_START && c <= FORMS_B_END;
+    }
+
+    private static int indexOf(CharSequence line, char c)
+    {
+        for (int i = 0; i < line.length(); i++)
+        {
+            if (line.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Whether the code point is in the Unicode category Other, \p{C}.
+     */
+    private static boolean isOther(int codePoint)
+    {
+        switch (Character.getType(codePoint))
+        {
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.PRIVATE_USE:
+            case Character.SURROGATE:
+                return true;
+            case Character.UNASSIGNED:
+                return OTHER_UNASSIGNED;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package in.codehub.pdfreader;
+
+import java.io.File;
+
+/**
+ * How a {@link PdfReader} turns a file or stream into a PDDocument. By default the whole object graph is parsed
+ * into the heap up front. With lazy loading only the cross reference table and the trailer are read when a
+ * document is opened, every page is parsed with the objects it references when the engine first asks for it, and
+ * stream data is kept in a scratch file instead of the heap. Stream input is first copied to a file in the
+ * scratch directory. Encrypted documents and files the lazy parser rejects are loaded the default way.
+ */
+public class LoadOptions
+{
+    private boolean lazy = false;
+    private File scratchDirectory = null;
+
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    public void setLazy(boolean lazy)
+    {
+        this.lazy = lazy;
+    }
+
+    public File getScratchDirectory()
+    {
+        return scratchDirectory;
+    }
+
+    /**
+     * Directory of the scratch and input copy files of lazily loaded documents, null for java.io.tmpdir.
+     */
+    public void setScratchDirectory(File scratchDirectory)
+    {
+        this.scratchDirectory = scratchDirectory;
+    }
+}
@@ -0,0 +1,128 @@
+package in.codehub.pdfreader;
+
+import in.codehub.metrics.Metrics;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+/**
+ * Times the callbacks of a listener and counts its lines and paragraphs, recorded once per page so the hot
+ * path only adds two clock reads per callback.
+ */
+class MeteredListener extends PDFParserListener
+{
+    private PDFParserListener listener;
+    private Metrics metrics;
+    private long nanos;
+    private long pageNanos;
+    private int lines;
+    private int paragraphs;
+
+    void setListener(PDFParserListener listener, Metrics metrics)
+    {
+        this.listener = listener;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Time spent in the callbacks since the listener was set.
+     */
+    long getNanos()
+    {
+        return nanos;
+    }
+
+    @Override
+    void startDocument(PDDocument pdf)
+    {
+        long start = System.nanoTime();
+        listener.startDocument(pdf);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void endDocument(PDDocument pdf)
+    {
+        long start = System.nanoTime();
+        listener.endDocument(pdf);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void startPage(PDPage page, int currentPageNo)
+    {
+        pageNanos = nanos;
+        lines = 0;
+        paragraphs = 0;
+        long start = System.nanoTime();
+        listener.startPage(page, currentPageNo);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void endPage(PDPage page)
+    {
+        long start = System.nanoTime();
+        listener.endPage(page);
+        nanos += System.nanoTime() - start;
+        metrics.record(Metrics.Stage.LISTENER, nanos - pageNanos);
+        metrics.increment(Metrics.Counter.LINES, lines);
+        metrics.increment(Metrics.Counter.PARAGRAPHS, paragraphs);
+    }
+
+    @Override
+    void startArticle()
+    {
+        long start = System.nanoTime();
+        listener.startArticle();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void endArticle()
+    {
+        long start = System.nanoTime();
+        listener.endArticle();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void startParagraph()
+    {
+        paragraphs++;
+        long start = System.nanoTime();
+        listener.startParagraph();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void endParagraph()
+    {
+        long start = System.nanoTime();
+        listener.endParagraph();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void newLine(TextLine line)
+    {
+        if (!line.isEmpty())
+            lines++;
+        long start = System.nanoTime();
+        listener.newLine(line);
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    void endLine()
+    {
+        long start = System.nanoTime();
+        listener.endLine();
+        nanos += System.nanoTime() - start;
+    }
+
+    @Override
+    boolean isDone()
+    {
+        return listener.isDone();
+    }
+}
@@ -1,20 +1,32 @@
 package in.codehub.pdfreader;
 
+import in.codehub.metrics.Metrics;
+import in.codehub.metrics.Tracing;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
 import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
 import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.exceptions.CryptographyException;
 import org.apache.pdfbox.exceptions.InvalidPasswordException;
 import org.apache.pdfbox.exceptions.WrappedIOException;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.pdmodel.common.COSObjectable;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontFactory;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.apache.pdfbox.pdmodel.interactive.pagenavigation.PDThreadBead;
 import org.apache.pdfbox.util.*;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -23,11 +35,20 @@ class PDFParser extends PDFStreamEngine
     private static final String thisClassName = "pdftextstripper";
     private static float DEFAULT_INDENT_THRESHOLD = 2.0f;
     private static float DEFAULT_DROP_THRESHOLD = 2.5f;
-
-    //enable the ability to set the default indent/drop thresholds
+    private static int OFF_HEAP_GLYPH_THRESHOLD = 1 << 20;
+    private static boolean TEXT_ONLY = true;
+    private static boolean FORM_CACHE = true;
+
+    //enable the ability to set the default indent/drop thresholds,
+    //the page size from which glyphs are kept off heap,
+    //the text only content stream tokenizer
+    //and the replay of repeated forms
     //with -D system properties:
     //    pdftextstripper.indent
     //    pdftextstripper.drop
+    //    pdftextstripper.offheapglyphs
+    //    pdftextstripper.textonly
+    //    pdftextstripper.formcache
     static
     {
         String prop = thisClassName + ".indent";
@@ -54,6 +75,30 @@ class PDFParser extends PDFStreamEngine
                 //ignore and use default
             }
         }
+        prop = thisClassName + ".offheapglyphs";
+        s = System.getProperty(prop);
+        if (s != null && s.length() > 0)
+        {
+            try
+            {
+                OFF_HEAP_GLYPH_THRESHOLD = Integer.parseInt(s);
+            } catch (NumberFormatException nfe)
+            {
+                //ignore and use default
+            }
+        }
+        prop = thisClassName + ".textonly";
+        s = System.getProperty(prop);
+        if (s != null && s.length() > 0)
+        {
+            TEXT_ONLY = Boolean.parseBoolean(s);
+        }
+        prop = thisClassName + ".formcache";
+        s = System.getProperty(prop);
+        if (s != null && s.length() > 0)
+        {
+            FORM_CACHE = Boolean.parseBoolean(s);
+        }
     }
 
     private int currentPageNo = 0;
@@ -76,29 +121,136 @@ class PDFParser extends PDFStreamEngine
     private float averageCharTolerance = .3f;
 
     private List<PDThreadBead> pageArticles = null;
-    protected Vector<List<TextPosition>> charactersByArticle = new Vector<List<TextPosition>>();
-
-    private Map<String, TreeMap<Float, TreeSet<Float>>> characterListMapping =
-            new HashMap<String, TreeMap<Float, TreeSet<Float>>>();
+    protected List<List<TextPosition>> charactersByArticle = new ArrayList<List<TextPosition>>();
+    private final FontMetricsCache fontMetrics = new FontMetricsCache();
+    // fonts of the current document by font dictionary, and by resource dictionary as looked up by Tf.
+    private final Map<COSDictionary, PDFont> documentFonts = new IdentityHashMap<COSDictionary, PDFont>();
+    private final Map<COSDictionary, Map<String, PDFont>> resourceFonts =
+            new IdentityHashMap<COSDictionary, Map<String, PDFont>>();
+    private FontCache fontCache = null;
+    private final GlyphBuffer glyphs = new GlyphBuffer(fontMetrics, OFF_HEAP_GLYPH_THRESHOLD);
+    private final TextLine line = new TextLine(glyphs);
+
+    private final GlyphGrid shownGlyphs = new GlyphGrid();
 
     protected PDDocument document;
     private TextNormalize normalize;
     private boolean inParagraph;
     private PDFParserListener listener;
+    private Metrics metrics = Metrics.NONE;
+    private final MeteredListener meteredListener = new MeteredListener();
+    // glyphs of the current page dropped as duplicates.
+    private int suppressedGlyphs;
+    private int pageLines;
+    private long documentGlyphs;
+    private long documentLines;
+    private String documentId;
+
+    // budgets, see ReadLimits. Glyphs are counted as drawn, duplicates included, and the budgets are checked
+    // once the page count passes glyphCheck and every CHECK_INTERVAL operators.
+    private static final int CHECK_INTERVAL = ReadLimits.CHECK_GLYPHS;
+    private ReadLimits limits = null;
+    private ReadLimits.Limit limitReached;
+    private boolean truncated;
+    private long documentDeadline;
+    private long pageDeadline;
+    private long drawnGlyphs;
+    private int pageDrawnGlyphs;
+    // the budget of a parallel read, drawnGlyphs then counts the glyphs of every worker but this page's.
+    private DocumentBudget sharedBudget;
+    private int sharedPageGlyphs;
+    private int pageGlyphLimit;
+    private int glyphCheck = Integer.MAX_VALUE;
+    private int operators;
+    private int streamDepth;
+
+    private static final PDFParserListener NO_LISTENER = new PDFParserListener()
+    {
+    };
+
+    // the operator table is the same for every engine, load it once and share it.
+    private static Properties textOperators = null;
+
+    private static synchronized Properties getTextOperators() throws IOException
+    {
+        if (textOperators == null)
+        {
+            textOperators = ResourceLoader.loadProperties(
+                    "org/apache/pdfbox/resources/PDFTextStripper.properties", true);
+        }
+        return textOperators;
+    }
+
+    // the operators that matter for the text and its position, the text only tokenizer skips all others.
+    private static final String[] TEXT_OPERATORS = {"BT", "ET", "cm", "Do", "gs", "q", "Q", "T*", "Tc", "Td", "TD",
+            "Tf", "Tj", "TJ", "TL", "Tm", "Tr", "Ts", "Tw", "Tz", "'", "\""};
+    // PDFStreamEngine keeps the page and the resource stack to itself, they are set here when the text only
+    // tokenizer runs in place of its own. Null when the fields cannot be reached.
+    private static final Field PAGE_FIELD = engineField("page");
+    private static final Field RESOURCES_FIELD = engineField("streamResourcesStack");
+
+    private static Field engineField(String name)
+    {
+        try
+        {
+            Field field = PDFStreamEngine.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    private final boolean textOnly = TEXT_ONLY && PAGE_FIELD != null && RESOURCES_FIELD != null;
+    // the glyphs of the forms drawn in the document, null when forms are always interpreted.
+    private final FormCache forms = FORM_CACHE && FormCache.isAvailable() ? new FormCache() : null;
+    // one tokenizer per form nesting level, as a form is scanned while the stream that draws it is.
+    private final List<ContentScanner> scanners = new ArrayList<ContentScanner>();
+    private final ContentScanner.Handler scanHandler = new ContentScanner.Handler()
+    {
+        @Override
+        public void operator(String name, List<COSBase> operands) throws IOException
+        {
+            // the String overload logs and swallows what the operator throws, a reached budget included.
+            processOperator(PDFOperator.getOperator(name), operands);
+        }
+
+        @Override
+        public void skipped() throws IOException
+        {
+            countOperator();
+        }
+    };
 
     PDFParser(TextNormalize normalize) throws IOException
     {
-        super(ResourceLoader.loadProperties(
-                "org/apache/pdfbox/resources/PDFTextStripper.properties", true));
+        super(getTextOperators());
         this.normalize = normalize;
-        this.listener = new PDFParserListener()
+        this.listener = NO_LISTENER;
+        if (textOnly)
+            registerOperatorProcessor("Do", new FormInvoke());
+    }
+
+    void setListener(PDFParserListener listener)
+    {
+        if (metrics != Metrics.NONE)
+        {
+            meteredListener.setListener(listener, metrics);
+            this.listener = meteredListener;
+        }
+        else
         {
-        };
+            this.listener = listener;
+        }
     }
 
-    public void setListener(PdfReader listener)
+    /**
+     * Records stage latencies and counters of the pages parsed, takes effect with the next listener set.
+     */
+    void setMetrics(Metrics metrics)
     {
-        this.listener = listener;
+        this.metrics = metrics;
     }
 
     void parse(COSDocument doc) throws IOException
@@ -110,12 +262,75 @@ class PDFParser extends PDFStreamEngine
     {
         super.resetEngine();
         currentPageNo = 0;
+        inParagraph = false;
+    }
+
+    /**
+     * Drops everything held from the last parsed document so the engine can be reused for another one.
+     */
+    void reset()
+    {
+        resetEngine();
+        startPage = 1;
+        endPage = Integer.MAX_VALUE;
+        document = null;
+        pageArticles = null;
+        charactersByArticle.clear();
+        shownGlyphs.trim();
+        glyphs.trim();
+        for (ContentScanner scanner : scanners)
+            scanner.trim();
+        clearFonts();
+        if (forms != null)
+            forms.clear();
+        line.clear();
+        listener = NO_LISTENER;
+        documentId = null;
+        sharedBudget = null;
     }
 
     void parse(PDDocument doc) throws IOException
+    {
+        open(doc);
+        processPages(LazyDocument.getPages(document));
+        endDocument(document);
+    }
+
+    /**
+     * Parses pages startPage to endPage (one based, inclusive) of the document given to {@link #open}. Calls can
+     * be repeated with later page ranges to extend a partially parsed document.
+     */
+    void parsePages(List<COSObjectable> pages, int startPage, int endPage) throws IOException
+    {
+        currentPageNo = 0;
+        setStartPage(startPage);
+        setEndPage(endPage);
+        processPages(pages);
+    }
+
+    void finish()
+    {
+        endDocument(document);
+    }
+
+    void open(PDDocument doc) throws IOException
     {
         resetEngine();
+        clearFonts();
+        if (forms != null)
+            forms.clear();
         document = doc;
+        documentGlyphs = 0;
+        documentLines = 0;
+        limitReached = null;
+        truncated = false;
+        drawnGlyphs = 0;
+        if (sharedBudget != null)
+            documentDeadline = sharedBudget.getDeadline();
+        else if (limits != null && limits.getDocumentDeadlineMillis() > 0)
+            documentDeadline = System.nanoTime() + limits.getDocumentDeadlineMillis() * 1000000;
+        else
+            documentDeadline = Long.MAX_VALUE;
         startDocument(document);
 
         if (document.isEncrypted())
@@ -137,9 +352,6 @@ class PDFParser extends PDFStreamEngine
                 throw new WrappedIOException("Error: document is encrypted", e);
             }
         }
-
-        processPages(document.getDocumentCatalog().getAllPages());
-        endDocument(document);
     }
 
     protected void processPages(List<COSObjectable> pages) throws IOException
@@ -165,11 +377,15 @@ class PDFParser extends PDFStreamEngine
             endBookmarkPageNumber = 0;
         }
 
-        for (COSObjectable page : pages)
+        // only the pages of the range are asked for, a lazily loaded document parses a page when it is.
+        int last = (int) Math.min(endPage, (long) pages.size());
+        for (int index = Math.max(startPage, 1) - 1; index < last; index++)
         {
-            PDPage nextPage = (PDPage) page;
+            if (isStopped())
+                break;
+            PDPage nextPage = (PDPage) pages.get(index);
             PDStream contentStream = nextPage.getContents();
-            currentPageNo++;
+            currentPageNo = index + 1;
             if (contentStream != null)
             {
                 COSStream contents = contentStream.getStream();
@@ -195,33 +411,304 @@ class PDFParser extends PDFStreamEngine
                 (startBookmarkPageNumber == -1 || currentPageNo >= startBookmarkPageNumber) &&
                 (endBookmarkPageNumber == -1 || currentPageNo <= endBookmarkPageNumber))
         {
-            startPage(page, currentPageNo);
-            pageArticles = page.getThreadBeads();
-            int numberOfArticleSections = 1 + pageArticles.size() * 2;
-            if (!shouldSeparateByBeads)
-            {
-                numberOfArticleSections = 1;
-            }
-            int originalSize = charactersByArticle.size();
-            charactersByArticle.setSize(numberOfArticleSections);
-            for (int i = 0; i < numberOfArticleSections; i++)
+            if (limits != null && !startPageBudget())
+                return;
+            Tracing.Span span = Tracing.beginPage();
+            boolean parsed = false;
+            try
             {
-                if (numberOfArticleSections < originalSize)
+                startPage(page, currentPageNo);
+                preparePage(page);
+                if (metrics == Metrics.NONE)
                 {
-                    charactersByArticle.get(i).clear();
+                    collectGlyphs(page, content);
+                    parsePage();
                 }
                 else
                 {
-                    charactersByArticle.set(i, new ArrayList<TextPosition>());
+                    long start = System.nanoTime();
+                    collectGlyphs(page, content);
+                    long parseStart = System.nanoTime();
+                    long listenerNanos = meteredListener.getNanos();
+                    parsePage();
+                    long listenerTime = meteredListener.getNanos() - listenerNanos;
+                    metrics.record(Metrics.Stage.PROCESS_STREAM, parseStart - start);
+                    metrics.record(Metrics.Stage.PARSE_PAGE, System.nanoTime() - parseStart - listenerTime);
+                    metrics.increment(Metrics.Counter.PAGES, 1);
+                    metrics.increment(Metrics.Counter.GLYPHS, glyphs.size());
+                    metrics.increment(Metrics.Counter.SUPPRESSED_GLYPHS, suppressedGlyphs);
+                    if (forms != null)
+                        metrics.increment(Metrics.Counter.REPLAYED_GLYPHS, forms.getReplayed());
+                }
+                endPage(page);
+                parsed = true;
+            } finally
+            {
+                // pages that fail or hit a budget are recorded too, a failed one with the glyphs drawn so far.
+                if (span.isRecording())
+                {
+                    span.commitPage(getDocumentId(), currentPageNo, content.getFilteredLength(),
+                            parsed ? glyphs.size() : pageDrawnGlyphs, pageLines, limitReached != null, !parsed);
                 }
             }
+            documentGlyphs += glyphs.size();
+            documentLines += pageLines;
+            if (sharedBudget != null)
+                drawnGlyphs = sharedBudget.addDrawnGlyphs(pageDrawnGlyphs - sharedPageGlyphs);
+            else
+                drawnGlyphs += pageDrawnGlyphs;
+            if (limitReached != null && !limitReached.isDocumentLimit())
+                limitReached = null;
+        }
+
+    }
 
-            characterListMapping.clear();
+    private void collectGlyphs(PDPage page, COSStream content) throws IOException
+    {
+        try
+        {
             processStream(page, page.findResources(), content);
-            parsePage();
-            endPage(page);
+        } catch (ReadLimitExceededException e)
+        {
+            // the rest of the content stream is skipped, the page keeps the glyphs collected so far.
+        }
+        if (limitReached != null && limits.getAction() == ReadLimits.Action.FAIL)
+            throw new ReadLimitExceededException(limitReached, currentPageNo);
+    }
+
+    /**
+     * Sets the deadline and glyph budget of the next page, false when the page is skipped because a document
+     * budget is spent.
+     */
+    private boolean startPageBudget() throws ReadLimitExceededException
+    {
+        long now = System.nanoTime();
+        pageDeadline = limits.getPageDeadlineMillis() > 0
+                ? Math.min(documentDeadline, now + limits.getPageDeadlineMillis() * 1000000) : documentDeadline;
+        if (sharedBudget != null)
+            drawnGlyphs = sharedBudget.addDrawnGlyphs(0);
+        sharedPageGlyphs = 0;
+        pageGlyphLimit = pageGlyphLimit();
+        glyphCheck = Math.min(pageGlyphLimit, CHECK_INTERVAL);
+        operators = 0;
+
+        if (sharedBudget != null && sharedBudget.getReached() != null)
+            reach(sharedBudget.getReached());
+        else if (now > documentDeadline)
+            reach(ReadLimits.Limit.DOCUMENT_DEADLINE);
+        else if (limits.getMaxDocumentGlyphs() > 0 && drawnGlyphs >= limits.getMaxDocumentGlyphs())
+            reach(ReadLimits.Limit.DOCUMENT_GLYPHS);
+        else
+            return true;
+        if (limits.getAction() == ReadLimits.Action.FAIL)
+            throw new ReadLimitExceededException(limitReached, currentPageNo);
+        return false;
+    }
+
+    /**
+     * Checks the budgets of the page, false once one of them is reached.
+     */
+    private boolean withinBudget()
+    {
+        if (limitReached != null)
+            return false;
+        if (sharedBudget != null)
+        {
+            // publishes the glyphs of the page so far and takes in those of the other workers.
+            drawnGlyphs = sharedBudget.addDrawnGlyphs(pageDrawnGlyphs - sharedPageGlyphs) - pageDrawnGlyphs;
+            sharedPageGlyphs = pageDrawnGlyphs;
+            pageGlyphLimit = pageGlyphLimit();
+            if (sharedBudget.getReached() != null)
+            {
+                reach(sharedBudget.getReached());
+                return false;
+            }
+        }
+        if (pageDrawnGlyphs > pageGlyphLimit)
+        {
+            reach(limits.getMaxDocumentGlyphs() > 0 && drawnGlyphs + pageDrawnGlyphs > limits.getMaxDocumentGlyphs()
+                    ? ReadLimits.Limit.DOCUMENT_GLYPHS : ReadLimits.Limit.PAGE_GLYPHS);
+        }
+        else if (System.nanoTime() > pageDeadline)
+        {
+            reach(System.nanoTime() > documentDeadline
+                    ? ReadLimits.Limit.DOCUMENT_DEADLINE : ReadLimits.Limit.PAGE_DEADLINE);
+        }
+        else if (limits.getMaxPageBytes() > 0
+                && collectedGlyphs() * (long) ReadLimits.BYTES_PER_GLYPH > limits.getMaxPageBytes())
+        {
+            reach(ReadLimits.Limit.PAGE_MEMORY);
+        }
+        else
+        {
+            glyphCheck = (int) Math.min(pageGlyphLimit, (long) pageDrawnGlyphs + CHECK_INTERVAL);
+            return true;
+        }
+        return false;
+    }
+
+    private void reach(ReadLimits.Limit limit)
+    {
+        limitReached = limit;
+        truncated = true;
+        if (sharedBudget != null && limit.isDocumentLimit())
+            sharedBudget.reach(limit);
+    }
+
+    /**
+     * Glyphs the current page may draw, within the page budget and what is left of the document budget.
+     */
+    private int pageGlyphLimit()
+    {
+        long glyphLimit = limits.getMaxPageGlyphs() > 0 ? limits.getMaxPageGlyphs() : Integer.MAX_VALUE;
+        if (limits.getMaxDocumentGlyphs() > 0)
+            glyphLimit = Math.min(glyphLimit, limits.getMaxDocumentGlyphs() - drawnGlyphs);
+        return (int) Math.max(0, glyphLimit);
+    }
+
+    private int collectedGlyphs()
+    {
+        int count = 0;
+        for (List<TextPosition> textList : charactersByArticle)
+            count += textList.size();
+        return count;
+    }
+
+    /**
+     * Stops the content stream once a budget is reached, by an exception that leaves the outermost stream. It is
+     * thrown here rather than from the operator, PDFBox logs and skips operators that fail.
+     */
+    @Override
+    protected void processOperator(PDFOperator operator, List<COSBase> arguments) throws IOException
+    {
+        countOperator();
+        if (forms != null && forms.isRecording())
+            forms.operator(operator.getOperation());
+        super.processOperator(operator, arguments);
+        if (limitReached != null)
+            throw new ReadLimitExceededException(limitReached, currentPageNo);
+    }
+
+    private void countOperator() throws ReadLimitExceededException
+    {
+        if (limits != null)
+        {
+            if ((++operators & (CHECK_INTERVAL - 1)) == 0)
+                withinBudget();
+            if (limitReached != null)
+                throw new ReadLimitExceededException(limitReached, currentPageNo);
+        }
+    }
+
+    @Override
+    public void processSubStream(PDPage page, PDResources resources, COSStream content) throws IOException
+    {
+        try
+        {
+            drawStream(page, resources, content);
+        } catch (ReadLimitExceededException e)
+        {
+            // a form is drawn by an operator, the stream that draws it stops after the operator returns.
+            if (streamDepth == 0)
+                throw e;
+        }
+    }
+
+    private void drawStream(PDPage page, PDResources resources, COSStream content) throws IOException
+    {
+        if (limits != null && limits.getMaxFormDepth() > 0 && streamDepth > limits.getMaxFormDepth())
+        {
+            reach(ReadLimits.Limit.FORM_DEPTH);
+            throw new ReadLimitExceededException(limitReached, currentPageNo);
+        }
+        // the page itself is at depth 0, the forms it draws are deeper.
+        FormCache.Form form = null;
+        if (forms != null && streamDepth > 0)
+        {
+            if (forms.replay(content, this))
+                return;
+            form = forms.start(this);
+        }
+        streamDepth++;
+        try
+        {
+            if (textOnly)
+                scanSubStream(page, resources, content);
+            else
+                super.processSubStream(page, resources, content);
+            if (form != null)
+            {
+                forms.finish(content, form, this);
+                form = null;
+            }
+        } finally
+        {
+            if (form != null)
+                forms.abort(form);
+            streamDepth--;
+        }
+    }
+
+    /**
+     * Does what the PDFStreamEngine does for a stream, with the text only tokenizer in place of its own.
+     */
+    private void scanSubStream(PDPage page, PDResources resources, COSStream content) throws IOException
+    {
+        Stack<PDResources> stack;
+        try
+        {
+            PAGE_FIELD.set(this, page);
+            @SuppressWarnings("unchecked")
+            Stack<PDResources> resourcesStack = (Stack<PDResources>) RESOURCES_FIELD.get(this);
+            stack = resourcesStack;
+        } catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException(e);
+        }
+        while (scanners.size() < streamDepth)
+            scanners.add(new ContentScanner(TEXT_OPERATORS));
+        if (resources != null)
+            stack.push(resources);
+        try
+        {
+            scanners.get(streamDepth - 1).scan(content.getUnfilteredStream(), scanHandler);
+        } finally
+        {
+            if (resources != null)
+                stack.pop().clear();
         }
+    }
 
+    /**
+     * Clears the per page state before the glyphs of a page are collected.
+     */
+    void preparePage(PDPage page)
+    {
+        pageArticles = page.getThreadBeads();
+        int numberOfArticleSections = 1 + pageArticles.size() * 2;
+        if (!shouldSeparateByBeads)
+        {
+            numberOfArticleSections = 1;
+        }
+        while (charactersByArticle.size() > numberOfArticleSections)
+        {
+            charactersByArticle.remove(charactersByArticle.size() - 1);
+        }
+        for (List<TextPosition> textList : charactersByArticle)
+        {
+            textList.clear();
+        }
+        while (charactersByArticle.size() < numberOfArticleSections)
+        {
+            charactersByArticle.add(new ArrayList<TextPosition>());
+        }
+
+        shownGlyphs.clear();
+        if (forms != null)
+            forms.startPage(page);
+        suppressedGlyphs = 0;
+        pageLines = 0;
+        pageDrawnGlyphs = 0;
     }
 
 
@@ -231,6 +718,7 @@ class PDFParser extends PDFStreamEngine
     private static final float MAXHEIGHTFORLINE_RESET_VALUE = -1;
     private static final float MINYTOPFORLINE_RESET_VALUE = Float.MAX_VALUE;
     private static final float LASTWORDSPACING_RESET_VALUE = -1;
+    private static final int NO_GLYPH = -1;
 
     protected void parsePage() throws IOException
     {
@@ -239,12 +727,13 @@ class PDFParser extends PDFStreamEngine
         float endOfLastTextX = ENDOFLASTTEXTX_RESET_VALUE;
         float lastWordSpacing = LASTWORDSPACING_RESET_VALUE;
         float maxHeightForLine = MAXHEIGHTFORLINE_RESET_VALUE;
-        PositionWrapper lastPosition = null;
-        PositionWrapper lastLineStartPosition = null;
+        int lastPosition = NO_GLYPH;
+        int lastLineStartPosition = NO_GLYPH;
 
         boolean startOfPage = true;//flag to indicate start of page
         boolean startOfArticle;
 
+        glyphs.clear();
         for (List<TextPosition> textList : charactersByArticle)
         {
             if (getSortByPosition())
@@ -252,53 +741,40 @@ class PDFParser extends PDFStreamEngine
                 TextPositionComparator comparator = new TextPositionComparator();
                 Collections.sort(textList, comparator);
             }
+            glyphs.addArticle(textList, getSortByPosition());
+            // the columns hold all that is needed from here on, the page's TextPositions can go.
+            textList.clear();
+        }
 
+        for (int article = 0; article < glyphs.articleCount(); article++)
+        {
             startArticle();
             startOfArticle = true;
 
-            List<TextPosition> line = new ArrayList<TextPosition>();
+            line.clear();
 
-            Iterator<TextPosition> textIter = textList.iterator();    // start from the beginning again
             //Keeps track of the previous average character width
             float previousAveCharWidth = -1;
-            while (textIter.hasNext())
+            int articleEnd = glyphs.articleEnd(article);
+            for (int current = glyphs.articleStart(article); current < articleEnd; current++)
             {
-                TextPosition position = textIter.next();
-                PositionWrapper current = new PositionWrapper(position);
-                String characterValue = position.getCharacter();
-
                 //Resets the average character width when we see a change in font
                 // or a change in the font size
-                if (lastPosition != null && ((position.getFont() != lastPosition.getTextPosition().getFont())
-                        || (position.getFontSize() != lastPosition.getTextPosition().getFontSize())))
+                if (lastPosition != NO_GLYPH && ((glyphs.fontId(current) != glyphs.fontId(lastPosition))
+                        || (glyphs.fontSize(current) != glyphs.fontSize(lastPosition))))
                 {
                     previousAveCharWidth = -1;
                 }
 
-                float positionX;
-                float positionY;
-                float positionWidth;
-                float positionHeight;
-
-                if (getSortByPosition())
-                {
-                    positionX = position.getXDirAdj();
-                    positionY = position.getYDirAdj();
-                    positionWidth = position.getWidthDirAdj();
-                    positionHeight = position.getHeightDir();
-                }
-                else
-                {
-                    positionX = position.getX();
-                    positionY = position.getY();
-                    positionWidth = position.getWidth();
-                    positionHeight = position.getHeight();
-                }
+                float positionX = glyphs.x(current);
+                float positionY = glyphs.y(current);
+                float positionWidth = glyphs.width(current);
+                float positionHeight = glyphs.height(current);
 
                 //The current amount of characters in a word
-                int wordCharCount = position.getIndividualWidths().length;
+                int wordCharCount = glyphs.charCount(current);
 
-                float wordSpacing = position.getWidthOfSpace();
+                float wordSpacing = glyphs.spaceWidth(current);
                 float deltaSpace;
                 if ((wordSpacing == 0) || (wordSpacing == Float.NaN))
                 {
@@ -342,11 +818,11 @@ class PDFParser extends PDFStreamEngine
                     }
                 }
 
-                if (lastPosition != null)
+                if (lastPosition != NO_GLYPH)
                 {
                     if (startOfArticle)
                     {
-                        lastPosition.setArticleStart();
+                        glyphs.set(lastPosition, GlyphBuffer.ARTICLE_START);
                         startOfArticle = false;
                     }
                     // RDD - Here we determine whether this getText object is on the current
@@ -374,10 +850,10 @@ class PDFParser extends PDFStreamEngine
                     if (expectedStartOfNextWordX != EXPECTEDSTARTOFNEXTWORDX_RESET_VALUE
                             && expectedStartOfNextWordX < positionX &&
                             //only bother adding a space if the last character was not a space
-                            lastPosition.getTextPosition().getCharacter() != null &&
-                            !lastPosition.getTextPosition().getCharacter().endsWith(" "))
+                            glyphs.hasText(lastPosition) &&
+                            !glyphs.endsWithSpace(lastPosition))
                     {
-                        line.add(WordSeparator.getSeparator());
+                        line.addSeparator();
                     }
                 }
 
@@ -391,21 +867,20 @@ class PDFParser extends PDFStreamEngine
                 endOfLastTextX = positionX + positionWidth;
 
                 // add it to the list
-                if (characterValue != null)
+                if (glyphs.hasText(current))
                 {
-                    if (startOfPage && lastPosition == null)
+                    if (startOfPage && lastPosition == NO_GLYPH)
                     {
                         startParagraph();//not sure this is correct for RTL?
                     }
-                    line.add(position);
+                    line.add(current);
                 }
                 maxHeightForLine = Math.max(maxHeightForLine, positionHeight);
                 minYTopForLine = Math.min(minYTopForLine, positionY - positionHeight);
                 lastPosition = current;
                 if (startOfPage)
                 {
-                    lastPosition.setParagraphStart();
-                    lastPosition.setLineStart();
+                    glyphs.set(lastPosition, GlyphBuffer.PARAGRAPH_START | GlyphBuffer.LINE_START);
                     lastLineStartPosition = lastPosition;
                     startOfPage = false;
                 }
@@ -414,7 +889,7 @@ class PDFParser extends PDFStreamEngine
             }
 
             // print the final line
-            if (line.size() > 0)
+            if (!line.isEmpty())
             {
                 newline(line);
                 endParagraph();
@@ -437,19 +912,14 @@ class PDFParser extends PDFStreamEngine
 
     protected void processTextPosition(TextPosition text)
     {
+        if (forms != null && forms.isRecording())
+            forms.record(text);
+        if (++pageDrawnGlyphs > glyphCheck && !withinBudget())
+            return;
         boolean showCharacter = true;
         if (suppressDuplicateOverlappingText)
         {
-            showCharacter = false;
             String textCharacter = text.getCharacter();
-            float textX = text.getX();
-            float textY = text.getY();
-            TreeMap<Float, TreeSet<Float>> sameTextCharacters = characterListMapping.get(textCharacter);
-            if (sameTextCharacters == null)
-            {
-                sameTextCharacters = new TreeMap<Float, TreeSet<Float>>();
-                characterListMapping.put(textCharacter, sameTextCharacters);
-            }
 
             // RDD - Here we compute the value that represents the end of the rendered
             // getText.  This value is used to determine whether subsequent getText rendered
@@ -462,33 +932,10 @@ class PDFParser extends PDFStreamEngine
             // an amount to allow for kerning (a percentage of the width of the last
             // character).
             //
-            boolean suppressCharacter = false;
             float tolerance = (text.getWidth() / textCharacter.length()) / 3.0f;
-
-            SortedMap<Float, TreeSet<Float>> xMatches =
-                    sameTextCharacters.subMap(textX - tolerance, textX + tolerance);
-            for (TreeSet<Float> xMatch : xMatches.values())
-            {
-                SortedSet<Float> yMatches =
-                        xMatch.subSet(textY - tolerance, textY + tolerance);
-                if (!yMatches.isEmpty())
-                {
-                    suppressCharacter = true;
-                    break;
-                }
-            }
-
-            if (!suppressCharacter)
-            {
-                TreeSet<Float> ySet = sameTextCharacters.get(textX);
-                if (ySet == null)
-                {
-                    ySet = new TreeSet<Float>();
-                    sameTextCharacters.put(textX, ySet);
-                }
-                ySet.add(textY);
-                showCharacter = true;
-            }
+            showCharacter = shownGlyphs.addIfAbsent(textCharacter, text.getX(), text.getY(), tolerance);
+            if (!showCharacter)
+                suppressedGlyphs++;
         }
 
         if (showCharacter)
@@ -619,7 +1066,7 @@ class PDFParser extends PDFStreamEngine
         return currentPageNo;
     }
 
-    protected Vector<List<TextPosition>> getCharactersByArticle()
+    protected List<List<TextPosition>> getCharactersByArticle()
     {
         return charactersByArticle;
     }
@@ -711,6 +1158,145 @@ class PDFParser extends PDFStreamEngine
         dropThreshold = dropThresholdValue;
     }
 
+    /**
+     * Budgets of the documents parsed from now on, null for none.
+     */
+    void setLimits(ReadLimits limits)
+    {
+        this.limits = limits;
+        this.glyphCheck = limits != null ? 0 : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Shares the document budgets with the other workers of a parallel read, set before {@link #open}. Cleared
+     * by reset.
+     */
+    void setSharedBudget(DocumentBudget sharedBudget)
+    {
+        this.sharedBudget = sharedBudget;
+    }
+
+    /**
+     * Whether a budget cut pages or glyphs of the document short.
+     */
+    boolean isTruncated()
+    {
+        return truncated;
+    }
+
+    /**
+     * Whether a document budget was reached or the listener is done, later pages are skipped.
+     */
+    boolean isStopped()
+    {
+        return limitReached != null && limitReached.isDocumentLimit() || listener.isDone();
+    }
+
+    /**
+     * Names the document in trace events, by default the first file identifier of the trailer. Cleared by reset.
+     */
+    void setDocumentId(String documentId)
+    {
+        this.documentId = documentId;
+    }
+
+    String getDocumentId()
+    {
+        if (documentId == null && document != null)
+        {
+            COSArray ids = document.getDocument().getDocumentID();
+            if (ids != null && ids.size() > 0 && ids.getObject(0) instanceof COSString)
+                documentId = ((COSString) ids.getObject(0)).getHexString();
+        }
+        return documentId;
+    }
+
+    /**
+     * Glyphs kept on the pages parsed since the document was opened.
+     */
+    long getGlyphCount()
+    {
+        return documentGlyphs;
+    }
+
+    long getLineCount()
+    {
+        return documentLines;
+    }
+
+    /**
+     * Shares fonts with other documents through the given cache, null to create the fonts of every document.
+     */
+    void setFontCache(FontCache fontCache)
+    {
+        this.fontCache = fontCache;
+    }
+
+    /**
+     * Fonts of the resources on top of the stack. PDFBox creates the fonts again for every resources object,
+     * which means for every page, here a font is created once per document or taken from the font cache.
+     */
+    @Override
+    public Map<String, PDFont> getFonts()
+    {
+        COSDictionary resources = getResources().getCOSDictionary();
+        Map<String, PDFont> fonts = resourceFonts.get(resources);
+        if (fonts == null)
+        {
+            fonts = new HashMap<String, PDFont>();
+            COSBase fontsDictionary = resources.getDictionaryObject(COSName.FONT);
+            if (fontsDictionary instanceof COSDictionary)
+            {
+                for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) fontsDictionary).entrySet())
+                {
+                    COSBase font = entry.getValue() instanceof COSObject
+                            ? ((COSObject) entry.getValue()).getObject() : entry.getValue();
+                    if (font instanceof COSDictionary)
+                    {
+                        PDFont pdFont = getFont((COSDictionary) font);
+                        if (pdFont != null)
+                            fonts.put(entry.getKey().getName(), pdFont);
+                    }
+                }
+            }
+            resourceFonts.put(resources, fonts);
+        }
+        return fonts;
+    }
+
+    private PDFont getFont(COSDictionary fontDictionary)
+    {
+        PDFont font = documentFonts.get(fontDictionary);
+        if (font == null && !documentFonts.containsKey(fontDictionary))
+        {
+            try
+            {
+                font = fontCache != null ? fontCache.acquire(fontDictionary) : PDFontFactory.createFont(fontDictionary);
+            } catch (IOException e)
+            {
+                // like PDResources, a broken font is left out and Tf fails for it.
+                font = null;
+            }
+            documentFonts.put(fontDictionary, font);
+        }
+        return font;
+    }
+
+    private void clearFonts()
+    {
+        if (fontCache != null)
+        {
+            for (PDFont font : documentFonts.values())
+            {
+                if (font != null)
+                    fontCache.release(font);
+            }
+        }
+        fontMetrics.clear();
+        documentFonts.clear();
+        resourceFonts.clear();
+    }
+
 
     protected String inspectFontEncoding(String str)
     {
@@ -735,16 +1321,15 @@ class PDFParser extends PDFStreamEngine
         return reversed.toString();
     }
 
-    protected PositionWrapper handleLineSeparation(PositionWrapper current,
-                                                   PositionWrapper lastPosition, PositionWrapper lastLineStartPosition, float maxHeightForLine)
-            throws IOException
+    protected int handleLineSeparation(int current, int lastPosition, int lastLineStartPosition,
+                                       float maxHeightForLine) throws IOException
     {
-        current.setLineStart();
+        glyphs.set(current, GlyphBuffer.LINE_START);
         isParagraphSeparation(current, lastPosition, lastLineStartPosition, maxHeightForLine);
         lastLineStartPosition = current;
-        if (current.isParagraphStart())
+        if (glyphs.is(current, GlyphBuffer.PARAGRAPH_START))
         {
-            if (lastPosition.isArticleStart())
+            if (glyphs.is(lastPosition, GlyphBuffer.ARTICLE_START))
             {
                 startParagraph();
             }
@@ -762,53 +1347,52 @@ class PDFParser extends PDFStreamEngine
         return lastLineStartPosition;
     }
 
-    protected void isParagraphSeparation(PositionWrapper position,
-                                         PositionWrapper lastPosition, PositionWrapper lastLineStartPosition, float maxHeightForLine)
+    protected void isParagraphSeparation(int position, int lastPosition, int lastLineStartPosition,
+                                         float maxHeightForLine)
     {
         boolean result = false;
-        if (lastLineStartPosition == null)
+        if (lastLineStartPosition == NO_GLYPH)
         {
             result = true;
         }
         else
         {
-            float yGap = Math.abs(position.getTextPosition().getYDirAdj() -
-                    lastPosition.getTextPosition().getYDirAdj());
-            float xGap = (position.getTextPosition().getXDirAdj() -
-                    lastLineStartPosition.getTextPosition().getXDirAdj());//do we need to flip this for rtl?
+            float yGap = Math.abs(glyphs.yDirAdj(position) - glyphs.yDirAdj(lastPosition));
+            float xGap = (glyphs.xDirAdj(position) -
+                    glyphs.xDirAdj(lastLineStartPosition));//do we need to flip this for rtl?
             if (yGap > (getDropThreshold() * maxHeightForLine))
             {
                 result = true;
             }
-            else if (xGap > (getIndentThreshold() * position.getTextPosition().getWidthOfSpace()))
+            else if (xGap > (getIndentThreshold() * glyphs.spaceWidth(position)))
             {
                 //getText is indented, but try to screen for hanging indent
-                if (!lastLineStartPosition.isParagraphStart())
+                if (!glyphs.is(lastLineStartPosition, GlyphBuffer.PARAGRAPH_START))
                 {
                     result = true;
                 }
                 else
                 {
-                    position.setHangingIndent();
+                    glyphs.set(position, GlyphBuffer.HANGING_INDENT);
                 }
             }
-            else if (xGap < -position.getTextPosition().getWidthOfSpace())
+            else if (xGap < -glyphs.spaceWidth(position))
             {
                 //getText is left of previous line. Was it a hanging indent?
-                if (!lastLineStartPosition.isParagraphStart())
+                if (!glyphs.is(lastLineStartPosition, GlyphBuffer.PARAGRAPH_START))
                 {
                     result = true;
                 }
             }
-            else if (Math.abs(xGap) < (0.25 * position.getTextPosition().getWidth()))
+            else if (Math.abs(xGap) < (0.25 * glyphs.plainWidth(position)))
             {
                 //current horizontal position is within 1/4 a char of the last
                 //linestart.  We'll treat them as lined up.
-                if (lastLineStartPosition.isHangingIndent())
+                if (glyphs.is(lastLineStartPosition, GlyphBuffer.HANGING_INDENT))
                 {
-                    position.setHangingIndent();
+                    glyphs.set(position, GlyphBuffer.HANGING_INDENT);
                 }
-                else if (lastLineStartPosition.isParagraphStart())
+                else if (glyphs.is(lastLineStartPosition, GlyphBuffer.PARAGRAPH_START))
                 {
                     //check to see if the previous line looks like
                     //any of a number of standard list item formats
@@ -826,15 +1410,14 @@ class PDFParser extends PDFStreamEngine
         }
         if (result)
         {
-            position.setParagraphStart();
+            glyphs.set(position, GlyphBuffer.PARAGRAPH_START);
         }
     }
 
-    protected Pattern matchListItemPattern(PositionWrapper pw)
+    protected Pattern matchListItemPattern(int glyph)
     {
-        TextPosition tp = pw.getTextPosition();
-        String txt = tp.getCharacter();
-        return matchPattern(txt, getListItemPatterns());
+        CharSequence txt = glyphs.text(glyph);
+        return txt == null ? null : matchPattern(txt, getListItemPatterns());
     }
 
     private static final String[] LIST_ITEM_EXPRESSIONS = {
@@ -873,7 +1456,7 @@ class PDFParser extends PDFStreamEngine
         return listOfPatterns;
     }
 
-    protected static final Pattern matchPattern(String string, List<Pattern> patterns)
+    protected static final Pattern matchPattern(CharSequence string, List<Pattern> patterns)
     {
         Pattern matchedPattern = null;
         for (Pattern p : patterns)
@@ -935,8 +1518,10 @@ class PDFParser extends PDFStreamEngine
         listener.endParagraph();
     }
 
-    private void newline(List<TextPosition> line)
+    private void newline(TextLine line)
     {
+        if (!line.isEmpty())
+            pageLines++;
         listener.newLine(line);
     }
 }
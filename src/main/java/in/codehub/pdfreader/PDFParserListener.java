@@ -2,9 +2,6 @@ package in.codehub.pdfreader;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.util.TextPosition;
-
-import java.util.List;
 
 abstract class PDFParserListener
 {
@@ -40,7 +37,10 @@ abstract class PDFParserListener
     {
     }
 
-    void newLine(List<TextPosition> line)
+    /**
+     * The line is only valid during the call, the engine reuses it for the next line.
+     */
+    void newLine(TextLine line)
     {
     }
 
@@ -48,4 +48,12 @@ abstract class PDFParserListener
     {
     }
 
+    /**
+     * Whether the listener has seen enough, the pages after the current one are not parsed.
+     */
+    boolean isDone()
+    {
+        return false;
+    }
+
 }
@@ -0,0 +1,19 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Page;
+
+/**
+ * Receives every page as soon as it is parsed, before the rest of the document is read. A front matter
+ * extractor can stop once it has what it needs, the pages after are then never parsed.
+ */
+public interface PageListener
+{
+    /**
+     * @param page     the page just parsed with its paragraphs and lines, pages without text are not passed.
+     * @param document the pages parsed so far. Its content font size and margins are provisional, computed from
+     *                 these pages only.
+     * @return true to read on, false to stop after this page.
+     */
+    boolean pageRead(Page page, Document document);
+}
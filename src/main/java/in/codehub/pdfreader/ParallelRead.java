@@ -0,0 +1,173 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Page;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
+import org.apache.pdfbox.util.TextNormalize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the pages of one document on several threads. PDDocument is not thread safe (streams and fonts are
+ * decoded lazily and cached in place), so every worker loads its own copy of the document and claims chunks of
+ * consecutive pages with its own engine. Chunks are merged back in page order together with their layout stats.
+ * The document deadline and glyph budget are shared by the workers, once one of them reaches a document limit
+ * the others stop at their next check and no more chunks are handed out.
+ */
+class ParallelRead
+{
+    interface Source
+    {
+        PDDocument load() throws IOException;
+    }
+
+    // chunks per worker, small enough to even out pages of different cost.
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final PdfReader reader;
+    private final TextNormalize normalize;
+    private final Source source;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private int pageCount;
+    private int chunkPages;
+    private DocumentBuilder[] chunks;
+    private DocumentBudget budget;
+    private volatile boolean truncated = false;
+
+    ParallelRead(PdfReader reader, TextNormalize normalize, Source source)
+    {
+        this.reader = reader;
+        this.normalize = normalize;
+        this.source = source;
+    }
+
+    Document run(ExecutorService executor, int parallelism) throws IOException
+    {
+        PDDocument first = source.load();
+        budget = new DocumentBudget(reader.getLimits());
+        try
+        {
+            pageCount = LazyDocument.getPages(first).size();
+        } catch (RuntimeException e)
+        {
+            first.close();
+            throw e;
+        }
+        chunkPages = Math.max(1, (pageCount + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+        chunks = new DocumentBuilder[(pageCount + chunkPages - 1) / chunkPages];
+
+        List<Worker> workers = new ArrayList<Worker>();
+        try
+        {
+            for (int i = 1; i < Math.min(parallelism, chunks.length); i++)
+            {
+                Worker worker = new Worker();
+                worker.future = executor.submit(worker);
+                workers.add(worker);
+            }
+            // the calling thread works too, and once it runs out of chunks it waits only for the workers that
+            // started. A worker still queued is dropped, it may never start when the caller is a task of a busy
+            // executor.
+            work(first);
+            for (Worker worker : workers)
+            {
+                if (worker.started.compareAndSet(false, true))
+                    worker.future.cancel(false);
+                else
+                    worker.future.get();
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading pages in parallel");
+        } catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        } finally
+        {
+            // stops the remaining workers after their current chunk when anything failed.
+            nextChunk.set(chunks.length);
+            for (Worker worker : workers)
+            {
+                if (worker.started.compareAndSet(false, true))
+                    worker.future.cancel(false);
+            }
+        }
+        return merge();
+    }
+
+    private void work(PDDocument doc) throws IOException
+    {
+        PDFParser pdfParser = reader.acquireParser();
+        try
+        {
+            pdfParser.setSharedBudget(budget);
+            pdfParser.open(doc);
+            List<COSObjectable> pages = LazyDocument.getPages(doc);
+            int chunk;
+            while (budget.getReached() == null && (chunk = nextChunk.getAndIncrement()) < chunks.length)
+            {
+                DocumentBuilder builder = new DocumentBuilder(normalize);
+                pdfParser.resetEngine();
+                pdfParser.setListener(builder);
+                builder.startDocument(doc);
+                pdfParser.parsePages(pages, chunk * chunkPages + 1, Math.min((chunk + 1) * chunkPages, pageCount));
+                chunks[chunk] = builder;
+            }
+            if (pdfParser.isTruncated())
+                truncated = true;
+        } finally
+        {
+            reader.releaseParser(pdfParser);
+            doc.close();
+        }
+    }
+
+    private class Worker implements Callable<Void>
+    {
+        // set by the worker when it starts, or by the caller when it no longer waits for the worker.
+        private final AtomicBoolean started = new AtomicBoolean();
+        private Future<Void> future;
+
+        @Override
+        public Void call() throws IOException
+        {
+            // skip loading a copy when the other workers already claimed every chunk.
+            if (started.compareAndSet(false, true) && nextChunk.get() < chunks.length)
+                work(source.load());
+            return null;
+        }
+    }
+
+    private Document merge()
+    {
+        Document document = new Document();
+        LayoutStats stats = new LayoutStats();
+        for (DocumentBuilder chunk : chunks)
+        {
+            // chunks after a document limit are not read.
+            if (chunk == null)
+                continue;
+            for (Page page : chunk.getDocument().getPages())
+                document.addPage(page);
+            stats.merge(chunk.getStats());
+        }
+        stats.apply(document);
+        document.setTruncated(truncated);
+        return document;
+    }
+}
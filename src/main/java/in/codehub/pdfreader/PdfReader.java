@@ -1,282 +1,420 @@
 package in.codehub.pdfreader;
 
 import in.codehub.document.Document;
-import in.codehub.document.Line;
-import in.codehub.document.Page;
-import in.codehub.document.Paragraph;
+import in.codehub.metrics.Metrics;
+import in.codehub.metrics.Tracing;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.util.TextNormalize;
-import org.apache.pdfbox.util.TextPosition;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.*;
-
-public class PdfReader extends PDFParserListener
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reads pdf files into {@link Document}s. A reader only holds immutable configuration and a pool of idle
+ * parsing engines, every call to read gets its own engine and document state, so one instance can be shared
+ * by any number of threads.
+ */
+public class PdfReader
 {
     private static PdfReader instance = null;
+    private static final float DROP_THRESHOLD = 2.8f;
 
-    private final PDFParser pdfParser;
     private final TextNormalize normalize;
-    private Document document;
-
-    private Map<Integer, Integer> fontSizeMap = new HashMap<Integer, Integer>();
-    private Map<Integer, Integer> leftMarginMap = new HashMap<Integer, Integer>();
-    private Map<Integer, Integer> rightMarginMap = new HashMap<Integer, Integer>();
-    private Page currPage;
-    private Paragraph currParagraph;
-    private static final String SPACE = " ";
-    private static final int FONT_OFFSET = 1000000;
-    private static final int CAP_OFFSET = 100;
+    private final BlockingQueue<PDFParser> idleParsers;
+    private final FontCache fontCache;
+    private final Metrics metrics;
+    private final ReadLimits limits;
+    private final LoadOptions loadOptions;
 
-    public static PdfReader getInstance() throws IOException
+    public static synchronized PdfReader getInstance() throws IOException
     {
         if (instance == null)
         {
-            TextNormalize normalize = new TextNormalize("UTF-8");
-            PDFParser pdfParser = new PDFParser(normalize);
-            instance = new PdfReader(pdfParser, normalize);
+            instance = new PdfReader();
         }
         return instance;
     }
 
-    private PdfReader(PDFParser pdfParser, TextNormalize normalize)
+    public PdfReader()
     {
-        this.pdfParser = pdfParser;
-        this.normalize = normalize;
-        pdfParser.setDropThreshold(2.8f);
-        pdfParser.setListener(this);
+        this(Runtime.getRuntime().availableProcessors());
     }
 
-    public Document read(String filePath) throws IOException
+    /**
+     * @param maxIdleParsers number of parsing engines kept around for reuse once a read completes.
+     */
+    public PdfReader(int maxIdleParsers)
     {
-        PDDocument doc = PDDocument.load(filePath);
-        return read(doc);
+        this(maxIdleParsers, null);
     }
 
-    public Document read(File file) throws IOException
+    /**
+     * @param maxIdleParsers number of parsing engines kept around for reuse once a read completes.
+     * @param fontCache fonts shared by the documents read, may be shared with other readers. null to create
+     *                  the fonts of every document.
+     */
+    public PdfReader(int maxIdleParsers, FontCache fontCache)
     {
-        PDDocument doc = PDDocument.load(file);
-        return read(doc);
+        this(maxIdleParsers, fontCache, Metrics.NONE);
     }
 
-    public Document read(InputStream inputStream) throws IOException
+    /**
+     * @param metrics receives the load, per page and listener latencies and the page, glyph, line and paragraph
+     *                counts of every read, null for none.
+     */
+    public PdfReader(int maxIdleParsers, FontCache fontCache, Metrics metrics)
     {
-        PDDocument doc = PDDocument.load(inputStream);
-        return read(doc);
+        this(maxIdleParsers, fontCache, metrics, null);
     }
 
-    public Document read(PDDocument doc) throws IOException
+    /**
+     * @param limits deadlines and budgets of every document read, null for none.
+     */
+    public PdfReader(int maxIdleParsers, FontCache fontCache, Metrics metrics, ReadLimits limits)
     {
-        pdfParser.parse(doc);
-        doc.close();
-        reset();
-        return document;
+        this(maxIdleParsers, fontCache, metrics, limits, null);
     }
 
-    @Override
-    void startPage(PDPage page, int pageNo)
+    /**
+     * @param loadOptions how files and streams are loaded, null to parse them into the heap up front.
+     */
+    public PdfReader(int maxIdleParsers, FontCache fontCache, Metrics metrics, ReadLimits limits,
+                     LoadOptions loadOptions)
     {
-        PDRectangle box = page.getTrimBox();
-        currPage = new Page(pageNo, Math.round(box.getWidth()), Math.round(box.getHeight()));
+        this.normalize = new TextNormalize("UTF-8");
+        this.idleParsers = new ArrayBlockingQueue<PDFParser>(Math.max(1, maxIdleParsers));
+        this.fontCache = fontCache;
+        this.metrics = metrics != null ? metrics : Metrics.NONE;
+        this.limits = limits;
+        this.loadOptions = loadOptions;
     }
 
-    @Override
-    void startParagraph()
+    public Metrics getMetrics()
     {
-        currParagraph = new Paragraph();
+        return metrics;
     }
 
-    @Override
-    void endParagraph()
+    public Document read(String filePath) throws IOException
     {
-        if (currParagraph.getLines().size() > 0)
-            currPage.addParagraph(currParagraph);
+        return read(new File(filePath));
     }
 
-    @Override
-    void newLine(List<TextPosition> line)
+    public Document read(File file) throws IOException
     {
-        extractParams(line, currPage);
-        if (line.size() > 0)
-        {
-            Line l = createLine(line);
-            if (l.length() > 0) currParagraph.addLine(l);
-        }
+        return read(file, null);
     }
 
-    @Override
-    void endLine()
+    /**
+     * Reads the file and passes every page to the listener as soon as it is parsed. Once the listener stops, the
+     * document of the pages read up to then is returned.
+     */
+    public Document read(File file, PageListener pageListener) throws IOException
     {
+        Tracing.Span span = Tracing.beginDocument();
+        PDDocument doc = load(file, span);
+        return read(doc, pageListener, span, file.getPath(), span.isRecording() ? file.length() : -1);
     }
 
-    @Override
-    void endPage(PDPage page)
+    public Document read(InputStream inputStream) throws IOException
     {
-        if (currPage.getParagraphs().size() > 0)
-            document.addPage(currPage);
+        return read(inputStream, null);
     }
 
-    @Override
-    void startDocument(PDDocument pdf)
+    public Document read(InputStream inputStream, PageListener pageListener) throws IOException
     {
-        document = new Document();
+        Tracing.Span span = Tracing.beginDocument();
+        if (!span.isRecording())
+            return read(load(inputStream), pageListener, span, null, -1);
+        CountingInputStream in = new CountingInputStream(inputStream);
+        PDDocument doc = load(in, span);
+        return read(doc, pageListener, span, null, in.count);
     }
 
-    @Override
-    void endDocument(PDDocument pdf)
+    /**
+     * Writes the text of the file to out in reading order, a line per row and a blank row between paragraphs.
+     * No {@link Document} is built, use it when only the text is needed, as for full text indexing. A char buffer
+     * that fills up fails the read with an IOException.
+     */
+    public void readText(File file, Appendable out) throws IOException
     {
-        document.setContentFontSize(getMax(fontSizeMap, 1));
-        int l = getMax(leftMarginMap, 1);
-        int r = currPage.getWidth() - getMax(rightMarginMap, -1);
-        int t = 40;
-        document.setMargins(l, r, t, t);
+        Tracing.Span span = Tracing.beginDocument();
+        PDDocument doc = load(file, span);
+        readText(doc, out, span, file.getPath(), span.isRecording() ? file.length() : -1);
     }
 
-    @Override
-    void startArticle()
+    public void readText(InputStream inputStream, Appendable out) throws IOException
     {
+        Tracing.Span span = Tracing.beginDocument();
+        if (!span.isRecording())
+        {
+            readText(load(inputStream), out, span, null, -1);
+            return;
+        }
+        CountingInputStream in = new CountingInputStream(inputStream);
+        PDDocument doc = load(in, span);
+        readText(doc, out, span, null, in.count);
     }
 
-    @Override
-    void endArticle()
+    /**
+     * Reads the first page of a stream. Of a linearized pdf only the first page section at the start of the
+     * stream is read, the rest of it is left unread. Any other pdf is loaded in full.
+     */
+    public Document readFirstPage(InputStream inputStream) throws IOException
     {
+        long start = System.nanoTime();
+        FirstPageSection section = FirstPageSection.read(inputStream);
+        PDDocument doc = section.getDocument();
+        if (doc != null)
+            metrics.record(Metrics.Stage.LOAD, System.nanoTime() - start);
+        else
+            doc = load(section.getInput());
+        ReadSession session = open(doc);
+        try
+        {
+            return session.readPages(1);
+        } finally
+        {
+            session.close();
+        }
     }
 
-
-    private void reset()
+    public Document read(PDDocument doc) throws IOException
     {
-        pdfParser.resetEngine();
-        fontSizeMap.clear();
-        leftMarginMap.clear();
-        rightMarginMap.clear();
+        return read(doc, null, Tracing.beginDocument(), null, -1);
     }
 
-    private void extractParams(List<TextPosition> line, Page page)
+    private Document read(PDDocument doc, PageListener pageListener, Tracing.Span span, String path, long bytes)
+            throws IOException
     {
-        for (TextPosition text : line)
-            addToMap(fontSizeMap, Math.round(text.getFontSizeInPt()));
-
-        if (line.size() > 0 && !(line.get(0) instanceof WordSeparator))
+        PDFParser pdfParser = acquireParser();
+        DocumentBuilder builder = new DocumentBuilder(normalize);
+        boolean failed = true;
+        try
         {
-            int margin = normalize(line.get(0).getX(), false);
-            if (margin < page.getWidth() * .25)
-                addToMap(leftMarginMap, margin);
+            builder.setPageListener(pageListener);
+            pdfParser.setListener(builder);
+            if (span.isRecording() && path != null)
+                pdfParser.setDocumentId(path);
+            pdfParser.parse(doc);
+            Document document = builder.getDocument();
+            document.setTruncated(pdfParser.isTruncated());
+            failed = false;
+            return document;
+        } finally
+        {
+            // failed reads, those that hit a deadline among them, are the ones worth finding in a recording.
+            if (span.isRecording())
+            {
+                span.commitDocument(pdfParser.getDocumentId(), path, bytes, builder.getDocument().getPages().size(),
+                        pdfParser.getGlyphCount(), pdfParser.getLineCount(), pdfParser.isTruncated(), failed);
+            }
+            releaseParser(pdfParser);
+            doc.close();
         }
+    }
 
-        if (line.size() > 0 && !(line.get(line.size() - 1) instanceof WordSeparator))
+    private void readText(PDDocument doc, Appendable out, Tracing.Span span, String path, long bytes)
+            throws IOException
+    {
+        PDFParser pdfParser = acquireParser();
+        TextSink sink = new TextSink(normalize, out);
+        boolean failed = true;
+        try
         {
-            int margin = normalize(line.get(line.size() - 1).getX(), true);
-            if (margin > page.getWidth() * .7)
-                addToMap(rightMarginMap, margin);
+            pdfParser.setListener(sink);
+            if (span.isRecording() && path != null)
+                pdfParser.setDocumentId(path);
+            pdfParser.parse(doc);
+            sink.checkError();
+            failed = false;
+        } finally
+        {
+            if (span.isRecording())
+            {
+                span.commitDocument(pdfParser.getDocumentId(), path, bytes, sink.getPages(),
+                        pdfParser.getGlyphCount(), pdfParser.getLineCount(), pdfParser.isTruncated(), failed);
+            }
+            releaseParser(pdfParser);
+            doc.close();
         }
     }
 
-    private Line createLine(List<TextPosition> line)
+    /**
+     * Reads the pages of one large document on up to parallelism threads of the executor, the calling thread
+     * included. Every thread loads its own copy of the file. The read does not wait for threads of the executor
+     * that are busy, it can be called from a task of the same executor.
+     */
+    public Document readParallel(final File file, ExecutorService executor, int parallelism) throws IOException
     {
-        int maxFontSize = 0;
-        int count = 0;
-        StringBuilder lineBuilder = new StringBuilder();
-        TextPosition firstText = null;
-        TextPosition lastText = null;
-        for (TextPosition text : line)
+        return new ParallelRead(this, normalize, new ParallelRead.Source()
         {
-            if (text instanceof WordSeparator)
+            @Override
+            public PDDocument load() throws IOException
             {
-                lineBuilder.append(SPACE);
+                return PdfReader.this.load(file);
             }
-            else
+        }).run(executor, Math.max(1, parallelism));
+    }
+
+    public Document readParallel(final byte[] pdf, ExecutorService executor, int parallelism) throws IOException
+    {
+        return new ParallelRead(this, normalize, new ParallelRead.Source()
+        {
+            @Override
+            public PDDocument load() throws IOException
             {
-                lineBuilder.append(text.getCharacter());
-                int fontSize = getFontSize(text);
-                count += (fontSize == maxFontSize ? 1 : -1);
-                if (count < 0) maxFontSize = fontSize;
-                if (firstText == null) firstText = text;
-                lastText = text;
+                return PdfReader.this.load(new ByteArrayInputStream(pdf));
             }
-        }
-        int firstX = firstText != null ? Math.round(firstText.getX()) : -1;
-        int lastX = lastText != null ? Math.round(lastText.getX()) : -1;
-        int y = firstText != null ? Math.round(firstText.getY()) : -1;
+        }).run(executor, Math.max(1, parallelism));
+    }
 
-        return new Line(getString(lineBuilder), maxFontSize, firstX, lastX, y);
+    public ReadSession open(String filePath) throws IOException
+    {
+        return open(load(new File(filePath)));
     }
 
-    private void addToMap(Map<Integer, Integer> map, Integer key)
+    public ReadSession open(File file) throws IOException
     {
-        Integer count = map.get(key);
-        if (count == null)
-            count = 0;
-        count += 1;
-        map.put(key, count);
+        return open(load(file));
+    }
 
+    public ReadSession open(InputStream inputStream) throws IOException
+    {
+        return open(load(inputStream));
     }
 
-    private int getFontSize(TextPosition text)
+    /**
+     * Opens a session that parses the document on demand. The session owns the document and closes it.
+     */
+    public ReadSession open(PDDocument doc) throws IOException
     {
-        float fontSize = text.getFontSizeInPt();
-        float capHeight = 0;
-        float italicAngle = 0;
-        PDFont font = text.getFont();
-        if (font != null && font.getFontDescriptor() != null)
+        PDFParser pdfParser = acquireParser();
+        try
+        {
+            return new ReadSession(this, pdfParser, new DocumentBuilder(normalize), doc);
+        } catch (IOException e)
         {
-            capHeight = font.getFontDescriptor().getCapHeight();
-            italicAngle = font.getFontDescriptor().getItalicAngle();
+            releaseParser(pdfParser);
+            doc.close();
+            throw e;
         }
-        return (int) (fontSize * FONT_OFFSET + capHeight * CAP_OFFSET + italicAngle);
     }
 
-    private int getMax(Map<Integer, Integer> map, final int order)
+    ReadLimits getLimits()
+    {
+        return limits;
+    }
+
+    PDFParser acquireParser() throws IOException
     {
-        List<Map.Entry<Integer, Integer>> list = new ArrayList<Map.Entry<Integer, Integer>>();
-        int count = 0;
-        for (Map.Entry<Integer, Integer> entry : map.entrySet())
+        PDFParser pdfParser = idleParsers.poll();
+        if (pdfParser == null)
         {
-            list.add(entry);
-            count += entry.getValue();
+            pdfParser = new PDFParser(normalize);
+            pdfParser.setDropThreshold(DROP_THRESHOLD);
+            pdfParser.setFontCache(fontCache);
+            pdfParser.setMetrics(metrics);
+            pdfParser.setLimits(limits);
         }
-        Collections.sort(list, new Comparator<Map.Entry<Integer, Integer>>()
+        return pdfParser;
+    }
+
+    void releaseParser(PDFParser pdfParser)
+    {
+        pdfParser.reset();
+        idleParsers.offer(pdfParser);
+    }
+
+    private PDDocument load(File file) throws IOException
+    {
+        long start = System.nanoTime();
+        PDDocument doc = loadOptions != null && loadOptions.isLazy()
+                ? LazyDocument.load(file, loadOptions) : PDDocument.load(file);
+        metrics.record(Metrics.Stage.LOAD, System.nanoTime() - start);
+        return doc;
+    }
+
+    private PDDocument load(InputStream inputStream) throws IOException
+    {
+        long start = System.nanoTime();
+        PDDocument doc = loadOptions != null && loadOptions.isLazy()
+                ? LazyDocument.load(inputStream, loadOptions) : PDDocument.load(inputStream);
+        metrics.record(Metrics.Stage.LOAD, System.nanoTime() - start);
+        return doc;
+    }
+
+    /**
+     * Loads the file, committing the span of a read that fails already here.
+     */
+    private PDDocument load(File file, Tracing.Span span) throws IOException
+    {
+        boolean failed = true;
+        try
         {
-            @Override
-            public int compare(Map.Entry<Integer, Integer> o1, Map.Entry<Integer, Integer> o2)
-            {
-                int diff = o2.getValue() - o1.getValue();
-                if (diff == 0)
-                {
-                    diff = (o1.getKey() - o2.getKey()) * order;
-                }
-                return diff;
-            }
-        });
-        int result = list.size() > 0 ? list.get(0).getKey() : 0;
-        if (list.size() > 1)
+            PDDocument doc = load(file);
+            failed = false;
+            return doc;
+        } finally
         {
-            Map.Entry<Integer, Integer> entry = list.get(1);
-            int diff = Math.abs(percentage(list.get(0).getValue(), count) - percentage(entry.getValue(), count));
-            if (order == 1 && entry.getKey() < result && diff < 10)
-                result = entry.getKey();
+            if (failed && span.isRecording())
+                span.commitDocument(file.getPath(), file.getPath(), file.length(), 0, 0, 0, false, true);
         }
-        return result;
     }
 
-    private int percentage(int value, int count)
+    private PDDocument load(CountingInputStream in, Tracing.Span span) throws IOException
     {
-        return (int) Math.round(value * 100.0 / count);
+        boolean failed = true;
+        try
+        {
+            PDDocument doc = load(in);
+            failed = false;
+            return doc;
+        } finally
+        {
+            if (failed && span.isRecording())
+                span.commitDocument(null, null, in.count, 0, 0, 0, false, true);
+        }
     }
 
-    private String getString(StringBuilder sb)
+    private static class CountingInputStream extends FilterInputStream
     {
-        return normalize.normalizePres(sb.toString()).replaceAll("\\p{C}", "").trim();
-    }
+        private long count = 0;
 
-    private int normalize(float number, boolean toUpper)
-    {
-        int n = Math.round(number);
-        int delta = 4;
-        return toUpper ? n + delta - n % delta : n - n % delta;
+        private CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
     }
 }
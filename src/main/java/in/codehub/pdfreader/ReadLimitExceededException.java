@@ -0,0 +1,31 @@
+package in.codehub.pdfreader;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a read that reached one of its {@link ReadLimits} when they ask to fail.
+ */
+public class ReadLimitExceededException extends IOException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final ReadLimits.Limit limit;
+    private final int pageNo;
+
+    public ReadLimitExceededException(ReadLimits.Limit limit, int pageNo)
+    {
+        super(limit + " reached on page " + pageNo);
+        this.limit = limit;
+        this.pageNo = pageNo;
+    }
+
+    public ReadLimits.Limit getLimit()
+    {
+        return limit;
+    }
+
+    public int getPageNo()
+    {
+        return pageNo;
+    }
+}
@@ -0,0 +1,150 @@
+package in.codehub.pdfreader;
+
+/**
+ * Budgets that keep a pathological pdf, one with millions of tiny glyphs or deeply nested forms, from holding a
+ * thread for minutes. Deadlines and glyph counts are checked in the glyph and operator loops of the engine, the
+ * memory budget bounds the glyphs a page may hold, estimated at {@link #BYTES_PER_GLYPH} each. A value of 0 means
+ * no limit. The document budgets of a parallel read are shared by its workers, which see the glyphs of the
+ * others every {@link #CHECK_GLYPHS}, so together they may draw that many glyphs a worker over the budget.
+ */
+public class ReadLimits
+{
+    /**
+     * Rough heap held per collected glyph: the TextPosition with its matrix, widths and string, and the glyph
+     * buffer columns.
+     */
+    public static final int BYTES_PER_GLYPH = 400;
+
+    /**
+     * Glyphs drawn between two checks of the budgets.
+     */
+    public static final int CHECK_GLYPHS = 1024;
+
+    public enum Limit
+    {
+        DOCUMENT_DEADLINE(true),
+        DOCUMENT_GLYPHS(true),
+        PAGE_DEADLINE(false),
+        PAGE_GLYPHS(false),
+        PAGE_MEMORY(false),
+        FORM_DEPTH(false);
+
+        private final boolean documentLimit;
+
+        Limit(boolean documentLimit)
+        {
+            this.documentLimit = documentLimit;
+        }
+
+        /**
+         * Whether reaching the limit ends the document rather than the page.
+         */
+        public boolean isDocumentLimit()
+        {
+            return documentLimit;
+        }
+    }
+
+    public enum Action
+    {
+        /**
+         * Abort the read with a {@link ReadLimitExceededException}.
+         */
+        FAIL,
+        /**
+         * Keep the glyphs collected so far. A page limit ends the page, a document limit also skips the remaining
+         * pages, and the document is marked truncated.
+         */
+        TRUNCATE
+    }
+
+    private long documentDeadlineMillis = 0;
+    private long pageDeadlineMillis = 0;
+    private long maxDocumentGlyphs = 0;
+    private int maxPageGlyphs = 0;
+    private long maxPageBytes = 0;
+    private int maxFormDepth = 0;
+    private Action action = Action.FAIL;
+
+    public long getDocumentDeadlineMillis()
+    {
+        return documentDeadlineMillis;
+    }
+
+    /**
+     * Time allowed from the start of parsing to the last page, loading excluded.
+     */
+    public void setDocumentDeadlineMillis(long documentDeadlineMillis)
+    {
+        this.documentDeadlineMillis = documentDeadlineMillis;
+    }
+
+    public long getPageDeadlineMillis()
+    {
+        return pageDeadlineMillis;
+    }
+
+    public void setPageDeadlineMillis(long pageDeadlineMillis)
+    {
+        this.pageDeadlineMillis = pageDeadlineMillis;
+    }
+
+    public long getMaxDocumentGlyphs()
+    {
+        return maxDocumentGlyphs;
+    }
+
+    /**
+     * Glyphs drawn on all pages, duplicates included.
+     */
+    public void setMaxDocumentGlyphs(long maxDocumentGlyphs)
+    {
+        this.maxDocumentGlyphs = maxDocumentGlyphs;
+    }
+
+    public int getMaxPageGlyphs()
+    {
+        return maxPageGlyphs;
+    }
+
+    public void setMaxPageGlyphs(int maxPageGlyphs)
+    {
+        this.maxPageGlyphs = maxPageGlyphs;
+    }
+
+    public long getMaxPageBytes()
+    {
+        return maxPageBytes;
+    }
+
+    /**
+     * Estimated heap of the glyphs collected for one page, checked every 1024 glyphs.
+     */
+    public void setMaxPageBytes(long maxPageBytes)
+    {
+        this.maxPageBytes = maxPageBytes;
+    }
+
+    public int getMaxFormDepth()
+    {
+        return maxFormDepth;
+    }
+
+    /**
+     * Form XObjects nested in forms, a form that draws itself reaches any depth.
+     */
+    public void setMaxFormDepth(int maxFormDepth)
+    {
+        this.maxFormDepth = maxFormDepth;
+    }
+
+    public Action getAction()
+    {
+        return action;
+    }
+
+    public void setAction(Action action)
+    {
+        this.action = action;
+    }
+}
@@ -0,0 +1,112 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.COSObjectable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An open pdf that is parsed incrementally, a page range at a time. Use it when only the first few pages are
+ * needed, and close it once done so the document and the parsing engine are released.
+ */
+public class ReadSession
+{
+    private final PdfReader reader;
+    private final PDFParser pdfParser;
+    private final DocumentBuilder builder;
+    private final PDDocument pdf;
+    private final List<COSObjectable> pages;
+    private int parsedPages = 0;
+    private boolean closed = false;
+
+    ReadSession(PdfReader reader, PDFParser pdfParser, DocumentBuilder builder, PDDocument pdf) throws IOException
+    {
+        this.reader = reader;
+        this.pdfParser = pdfParser;
+        this.builder = builder;
+        this.pdf = pdf;
+        pdfParser.setListener(builder);
+        pdfParser.open(pdf);
+        this.pages = LazyDocument.getPages(pdf);
+    }
+
+    public int getPageCount()
+    {
+        return pages.size();
+    }
+
+    public int getParsedPages()
+    {
+        return parsedPages;
+    }
+
+    /**
+     * The title, authors, keywords and subject declared in the document metadata.
+     */
+    public DocumentMetadata getMetadata()
+    {
+        return DocumentMetadata.read(pdf);
+    }
+
+    /**
+     * The text the first page shows, in content stream order and without layout, cut off after about maxChars
+     * characters. It is decoded straight from the content stream, the page is not parsed.
+     */
+    public String peekFirstPage(int maxChars) throws IOException
+    {
+        return pages.isEmpty() ? "" : TextProbe.read((PDPage) pages.get(0), maxChars);
+    }
+
+    /**
+     * Passes every page parsed from now on to the listener. Once it stops, no more pages are read.
+     */
+    public void setPageListener(PageListener pageListener)
+    {
+        builder.setPageListener(pageListener);
+    }
+
+    public boolean hasMorePages()
+    {
+        return parsedPages < pages.size() && !pdfParser.isStopped();
+    }
+
+    /**
+     * Parses pages up to and including endPage, skipping the ones already parsed, and returns the document built
+     * so far. Content font size and margins are recomputed from all pages parsed up to now.
+     */
+    public Document readPages(int endPage) throws IOException
+    {
+        endPage = Math.min(endPage, pages.size());
+        if (endPage > parsedPages)
+        {
+            pdfParser.parsePages(pages, parsedPages + 1, endPage);
+            parsedPages = endPage;
+            pdfParser.finish();
+            builder.getDocument().setTruncated(pdfParser.isTruncated());
+        }
+        return builder.getDocument();
+    }
+
+    PDDocument getPdf()
+    {
+        return pdf;
+    }
+
+    public Document readAll() throws IOException
+    {
+        return readPages(pages.size());
+    }
+
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            closed = true;
+            reader.releaseParser(pdfParser);
+            pdf.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package in.codehub.pdfreader;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * One line of a page as runs of consecutive glyphs that share font, size and baseline, separated by word
+ * separators. Listeners do their per glyph work once per run, weighted by the glyph count of the run. A line is
+ * a view over the glyph buffer of the engine and is only valid during the newLine callback.
+ */
+final class TextLine
+{
+    private static final int SEPARATOR = -1;
+
+    private final GlyphBuffer glyphs;
+    // first glyph and end glyph (exclusive) of every run, SEPARATOR as first glyph for word separators.
+    private int[] runStarts = new int[64];
+    private int[] runEnds = new int[64];
+    private int runCount;
+
+    TextLine(GlyphBuffer glyphs)
+    {
+        this.glyphs = glyphs;
+    }
+
+    void clear()
+    {
+        runCount = 0;
+    }
+
+    /**
+     * A copy that stays valid after the callback, for as long as the glyph buffer still holds the page.
+     */
+    TextLine copy()
+    {
+        TextLine copy = new TextLine(glyphs);
+        copy.runStarts = Arrays.copyOf(runStarts, Math.max(1, runCount));
+        copy.runEnds = Arrays.copyOf(runEnds, Math.max(1, runCount));
+        copy.runCount = runCount;
+        return copy;
+    }
+
+    void add(int glyph)
+    {
+        int last = runCount - 1;
+        if (last >= 0 && runEnds[last] == glyph && runStarts[last] != SEPARATOR && sameRun(runStarts[last], glyph))
+            runEnds[last]++;
+        else
+            addRun(glyph, glyph + 1);
+    }
+
+    void addSeparator()
+    {
+        addRun(SEPARATOR, SEPARATOR);
+    }
+
+    private boolean sameRun(int first, int glyph)
+    {
+        return glyphs.fontId(first) == glyphs.fontId(glyph)
+                && glyphs.fontSizeInPt(first) == glyphs.fontSizeInPt(glyph)
+                && glyphs.y(first) == glyphs.y(glyph);
+    }
+
+    private void addRun(int start, int end)
+    {
+        if (runCount == runStarts.length)
+        {
+            runStarts = Arrays.copyOf(runStarts, runCount * 2);
+            runEnds = Arrays.copyOf(runEnds, runCount * 2);
+        }
+        runStarts[runCount] = start;
+        runEnds[runCount] = end;
+        runCount++;
+    }
+
+    boolean isEmpty()
+    {
+        return runCount == 0;
+    }
+
+    int runCount()
+    {
+        return runCount;
+    }
+
+    boolean isSeparator(int run)
+    {
+        return runStarts[run] == SEPARATOR;
+    }
+
+    /**
+     * Number of glyphs in the run, 1 for a word separator.
+     */
+    int glyphCount(int run)
+    {
+        return isSeparator(run) ? 1 : runEnds[run] - runStarts[run];
+    }
+
+    /**
+     * The font size in points shared by the glyphs of the run, 0 for a word separator.
+     */
+    float fontSizeInPt(int run)
+    {
+        return isSeparator(run) ? 0 : glyphs.fontSizeInPt(runStarts[run]);
+    }
+
+    /**
+     * Style key of the glyphs of the run, see {@link FontMetrics#styleKey(float)}.
+     */
+    int styleKey(int run)
+    {
+        int glyph = runStarts[run];
+        return glyphs.fontMetrics(glyph).styleKey(glyphs.fontSizeInPt(glyph));
+    }
+
+    /**
+     * X of the first glyph of a glyph run.
+     */
+    float firstX(int run)
+    {
+        return glyphs.plainX(runStarts[run]);
+    }
+
+    /**
+     * X of the last glyph of a glyph run.
+     */
+    float lastX(int run)
+    {
+        return glyphs.plainX(runEnds[run] - 1);
+    }
+
+    /**
+     * Y of the first glyph of a glyph run.
+     */
+    float firstY(int run)
+    {
+        return glyphs.plainY(runStarts[run]);
+    }
+
+    /**
+     * Appends the text of a glyph run, nothing for a word separator.
+     */
+    void appendText(int run, StringBuilder sb)
+    {
+        if (isSeparator(run))
+            return;
+        CharBuffer text = glyphs.text();
+        int end = glyphs.textEnd(runEnds[run] - 1);
+        if (text.hasArray())
+        {
+            sb.append(text.array(), text.arrayOffset() + glyphs.textStart(runStarts[run]),
+                    end - glyphs.textStart(runStarts[run]));
+        }
+        else
+        {
+            for (int i = glyphs.textStart(runStarts[run]); i < end; i++)
+                sb.append(text.get(i));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontFactory;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The text a page shows, in content stream order and without positions or layout. It is decoded straight from the
+ * string operands, for a fraction of the cost of collecting and laying out the glyphs, which is enough to check a
+ * few words against the start of a page. A line break is put where the text position moves and a space for wide
+ * TJ adjustments.
+ */
+final class TextProbe implements ContentScanner.Handler
+{
+    private static final String[] OPERATORS = {"BT", "Tf", "Tj", "TJ", "'", "\"", "Td", "TD", "T*", "Tm", "Do"};
+    private static final int MAX_FORM_DEPTH = 4;
+    // TJ adjustments are in thousandths of a text space unit, a larger move to the right is a word gap.
+    private static final float WORD_GAP = -200;
+
+    private final int maxChars;
+    private final StringBuilder text = new StringBuilder();
+    private final List<ContentScanner> scanners = new ArrayList<ContentScanner>();
+    private final Map<COSDictionary, PDFont> fonts = new IdentityHashMap<COSDictionary, PDFont>();
+    private COSDictionary resources;
+    private PDFont font;
+    private int depth;
+
+    private TextProbe(int maxChars)
+    {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * The text of the page, cut off once it has at least maxChars characters.
+     */
+    static String read(PDPage page, int maxChars) throws IOException
+    {
+        TextProbe probe = new TextProbe(maxChars);
+        PDStream contents = page.getContents();
+        PDResources resources = page.findResources();
+        if (contents != null)
+        {
+            try
+            {
+                probe.scan(contents.getStream(), resources != null ? resources.getCOSDictionary() : null);
+            } catch (Enough e)
+            {
+                // the rest of the page is not needed.
+            }
+        }
+        return probe.text.toString();
+    }
+
+    private void scan(COSStream stream, COSDictionary streamResources) throws IOException
+    {
+        COSDictionary outer = resources;
+        if (streamResources != null)
+            resources = streamResources;
+        if (scanners.size() == depth)
+            scanners.add(new ContentScanner(OPERATORS));
+        depth++;
+        try
+        {
+            scanners.get(depth - 1).scan(stream.getUnfilteredStream(), this);
+        } finally
+        {
+            depth--;
+            resources = outer;
+        }
+    }
+
+    @Override
+    public void operator(String name, List<COSBase> operands) throws IOException
+    {
+        if (name.equals("Tf"))
+        {
+            font = operands.isEmpty() ? null : font(operands.get(0));
+        }
+        else if (name.equals("Tj"))
+        {
+            show(operands, 0);
+        }
+        else if (name.equals("TJ"))
+        {
+            if (!operands.isEmpty() && operands.get(0) instanceof COSArray)
+            {
+                for (COSBase item : (COSArray) operands.get(0))
+                {
+                    if (item instanceof COSString)
+                        decode((COSString) item);
+                    else if (item instanceof COSNumber && ((COSNumber) item).floatValue() < WORD_GAP)
+                        append(' ');
+                }
+            }
+        }
+        else if (name.equals("Do"))
+        {
+            form(operands);
+        }
+        else
+        {
+            // BT, Td, TD, T*, Tm and the quote operators move to a new position.
+            append('\n');
+            if (name.equals("'"))
+                show(operands, 0);
+            else if (name.equals("\""))
+                show(operands, 2);
+        }
+    }
+
+    @Override
+    public void skipped()
+    {
+    }
+
+    private void show(List<COSBase> operands, int index) throws IOException
+    {
+        if (operands.size() > index && operands.get(index) instanceof COSString)
+            decode((COSString) operands.get(index));
+    }
+
+    private void decode(COSString string) throws IOException
+    {
+        if (font == null)
+            return;
+        byte[] bytes = string.getBytes();
+        int codeLength = font instanceof PDType0Font ? 2 : 1;
+        for (int i = 0; i + codeLength <= bytes.length; i += codeLength)
+        {
+            String unicode = font.encode(bytes, i, codeLength);
+            if (unicode != null)
+                text.append(unicode);
+        }
+        if (text.length() >= maxChars)
+            throw Enough.INSTANCE;
+    }
+
+    private void append(char c)
+    {
+        if (text.length() > 0 && text.charAt(text.length() - 1) != '\n')
+            text.append(c);
+    }
+
+    private PDFont font(COSBase name) throws IOException
+    {
+        COSDictionary dictionary = resource(COSName.FONT, name);
+        if (dictionary == null)
+            return null;
+        PDFont font = fonts.get(dictionary);
+        if (font == null)
+        {
+            font = PDFontFactory.createFont(dictionary);
+            fonts.put(dictionary, font);
+        }
+        return font;
+    }
+
+    private void form(List<COSBase> operands) throws IOException
+    {
+        if (depth > MAX_FORM_DEPTH || operands.isEmpty())
+            return;
+        COSDictionary xobject = resource(COSName.XOBJECT, operands.get(0));
+        if (xobject instanceof COSStream && COSName.FORM.equals(xobject.getDictionaryObject(COSName.SUBTYPE)))
+        {
+            COSBase formResources = xobject.getDictionaryObject(COSName.RESOURCES);
+            scan((COSStream) xobject, formResources instanceof COSDictionary ? (COSDictionary) formResources : null);
+        }
+    }
+
+    private COSDictionary resource(COSName category, COSBase name)
+    {
+        if (resources == null || !(name instanceof COSName))
+            return null;
+        COSBase named = resources.getDictionaryObject(category);
+        if (!(named instanceof COSDictionary))
+            return null;
+        COSBase resource = ((COSDictionary) named).getDictionaryObject((COSName) name);
+        return resource instanceof COSDictionary ? (COSDictionary) resource : null;
+    }
+
+    /**
+     * Ends the scan once enough text is collected.
+     */
+    private static final class Enough extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+        private static final Enough INSTANCE = new Enough();
+
+        private Enough()
+        {
+            setStackTrace(new StackTraceElement[0]);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.util.TextNormalize;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+/**
+ * Writes the text of the lines in reading order, one line per row and a blank row between paragraphs, without
+ * building a {@link in.codehub.document.Document}. Lines are normalized as {@link DocumentBuilder} does, in
+ * buffers reused from line to line, so text costs no allocation per line or glyph.
+ * A failing output, a char buffer that is full among them, stops the parse and is rethrown by {@link #checkError()}.
+ */
+class TextSink extends PDFParserListener
+{
+    private final LineNormalizer normalizer;
+    private final Appendable out;
+    private final StringBuilder line = new StringBuilder();
+    private boolean paragraphStarted;
+    private boolean textWritten;
+    private int pages;
+    private boolean pageHasText;
+    private IOException error;
+
+    TextSink(TextNormalize normalize, Appendable out)
+    {
+        this.normalizer = new LineNormalizer(normalize);
+        this.out = out;
+    }
+
+    /**
+     * Number of pages that had text.
+     */
+    int getPages()
+    {
+        return pages;
+    }
+
+    void checkError() throws IOException
+    {
+        if (error != null)
+            throw error;
+    }
+
+    @Override
+    void startPage(PDPage page, int currentPageNo)
+    {
+        pageHasText = false;
+    }
+
+    @Override
+    void endPage(PDPage page)
+    {
+        if (pageHasText)
+            pages++;
+    }
+
+    @Override
+    void startParagraph()
+    {
+        paragraphStarted = false;
+    }
+
+    @Override
+    void newLine(TextLine textLine)
+    {
+        if (textLine.isEmpty() || error != null)
+            return;
+        line.setLength(0);
+        for (int run = 0; run < textLine.runCount(); run++)
+        {
+            if (textLine.isSeparator(run))
+                line.append(' ');
+            else
+                textLine.appendText(run, line);
+        }
+        int length = normalizer.normalize(line);
+        if (length == 0)
+            return;
+        try
+        {
+            if (paragraphStarted)
+                out.append('\n');
+            else if (textWritten)
+                out.append("\n\n");
+            write(length);
+        } catch (IOException e)
+        {
+            error = e;
+        } catch (BufferOverflowException e)
+        {
+            error = overflow(e);
+        }
+        paragraphStarted = true;
+        textWritten = true;
+        pageHasText = true;
+    }
+
+    @Override
+    boolean isDone()
+    {
+        return error != null;
+    }
+
+    @Override
+    void endDocument(PDDocument pdf)
+    {
+        if (textWritten && error == null)
+        {
+            try
+            {
+                out.append('\n');
+            } catch (IOException e)
+            {
+                error = e;
+            } catch (BufferOverflowException e)
+            {
+                error = overflow(e);
+            }
+        }
+    }
+
+    private static IOException overflow(BufferOverflowException e)
+    {
+        return new IOException("The char buffer is full", e);
+    }
+
+    /**
+     * Writers and char buffers take the chars as they are, other appendables get them through the line buffer.
+     */
+    private void write(int length) throws IOException
+    {
+        char[] chars = normalizer.chars();
+        if (out instanceof Writer)
+        {
+            ((Writer) out).write(chars, 0, length);
+        }
+        else if (out instanceof CharBuffer)
+        {
+            ((CharBuffer) out).put(chars, 0, length);
+        }
+        else
+        {
+            line.setLength(0);
+            line.append(chars, 0, length);
+            out.append(line, 0, length);
+        }
+    }
+}
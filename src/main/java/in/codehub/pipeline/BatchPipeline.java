@@ -0,0 +1,311 @@
+package in.codehub.pipeline;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of files through three stages connected by bounded queues: load (io bound), process (cpu bound)
+ * and write. Every stage has its own threads so disk io and cpu work overlap, and a file that is slow or fails
+ * only holds up the one thread working on it.
+ *
+ * When the thread running the batch is interrupted the stages are interrupted and stop, and the values loaded or
+ * processed that no stage will take are discarded: closed when they are {@link Closeable}, or passed to the
+ * {@link Discarder} set.
+ */
+public class BatchPipeline<S, T>
+{
+    public interface Loader<S>
+    {
+        S load(File file) throws IOException;
+    }
+
+    public interface Processor<S, T>
+    {
+        T process(File file, S source) throws IOException;
+    }
+
+    public interface Writer<T>
+    {
+        void write(File file, T result) throws IOException;
+    }
+
+    public interface Discarder<V>
+    {
+        void discard(V value) throws IOException;
+    }
+
+    private final Loader<S> loader;
+    private final Processor<S, T> processor;
+    private final Writer<T> writer;
+
+    private int loadThreads = 16;
+    private int processThreads = Runtime.getRuntime().availableProcessors();
+    private int writeThreads = 1;
+    private int queueCapacity = 64;
+    private Discarder<? super S> sourceDiscarder = null;
+    private Discarder<? super T> resultDiscarder = null;
+
+    public BatchPipeline(Loader<S> loader, Processor<S, T> processor, Writer<T> writer)
+    {
+        this.loader = loader;
+        this.processor = processor;
+        this.writer = writer;
+    }
+
+    public void setLoadThreads(int loadThreads)
+    {
+        this.loadThreads = loadThreads;
+    }
+
+    public void setProcessThreads(int processThreads)
+    {
+        this.processThreads = processThreads;
+    }
+
+    public void setWriteThreads(int writeThreads)
+    {
+        this.writeThreads = writeThreads;
+    }
+
+    public void setQueueCapacity(int queueCapacity)
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Releases loaded values left over when a run is interrupted, for values that are not Closeable.
+     */
+    public void setSourceDiscarder(Discarder<? super S> sourceDiscarder)
+    {
+        this.sourceDiscarder = sourceDiscarder;
+    }
+
+    /**
+     * Releases processed values left over when a run is interrupted, for values that are not Closeable.
+     */
+    public void setResultDiscarder(Discarder<? super T> resultDiscarder)
+    {
+        this.resultDiscarder = resultDiscarder;
+    }
+
+    public BatchReport run(Iterable<File> files) throws InterruptedException
+    {
+        final BatchReport report = new BatchReport();
+        final Iterator<File> inputs = files.iterator();
+        final BlockingQueue<Item<S>> loaded = new ArrayBlockingQueue<Item<S>>(queueCapacity);
+        final BlockingQueue<Item<T>> processed = new ArrayBlockingQueue<Item<T>>(queueCapacity);
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        ExecutorService loadPool = Executors.newFixedThreadPool(loadThreads, threadFactory("load"));
+        ExecutorService processPool = Executors.newFixedThreadPool(processThreads, threadFactory("process"));
+        ExecutorService writePool = Executors.newFixedThreadPool(writeThreads, threadFactory("write"));
+        CountDownLatch loadDone = new CountDownLatch(loadThreads);
+        CountDownLatch processDone = new CountDownLatch(processThreads);
+        CountDownLatch writeDone = new CountDownLatch(writeThreads);
+        try
+        {
+            for (int i = 0; i < loadThreads; i++)
+            {
+                loadPool.execute(new Stage(loadDone)
+                {
+                    @Override
+                    void work() throws InterruptedException
+                    {
+                        File file;
+                        while (!stopped.get() && (file = next(inputs)) != null)
+                        {
+                            S source;
+                            try
+                            {
+                                source = loader.load(file);
+                            } catch (Throwable e)
+                            {
+                                report.failed(file, e);
+                                continue;
+                            }
+                            deliver(loaded, new Item<S>(file, source), stopped, sourceDiscarder);
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < processThreads; i++)
+            {
+                processPool.execute(new Stage(processDone)
+                {
+                    @Override
+                    void work() throws InterruptedException
+                    {
+                        Item<S> item;
+                        while (!stopped.get() && (item = loaded.take()).file != null)
+                        {
+                            T result;
+                            try
+                            {
+                                result = processor.process(item.file, item.value);
+                            } catch (Throwable e)
+                            {
+                                report.failed(item.file, e);
+                                continue;
+                            }
+                            deliver(processed, new Item<T>(item.file, result), stopped, resultDiscarder);
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < writeThreads; i++)
+            {
+                writePool.execute(new Stage(writeDone)
+                {
+                    @Override
+                    void work() throws InterruptedException
+                    {
+                        Item<T> item;
+                        while (!stopped.get() && (item = processed.take()).file != null)
+                        {
+                            try
+                            {
+                                writer.write(item.file, item.value);
+                                report.succeeded();
+                            } catch (Throwable e)
+                            {
+                                report.failed(item.file, e);
+                            }
+                        }
+                    }
+                });
+            }
+
+            // every stage is told to finish only after the one feeding it has drained.
+            loadDone.await();
+            for (int i = 0; i < processThreads; i++)
+                loaded.put(new Item<S>(null, null));
+            processDone.await();
+            for (int i = 0; i < writeThreads; i++)
+                processed.put(new Item<T>(null, null));
+            writeDone.await();
+        } finally
+        {
+            stopped.set(true);
+            loadPool.shutdownNow();
+            processPool.shutdownNow();
+            writePool.shutdownNow();
+            discardAll(loaded, sourceDiscarder);
+            discardAll(processed, resultDiscarder);
+        }
+        report.finish();
+        return report;
+    }
+
+    /**
+     * Puts the item on the queue of the next stage, or discards its value when the run stopped before a stage
+     * could take it.
+     */
+    private static <V> void deliver(BlockingQueue<Item<V>> queue, Item<V> item, AtomicBoolean stopped,
+                                    Discarder<? super V> discarder) throws InterruptedException
+    {
+        try
+        {
+            queue.put(item);
+        } catch (InterruptedException e)
+        {
+            discard(item.value, discarder);
+            throw e;
+        }
+        // the queue may have been drained between the put and a stop.
+        if (stopped.get() && queue.remove(item))
+            discard(item.value, discarder);
+    }
+
+    private static <V> void discardAll(BlockingQueue<Item<V>> queue, Discarder<? super V> discarder)
+    {
+        Item<V> item;
+        while ((item = queue.poll()) != null)
+            discard(item.value, discarder);
+    }
+
+    private static <V> void discard(V value, Discarder<? super V> discarder)
+    {
+        try
+        {
+            if (value instanceof Closeable)
+                ((Closeable) value).close();
+            else if (value != null && discarder != null)
+                discarder.discard(value);
+        } catch (IOException e)
+        {
+            // nothing more can be done with it.
+        }
+    }
+
+    private static File next(Iterator<File> inputs)
+    {
+        synchronized (inputs)
+        {
+            return inputs.hasNext() ? inputs.next() : null;
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String stage)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "batch-" + stage + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static class Item<V>
+    {
+        private final File file;
+        private final V value;
+
+        private Item(File file, V value)
+        {
+            this.file = file;
+            this.value = value;
+        }
+    }
+
+    private abstract static class Stage implements Runnable
+    {
+        private final CountDownLatch done;
+
+        private Stage(CountDownLatch done)
+        {
+            this.done = done;
+        }
+
+        abstract void work() throws InterruptedException;
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                work();
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            } finally
+            {
+                done.countDown();
+            }
+        }
+    }
+}
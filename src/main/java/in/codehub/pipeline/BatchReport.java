@@ -0,0 +1,49 @@
+package in.codehub.pipeline;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class BatchReport
+{
+    private final long startTime = System.currentTimeMillis();
+    private long endTime;
+    private int succeeded;
+    private final Map<File, Throwable> failures = new LinkedHashMap<File, Throwable>();
+
+    synchronized void succeeded()
+    {
+        succeeded++;
+    }
+
+    synchronized void failed(File file, Throwable cause)
+    {
+        failures.put(file, cause);
+    }
+
+    synchronized void finish()
+    {
+        endTime = System.currentTimeMillis();
+    }
+
+    public synchronized int getSucceeded()
+    {
+        return succeeded;
+    }
+
+    public synchronized int getFailed()
+    {
+        return failures.size();
+    }
+
+    public synchronized Map<File, Throwable> getFailures()
+    {
+        return Collections.unmodifiableMap(new LinkedHashMap<File, Throwable>(failures));
+    }
+
+    public synchronized long getElapsedMillis()
+    {
+        return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+}
@@ -0,0 +1,113 @@
+package in.codehub.synthetic;
+
+import in.codehub.document.Document;
+import in.codehub.paperparser.ExtractionPlan;
+import in.codehub.paperparser.MetadataFirstParser;
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.pdfreader.ReadSession;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Runs generated papers through {@link PdfReader} and {@link PaperParser} and compares the extracted fields with
+ * the ones the papers were generated from. Only reading and parsing are timed, the papers are generated first.
+ */
+public class CorpusHarness
+{
+    private final PdfReader reader;
+    private final PaperParser paperParser;
+    private final MetadataFirstParser metadataFirstParser;
+
+    public CorpusHarness(PdfReader reader, PaperParser paperParser)
+    {
+        this.reader = reader;
+        this.paperParser = paperParser;
+        this.metadataFirstParser = null;
+    }
+
+    /**
+     * A harness that opens every paper in a session and tries its metadata first, the report tells the fraction
+     * of papers taken from their metadata.
+     */
+    public CorpusHarness(PdfReader reader, MetadataFirstParser metadataFirstParser)
+    {
+        this.reader = reader;
+        this.paperParser = null;
+        this.metadataFirstParser = metadataFirstParser;
+    }
+
+    /**
+     * Generates count papers from consecutive seeds and runs them.
+     */
+    public HarnessReport run(PaperGenerator generator, long firstSeed, int count) throws IOException
+    {
+        List<SyntheticPaper> papers = new ArrayList<SyntheticPaper>();
+        for (int i = 0; i < count; i++)
+            papers.add(generator.generate(firstSeed + i));
+        return run(papers);
+    }
+
+    public HarnessReport run(List<SyntheticPaper> papers) throws IOException
+    {
+        HarnessReport report = new HarnessReport();
+        long start = System.nanoTime();
+        long metadataPapers = metadataFirstParser != null ? metadataFirstParser.getMetadataPapers() : 0;
+        for (SyntheticPaper expected : papers)
+        {
+            Paper paper;
+            int pages;
+            if (metadataFirstParser != null)
+            {
+                ReadSession session = reader.open(new ByteArrayInputStream(expected.getPdf()));
+                try
+                {
+                    paper = metadataFirstParser.parse(session, ExtractionPlan.all());
+                    pages = session.getPageCount();
+                } finally
+                {
+                    session.close();
+                }
+            }
+            else
+            {
+                Document document = reader.read(new ByteArrayInputStream(expected.getPdf()));
+                paper = paperParser.parse(document);
+                pages = document.getPages().size();
+            }
+            report.add(pages,
+                    normalize(paper.getTitle()).equals(normalize(expected.getTitle())),
+                    new HashSet<String>(normalize(paper.getAuthors()))
+                            .equals(new HashSet<String>(normalize(expected.getAuthors()))),
+                    normalize(paper.getAbstract()).equals(normalize(expected.getAbstract())),
+                    new HashSet<String>(normalize(paper.getKeywords()))
+                            .equals(new HashSet<String>(normalize(expected.getKeywords()))));
+        }
+        if (metadataFirstParser != null)
+            report.setMetadataPapers((int) (metadataFirstParser.getMetadataPapers() - metadataPapers));
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Compares text the way the extracted fields are produced: case, punctuation and spacing are ignored.
+     */
+    private static String normalize(String text)
+    {
+        return StringUtils.normalizeSpace(text.replaceAll("[^A-Za-z0-9 ]", " ")).toLowerCase();
+    }
+
+    private static List<String> normalize(List<String> texts)
+    {
+        List<String> normalized = new ArrayList<String>();
+        for (String text : texts)
+            normalized.add(normalize(text));
+        return normalized;
+    }
+}
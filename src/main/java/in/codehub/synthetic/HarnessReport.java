@@ -0,0 +1,102 @@
+package in.codehub.synthetic;
+
+import java.util.Locale;
+
+/**
+ * Throughput and per field accuracy of a harness run. A field counts as correct when it matches the generated
+ * one ignoring case, punctuation and spacing; authors and keywords are compared as sets.
+ */
+public class HarnessReport
+{
+    private int documents;
+    private int pages;
+    private int titles;
+    private int authors;
+    private int abstracts;
+    private int keywords;
+    private int metadataPapers;
+    private long elapsedNanos;
+
+    void add(int pageCount, boolean title, boolean author, boolean abstract_, boolean keyword)
+    {
+        documents++;
+        pages += pageCount;
+        if (title) titles++;
+        if (author) authors++;
+        if (abstract_) abstracts++;
+        if (keyword) keywords++;
+    }
+
+    void setMetadataPapers(int metadataPapers)
+    {
+        this.metadataPapers = metadataPapers;
+    }
+
+    void finish(long elapsedNanos)
+    {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getDocuments()
+    {
+        return documents;
+    }
+
+    public int getPages()
+    {
+        return pages;
+    }
+
+    public double getDocumentsPerSecond()
+    {
+        return documents * 1e9 / elapsedNanos;
+    }
+
+    public double getPagesPerSecond()
+    {
+        return pages * 1e9 / elapsedNanos;
+    }
+
+    public double getTitleAccuracy()
+    {
+        return accuracy(titles);
+    }
+
+    public double getAuthorAccuracy()
+    {
+        return accuracy(authors);
+    }
+
+    public double getAbstractAccuracy()
+    {
+        return accuracy(abstracts);
+    }
+
+    public double getKeywordAccuracy()
+    {
+        return accuracy(keywords);
+    }
+
+    /**
+     * The fraction of papers taken from their metadata without laying out a page, 0 when metadata is not tried.
+     */
+    public double getMetadataFraction()
+    {
+        return accuracy(metadataPapers);
+    }
+
+    private double accuracy(int correct)
+    {
+        return documents == 0 ? 0 : (double) correct / documents;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.ROOT,
+                "%d documents, %d pages, %.1f docs/s, %.1f pages/s, accuracy: title %.3f, authors %.3f, "
+                        + "abstract %.3f, keywords %.3f, from metadata %.3f",
+                documents, pages, getDocumentsPerSecond(), getPagesPerSecond(), getTitleAccuracy(),
+                getAuthorAccuracy(), getAbstractAccuracy(), getKeywordAccuracy(), getMetadataFraction());
+    }
+}
@@ -0,0 +1,313 @@
+package in.codehub.synthetic;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites a pdf in the object order of a linearized file: the linearization dictionary, the first page cross
+ * reference table and trailer, the catalog, the first page with everything it references, and then the page tree,
+ * the other pages and the main cross reference table. Hint streams are left out, so readers that use them to
+ * fetch pages out of order see a damaged file and fall back to reading it whole.
+ */
+final class Linearizer
+{
+    private static final byte[] HEADER = {'%', 'P', 'D', 'F', '-', '1', '.', '4', '\n', '%', (byte) 0xe2,
+            (byte) 0xe3, (byte) 0xcf, (byte) 0xd3, '\n'};
+    // the numbers of the linearization dictionary are padded so writing them does not move the offsets.
+    private static final String NUMBER_FORMAT = "%010d";
+
+    private final List<COSBase> objects = new ArrayList<COSBase>();
+    private final Map<COSBase, Integer> numbers = new IdentityHashMap<COSBase, Integer>();
+    private Out out;
+
+    private Linearizer()
+    {
+    }
+
+    static byte[] linearize(byte[] pdf) throws IOException
+    {
+        PDDocument document = PDDocument.load(new ByteArrayInputStream(pdf));
+        try
+        {
+            return new Linearizer().write(document);
+        } finally
+        {
+            document.close();
+        }
+    }
+
+    private byte[] write(PDDocument document) throws IOException
+    {
+        COSDictionary trailer = document.getDocument().getTrailer();
+        COSDictionary catalog = document.getDocumentCatalog().getCOSDictionary();
+        COSDictionary firstPage = document.getDocumentCatalog().getPages().getDictionary();
+        while (firstPage.getDictionaryObject(COSName.KIDS) != null)
+            firstPage = (COSDictionary) ((COSArray) firstPage.getDictionaryObject(COSName.KIDS)).getObject(0);
+        int pages = document.getNumberOfPages();
+
+        // number 1 is the linearization dictionary.
+        objects.add(null);
+        number(catalog);
+        number(firstPage);
+        collect(firstPage, true);
+        int firstPageObjects = objects.size();
+        collect(catalog, false);
+        collect(trailer, false);
+
+        // the first page section is written before the tables that point into it.
+        long[] offsets = new long[objects.size() + 1];
+        out = new Out();
+        for (int i = 2; i <= firstPageObjects; i++)
+        {
+            offsets[i] = out.size();
+            writeObject(i);
+        }
+        byte[] firstPageSection = out.toByteArray();
+
+        out = new Out();
+        out.write(HEADER);
+        offsets[1] = out.size();
+        out.print("1 0 obj\n<< /Linearized 1 /L ");
+        int lengthAt = out.size();
+        out.print(pad(0) + " /O " + pad(numbers.get(firstPage)) + " /E ");
+        int endAt = out.size();
+        out.print(pad(0) + " /N " + pad(pages) + " /T ");
+        int mainXrefAt = out.size();
+        out.print(pad(0) + " >>\nendobj\n");
+        // every number in the table and trailer has a fixed width, so the section start is known up front.
+        int sectionStart = out.size() + xrefLength(firstPageObjects) + trailerLength(trailer);
+        for (int i = 2; i <= firstPageObjects; i++)
+            offsets[i] += sectionStart;
+        writeXref(offsets, firstPageObjects);
+        out.print("trailer\n");
+        int prevAt = writeTrailer(trailer, objects.size() + 1, true);
+        out.print("\nstartxref\n0\n%%EOF\n");
+        out.write(firstPageSection);
+        int end = out.size();
+
+        for (int i = firstPageObjects + 1; i <= objects.size(); i++)
+        {
+            offsets[i] = out.size();
+            writeObject(i);
+        }
+        long mainXref = out.size();
+        writeXref(offsets, objects.size());
+        out.print("trailer\n");
+        writeTrailer(trailer, objects.size() + 1, false);
+        out.print("\nstartxref\n" + mainXref + "\n%%EOF\n");
+
+        byte[] bytes = out.toByteArray();
+        patch(bytes, lengthAt, bytes.length);
+        patch(bytes, endAt, end);
+        patch(bytes, mainXrefAt, mainXref);
+        patch(bytes, prevAt, mainXref);
+        return bytes;
+    }
+
+    private void writeXref(long[] offsets, int last) throws IOException
+    {
+        out.print("xref\n0 " + (last + 1) + "\n0000000000 65535 f \n");
+        for (int i = 1; i <= last; i++)
+            out.print(String.format("%010d 00000 n \n", offsets[i]));
+    }
+
+    private static int xrefLength(int last)
+    {
+        return ("xref\n0 " + (last + 1) + "\n").length() + 20 * (last + 1);
+    }
+
+    private int trailerLength(COSDictionary trailer) throws IOException
+    {
+        Out section = out;
+        out = new Out();
+        out.print("trailer\n");
+        writeTrailer(trailer, objects.size() + 1, true);
+        out.print("\nstartxref\n0\n%%EOF\n");
+        int length = out.size();
+        out = section;
+        return length;
+    }
+
+    /**
+     * Writes the trailer, with a Prev entry to be patched when withPrev is set, and returns where its number is.
+     */
+    private int writeTrailer(COSDictionary trailer, int size, boolean withPrev) throws IOException
+    {
+        out.print("<< /Size " + size);
+        for (COSName key : new COSName[]{COSName.ROOT, COSName.INFO, COSName.ID})
+        {
+            if (trailer.getItem(key) != null)
+            {
+                out.print(" /" + key.getName() + " ");
+                writeValue(trailer.getItem(key));
+            }
+        }
+        int prevAt = -1;
+        if (withPrev)
+        {
+            out.print(" /Prev ");
+            prevAt = out.size();
+            out.print(pad(0));
+        }
+        out.print(" >>");
+        return prevAt;
+    }
+
+    private static void patch(byte[] bytes, int offset, long value)
+    {
+        byte[] number = pad(value).getBytes();
+        System.arraycopy(number, 0, bytes, offset, number.length);
+    }
+
+    private static String pad(long value)
+    {
+        return String.format(NUMBER_FORMAT, value);
+    }
+
+    private void number(COSBase object)
+    {
+        objects.add(object);
+        numbers.put(object, objects.size());
+    }
+
+    /**
+     * Numbers the indirect objects reachable from base in the order they are found.
+     */
+    private void collect(COSBase base, boolean skipParent)
+    {
+        if (base instanceof COSObject)
+        {
+            COSBase object = ((COSObject) base).getObject();
+            if (object == null || numbers.containsKey(object))
+                return;
+            number(object);
+            base = object;
+        }
+        if (base instanceof COSDictionary)
+        {
+            for (Map.Entry<COSName, COSBase> entry : ((COSDictionary) base).entrySet())
+            {
+                if (!skipParent || !COSName.PARENT.equals(entry.getKey()))
+                    collect(entry.getValue(), skipParent);
+            }
+        }
+        else if (base instanceof COSArray)
+        {
+            for (COSBase item : (COSArray) base)
+                collect(item, skipParent);
+        }
+    }
+
+    private void writeObject(int number) throws IOException
+    {
+        COSBase object = objects.get(number - 1);
+        out.print(number + " 0 obj\n");
+        if (object instanceof COSStream)
+        {
+            COSStream stream = (COSStream) object;
+            byte[] data = read(stream.getFilteredStream());
+            stream.setInt(COSName.LENGTH, data.length);
+            writeDictionary(stream);
+            out.print("\nstream\n");
+            out.write(data);
+            out.print("\nendstream");
+        }
+        else
+        {
+            writeDirect(object);
+        }
+        out.print("\nendobj\n");
+    }
+
+    private void writeValue(COSBase base) throws IOException
+    {
+        if (base instanceof COSObject)
+        {
+            Integer number = numbers.get(((COSObject) base).getObject());
+            if (number == null)
+                COSNull.NULL.writePDF(out);
+            else
+                out.print(number + " 0 R");
+        }
+        else
+        {
+            writeDirect(base);
+        }
+    }
+
+    private void writeDirect(COSBase base) throws IOException
+    {
+        if (base instanceof COSDictionary)
+        {
+            writeDictionary((COSDictionary) base);
+        }
+        else if (base instanceof COSArray)
+        {
+            out.print("[");
+            for (COSBase item : (COSArray) base)
+            {
+                out.print(" ");
+                writeValue(item);
+            }
+            out.print(" ]");
+        }
+        else if (base instanceof COSName)
+            ((COSName) base).writePDF(out);
+        else if (base instanceof COSString)
+            ((COSString) base).writePDF(out);
+        else if (base instanceof COSInteger)
+            ((COSInteger) base).writePDF(out);
+        else if (base instanceof COSFloat)
+            ((COSFloat) base).writePDF(out);
+        else if (base instanceof COSBoolean)
+            ((COSBoolean) base).writePDF(out);
+        else
+            COSNull.NULL.writePDF(out);
+    }
+
+    private void writeDictionary(COSDictionary dictionary) throws IOException
+    {
+        out.print("<<");
+        for (Map.Entry<COSName, COSBase> entry : dictionary.entrySet())
+        {
+            out.print(" ");
+            entry.getKey().writePDF(out);
+            out.print(" ");
+            writeValue(entry.getValue());
+        }
+        out.print(" >>");
+    }
+
+    private static byte[] read(InputStream in) throws IOException
+    {
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                bytes.write(buffer, 0, n);
+            return bytes.toByteArray();
+        } finally
+        {
+            in.close();
+        }
+    }
+
+    private static class Out extends ByteArrayOutputStream
+    {
+        void print(String s) throws IOException
+        {
+            write(s.getBytes("ISO-8859-1"));
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package in.codehub.synthetic;
+
+import org.apache.jempbox.xmp.XMPMetadata;
+import org.apache.jempbox.xmp.XMPSchemaDublinCore;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import javax.xml.transform.TransformerException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes research paper like pdfs from a seed: a centered title, authors and affiliation, an abstract, a keyword
+ * line and numbered sections of body text, in one or two columns. The same seed and options always give the same
+ * paper, and the generated title, authors, abstract and keywords are returned with the pdf as ground truth.
+ */
+public class PaperGenerator
+{
+    private static final float PAGE_WIDTH = 612;
+    private static final float PAGE_HEIGHT = 792;
+    private static final float MARGIN = 72;
+    private static final float TOP = PAGE_HEIGHT - MARGIN;
+    private static final float COLUMN_GAP = 24;
+    private static final float BODY_FONT_SIZE = 10;
+
+    private static final String[] WORDS = ("the of and a in to is for that we this with on by are as an be from our "
+            + "which these can it results model data network method approach performance learning system analysis "
+            + "paper propose proposed algorithm based evaluation experiments show framework problem information "
+            + "structure text documents extraction accuracy using two new large set task features training "
+            + "recognition layout retrieval classification existing however than more each time").split(" ");
+    private static final String[] TITLE_WORDS = ("Learning Robust Scalable Efficient Structured Document Layout "
+            + "Extraction Retrieval Networks Analysis Models Neural Graph Semantic Adaptive Inference Parsing Text "
+            + "Representations Probabilistic Large Scale Metadata Citation Recognition Unsupervised").split(" ");
+    private static final String[] TITLE_GLUE = {"for", "of", "with", "in", "and", "via"};
+    private static final String[] FIRST_NAMES = ("James Maria Wei Priya Ahmed Laura Kenji Sofia Daniel Elena Omar "
+            + "Hannah Lucas Mei Ravi Clara Pavel Aisha Martin Yuki").split(" ");
+    private static final String[] LAST_NAMES = ("Anderson Fischer Nakamura Sharma Rossi Kowalski Haddad Martinez "
+            + "Johansson Chen Novak Okafor Dubois Larsen Moreau Petrov Silva Tanaka Weber Gupta").split(" ");
+    private static final String[] KEYWORDS = ("information extraction, document analysis, metadata, pdf parsing, "
+            + "layout analysis, machine learning, digital libraries, text mining, citation analysis, "
+            + "natural language processing, table detection, scholarly documents").split(", ");
+    private static final String[] SECTIONS = ("Introduction, Related Work, Background, Method, Experimental Setup, "
+            + "Results, Discussion, Limitations, Conclusion").split(", ");
+
+    private int columns = 1;
+    private int pages = 4;
+    private PDFont headingFont = PDType1Font.HELVETICA_BOLD;
+    private PDFont bodyFont = PDType1Font.TIMES_ROMAN;
+    private boolean runningHeaders = true;
+    private float glyphDensity = 1;
+    private boolean linearized = false;
+    private boolean metadata = false;
+
+    public void setColumns(int columns)
+    {
+        this.columns = Math.max(1, columns);
+    }
+
+    public void setPages(int pages)
+    {
+        this.pages = Math.max(1, pages);
+    }
+
+    public void setFonts(PDFont headingFont, PDFont bodyFont)
+    {
+        this.headingFont = headingFont;
+        this.bodyFont = bodyFont;
+    }
+
+    /**
+     * Adds a running header to every page and a page number to its foot, both outside the text area.
+     */
+    public void setRunningHeaders(boolean runningHeaders)
+    {
+        this.runningHeaders = runningHeaders;
+    }
+
+    /**
+     * Scales the amount of text per page: the body font is 10pt divided by the density, so a density of 2 puts
+     * about four times the glyphs on a page.
+     */
+    public void setGlyphDensity(float glyphDensity)
+    {
+        this.glyphDensity = glyphDensity;
+    }
+
+    /**
+     * Writes the pdf in linearized object order, the first page and what it needs at the start of the file.
+     */
+    public void setLinearized(boolean linearized)
+    {
+        this.linearized = linearized;
+    }
+
+    /**
+     * Declares the title, authors, abstract and keywords in the document information dictionary and in an XMP
+     * metadata packet, as publishers do.
+     */
+    public void setMetadata(boolean metadata)
+    {
+        this.metadata = metadata;
+    }
+
+    public SyntheticPaper generate(long seed) throws IOException
+    {
+        Random random = new Random(seed);
+        String title = title(random);
+        List<String> authors = authors(random);
+        String abstract_ = sentences(random, 5 + random.nextInt(3));
+        List<String> keywords = keywords(random);
+
+        Layout layout = new Layout();
+        layout.frontMatter(title, authors, affiliation(random));
+        layout.paragraph(headingFont, "Abstract", 0, BODY_FONT_SIZE);
+        layout.paragraph(bodyFont, abstract_, 0, 0);
+        layout.paragraph(bodyFont, "Keywords: " + join(keywords, ", "), 0, BODY_FONT_SIZE);
+        for (int section = 0; !layout.isFull(); section++)
+        {
+            layout.paragraph(headingFont, (section + 1) + " " + SECTIONS[section % SECTIONS.length], 0,
+                    BODY_FONT_SIZE * 1.5f);
+            for (int i = 0; i < 3 + random.nextInt(3) && !layout.isFull(); i++)
+                layout.paragraph(bodyFont, sentences(random, 4 + random.nextInt(5)), 12, 0);
+        }
+
+        byte[] pdf = layout.render(title, metadata ? new SyntheticPaper(title, authors, abstract_, keywords, pages,
+                null) : null);
+        if (linearized)
+            pdf = Linearizer.linearize(pdf);
+        return new SyntheticPaper(title, authors, abstract_, keywords, pages, pdf);
+    }
+
+    private String title(Random random)
+    {
+        StringBuilder sb = new StringBuilder(pick(random, TITLE_WORDS));
+        int words = 5 + random.nextInt(6);
+        for (int i = 1; i < words; i++)
+        {
+            sb.append(' ').append(i % 3 == 2 ? pick(random, TITLE_GLUE) : pick(random, TITLE_WORDS));
+        }
+        return sb.toString();
+    }
+
+    private List<String> authors(Random random)
+    {
+        List<String> authors = new ArrayList<String>();
+        int count = 1 + random.nextInt(4);
+        while (authors.size() < count)
+        {
+            String name = pick(random, FIRST_NAMES) + " " + pick(random, LAST_NAMES);
+            if (!authors.contains(name))
+                authors.add(name);
+        }
+        return authors;
+    }
+
+    private String affiliation(Random random)
+    {
+        return "Department of Computer Science, University of " + pick(random, LAST_NAMES);
+    }
+
+    private List<String> keywords(Random random)
+    {
+        List<String> keywords = new ArrayList<String>();
+        int count = 3 + random.nextInt(3);
+        while (keywords.size() < count)
+        {
+            String keyword = pick(random, KEYWORDS);
+            if (!keywords.contains(keyword))
+                keywords.add(keyword);
+        }
+        return keywords;
+    }
+
+    private String sentences(Random random, int count)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            if (i > 0) sb.append(' ');
+            int words = 10 + random.nextInt(12);
+            for (int j = 0; j < words; j++)
+            {
+                String word = pick(random, WORDS);
+                if (j == 0)
+                    word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+                else
+                    sb.append(' ');
+                sb.append(word);
+            }
+            sb.append('.');
+        }
+        return sb.toString();
+    }
+
+    private static String pick(Random random, String[] values)
+    {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String join(List<String> values, String separator)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String value : values)
+        {
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(value);
+        }
+        return sb.toString();
+    }
+
+    private static float width(PDFont font, float size, String text) throws IOException
+    {
+        return font.getStringWidth(text) / 1000 * size;
+    }
+
+    private static class Placed
+    {
+        private final PDFont font;
+        private final float size;
+        private final float x;
+        private final float y;
+        private final String text;
+
+        private Placed(PDFont font, float size, float x, float y, String text)
+        {
+            this.font = font;
+            this.size = size;
+            this.x = x;
+            this.y = y;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Flows paragraphs down the columns of the pages, line by line, until the last page is full.
+     */
+    private class Layout
+    {
+        private final float fontSize = BODY_FONT_SIZE / glyphDensity;
+        private final float leading = fontSize * 1.2f;
+        private final float columnWidth = (PAGE_WIDTH - 2 * MARGIN - (columns - 1) * COLUMN_GAP) / columns;
+        private final List<List<Placed>> placed = new ArrayList<List<Placed>>();
+        private int column = 0;
+        private float columnTop = TOP;
+        private float y = TOP;
+
+        private Layout()
+        {
+            placed.add(new ArrayList<Placed>());
+        }
+
+        private boolean isFull()
+        {
+            return placed.size() > pages;
+        }
+
+        private void frontMatter(String title, List<String> authors, String affiliation) throws IOException
+        {
+            float titleSize = 18;
+            for (String line : wrap(headingFont, titleSize, title, PAGE_WIDTH - 2 * MARGIN, 0))
+            {
+                y -= titleSize * 1.2f;
+                centered(headingFont, titleSize, line);
+            }
+            y -= 16;
+            String names = authors.size() == 1 ? authors.get(0)
+                    : join(authors.subList(0, authors.size() - 1), ", ") + " and " + authors.get(authors.size() - 1);
+            centered(bodyFont, 12, names);
+            y -= 14;
+            centered(bodyFont, 10, affiliation);
+            y -= 30;
+            columnTop = y;
+        }
+
+        private void centered(PDFont font, float size, String text) throws IOException
+        {
+            placed.get(0).add(new Placed(font, size, (PAGE_WIDTH - width(font, size, text)) / 2, y, text));
+        }
+
+        private void paragraph(PDFont font, String text, float indent, float spaceBefore) throws IOException
+        {
+            y -= spaceBefore;
+            List<String> lines = wrap(font, fontSize, text, columnWidth, indent);
+            for (int i = 0; i < lines.size() && !isFull(); i++)
+            {
+                if (y - leading < MARGIN)
+                    nextColumn();
+                if (isFull())
+                    return;
+                y -= leading;
+                float x = MARGIN + column * (columnWidth + COLUMN_GAP) + (i == 0 ? indent : 0);
+                placed.get(placed.size() - 1).add(new Placed(font, fontSize, x, y, lines.get(i)));
+            }
+        }
+
+        private void nextColumn()
+        {
+            if (++column == columns)
+            {
+                column = 0;
+                columnTop = TOP;
+                placed.add(new ArrayList<Placed>());
+            }
+            y = columnTop;
+        }
+
+        private List<String> wrap(PDFont font, float size, String text, float width, float indent)
+                throws IOException
+        {
+            List<String> lines = new ArrayList<String>();
+            StringBuilder line = new StringBuilder();
+            for (String word : text.split(" "))
+            {
+                String candidate = line.length() == 0 ? word : line + " " + word;
+                float available = lines.isEmpty() ? width - indent : width;
+                if (line.length() > 0 && width(font, size, candidate) > available)
+                {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                    line.append(word);
+                }
+                else
+                {
+                    line.setLength(0);
+                    line.append(candidate);
+                }
+            }
+            if (line.length() > 0)
+                lines.add(line.toString());
+            return lines;
+        }
+
+        /**
+         * @param described the paper to declare in the metadata, null for none.
+         */
+        private byte[] render(String title, SyntheticPaper described) throws IOException
+        {
+            PDDocument document = new PDDocument();
+            try
+            {
+                if (described != null)
+                    describe(document, described);
+                for (int i = 0; i < pages; i++)
+                {
+                    PDPage page = new PDPage();
+                    document.addPage(page);
+                    PDPageContentStream content = new PDPageContentStream(document, page);
+                    if (runningHeaders)
+                    {
+                        String header = i == 0 ? "Proceedings of the Workshop on Synthetic Documents" : title;
+                        draw(content, new Placed(bodyFont, 8, MARGIN, PAGE_HEIGHT - 32, header));
+                        String number = String.valueOf(i + 1);
+                        draw(content, new Placed(bodyFont, 8, (PAGE_WIDTH - width(bodyFont, 8, number)) / 2, 30,
+                                number));
+                    }
+                    for (Placed line : placed.get(i))
+                        draw(content, line);
+                    content.close();
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                document.save(out);
+                return out.toByteArray();
+            } catch (COSVisitorException e)
+            {
+                throw new IOException(e);
+            } catch (TransformerException e)
+            {
+                throw new IOException(e);
+            } finally
+            {
+                document.close();
+            }
+        }
+
+        private void describe(PDDocument document, SyntheticPaper paper) throws IOException, TransformerException
+        {
+            PDDocumentInformation info = document.getDocumentInformation();
+            info.setTitle(paper.getTitle());
+            info.setAuthor(join(paper.getAuthors(), "; "));
+            info.setSubject(paper.getAbstract());
+            info.setKeywords(join(paper.getKeywords(), ", "));
+
+            XMPMetadata xmp = new XMPMetadata();
+            XMPSchemaDublinCore dublinCore = xmp.addDublinCoreSchema();
+            dublinCore.setTitle(paper.getTitle());
+            for (String author : paper.getAuthors())
+                dublinCore.addCreator(author);
+            dublinCore.setDescription(paper.getAbstract());
+            for (String keyword : paper.getKeywords())
+                dublinCore.addSubject(keyword);
+            PDMetadata packet = new PDMetadata(document);
+            packet.importXMPMetadata(xmp);
+            document.getDocumentCatalog().setMetadata(packet);
+        }
+
+        private void draw(PDPageContentStream content, Placed line) throws IOException
+        {
+            content.beginText();
+            content.setFont(line.font, line.size);
+            content.moveTextPositionByAmount(line.x, line.y);
+            content.drawString(line.text);
+            content.endText();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package in.codehub.synthetic;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A generated pdf together with the title, authors, abstract and keywords it was generated from.
+ */
+public class SyntheticPaper
+{
+    private final String title;
+    private final List<String> authors;
+    private final String abstract_;
+    private final List<String> keywords;
+    private final int pageCount;
+    private final byte[] pdf;
+
+    SyntheticPaper(String title, List<String> authors, String abstract_, List<String> keywords, int pageCount,
+                   byte[] pdf)
+    {
+        this.title = title;
+        this.authors = Collections.unmodifiableList(authors);
+        this.abstract_ = abstract_;
+        this.keywords = Collections.unmodifiableList(keywords);
+        this.pageCount = pageCount;
+        this.pdf = pdf;
+    }
+
+    public String getTitle()
+    {
+        return title;
+    }
+
+    public List<String> getAuthors()
+    {
+        return authors;
+    }
+
+    public String getAbstract()
+    {
+        return abstract_;
+    }
+
+    public List<String> getKeywords()
+    {
+        return keywords;
+    }
+
+    public int getPageCount()
+    {
+        return pageCount;
+    }
+
+    public byte[] getPdf()
+    {
+        return pdf;
+    }
+
+    public void write(File file) throws IOException
+    {
+        OutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(pdf);
+        } finally
+        {
+            out.close();
+        }
+    }
+}
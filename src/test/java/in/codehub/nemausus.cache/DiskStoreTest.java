@@ -0,0 +1,80 @@
+package in.codehub.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DiskStoreTest
+{
+    private File directory;
+
+    @Before
+    public void init() throws IOException
+    {
+        directory = File.createTempFile("diskstore", "");
+        directory.delete();
+    }
+
+    @After
+    public void cleanUp()
+    {
+        for (File file : directory.listFiles())
+            file.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void storesAndReads() throws IOException
+    {
+        DiskStore store = new DiskStore(directory, 100);
+        assertNull(store.get("a"));
+        store.put("a", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, store.get("a"));
+        store.put("a", new byte[]{4});
+        assertArrayEquals(new byte[]{4}, store.get("a"));
+        assertEquals(1, store.getBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException
+    {
+        DiskStore store = new DiskStore(directory, 100);
+        store.put("a", new byte[40]);
+        store.put("b", new byte[40]);
+        store.get("a");
+        store.put("c", new byte[40]);
+        assertNull(store.get("b"));
+        assertEquals(40, store.get("a").length);
+        assertEquals(40, store.get("c").length);
+        assertEquals(80, store.getBytes());
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void skipsEntriesLargerThanTheStore() throws IOException
+    {
+        DiskStore store = new DiskStore(directory, 10);
+        store.put("a", new byte[11]);
+        assertNull(store.get("a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void reopensExistingEntries() throws IOException
+    {
+        DiskStore store = new DiskStore(directory, 100);
+        store.put("a", new byte[30]);
+        store.put("b", new byte[30]);
+        DiskStore reopened = new DiskStore(directory, 100);
+        assertEquals(2, reopened.size());
+        assertEquals(60, reopened.getBytes());
+        assertEquals(30, reopened.get("b").length);
+    }
+}
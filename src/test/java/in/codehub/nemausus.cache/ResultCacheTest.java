@@ -0,0 +1,42 @@
+package in.codehub.cache;
+
+import in.codehub.document.Document;
+import in.codehub.document.DocumentIterator;
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest
+{
+    @Test
+    public void parseAfterReadCopiesTheDocumentInMemory() throws Exception
+    {
+        byte[] pdf = new PaperGenerator().generate(4).getPdf();
+        ResultCache cache = new ResultCache(new PdfReader(1), PaperParser.getInstance(), 10, null, 0);
+
+        cache.read(new ByteArrayInputStream(pdf));
+        assertEquals(0, cache.getMemoryHits());
+        assertEquals(1, cache.getMisses());
+
+        Paper paper = cache.parse(new ByteArrayInputStream(pdf));
+        assertEquals(1, cache.getMemoryHits());
+        assertEquals(2, cache.getMisses());
+        Paper expected = PaperParser.getInstance().parse(new PdfReader(1).read(new ByteArrayInputStream(pdf)));
+        assertEquals(expected.getTitle(), paper.getTitle());
+        assertEquals(expected.getAuthors(), paper.getAuthors());
+        assertEquals(expected.getAbstract(), paper.getAbstract());
+
+        // the paper parser tagged a copy, the cached document is untouched.
+        Document cached = cache.read(new ByteArrayInputStream(pdf));
+        assertEquals(2, cache.getMemoryHits());
+        DocumentIterator lines = cached.iterator();
+        while (lines.hasNextLine())
+            assertNull(lines.nextLine().tag());
+    }
+}
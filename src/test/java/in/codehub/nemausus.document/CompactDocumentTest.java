@@ -0,0 +1,208 @@
+package in.codehub.document;
+
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.synthetic.PaperGenerator;
+import org.codehaus.jackson.annotate.JsonAutoDetect;
+import org.codehaus.jackson.annotate.JsonMethod;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactDocumentTest
+{
+    @Test
+    public void compactDocumentReadsAsTheOriginal() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(3);
+        generator.setColumns(2);
+        generator.setRunningHeaders(true);
+        Document document = new PdfReader(1).read(new ByteArrayInputStream(generator.generate(5).getPdf()));
+        Document compact = document.compact();
+
+        assertTrue(compact.isCompact());
+        assertSame(compact, compact.compact());
+        assertSameDocument(document, compact);
+
+        Paper expected = PaperParser.getInstance().parse(document);
+        Paper paper = PaperParser.getInstance().parse(compact);
+        assertEquals(expected.getTitle(), paper.getTitle());
+        assertEquals(expected.getAuthors(), paper.getAuthors());
+        assertEquals(expected.getAbstract(), paper.getAbstract());
+        assertEquals(expected.getKeywords(), paper.getKeywords());
+        assertSameDocument(document, compact);
+    }
+
+    @Test
+    public void textComesBackAsItWas()
+    {
+        String[] texts = {"", "plain", "caf\u00E9 \u2014 \uFB01le", "\uD835\uDC00 math", "lone \uD800 high",
+                "lone \uDC00 low", "\u0000\u007F\u0080\u07FF\u0800\uFFFF"};
+        Document document = new Document();
+        Page page = new Page(1, 612, 792);
+        Paragraph paragraph = new Paragraph();
+        for (int i = 0; i < texts.length; i++)
+            paragraph.addLine(new Line(texts[i], 12000000 + i, i, -i, 700 - i));
+        page.addParagraph(paragraph);
+        document.addPage(page);
+
+        List<Line> lines = document.compact().getPages().get(0).getParagraphs().get(0).getLines();
+        assertEquals(texts.length, lines.size());
+        for (int i = 0; i < texts.length; i++)
+        {
+            assertEquals(texts[i], lines.get(i).getText());
+            assertEquals(texts[i].length(), lines.get(i).length());
+            assertEquals(12000000 + i, lines.get(i).getFontSize());
+            assertEquals(-i, lines.get(i).getLastX());
+        }
+    }
+
+    @Test
+    public void manyRunsAndLargeCoordinates()
+    {
+        // more distinct runs than fit two byte ids and coordinates beyond a short.
+        Document document = new Document();
+        Page page = new Page(1, 612, 792);
+        Paragraph paragraph = new Paragraph();
+        for (int i = 0; i < 3000; i++)
+        {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 8; j++)
+                text.append("w").append(i * 8 + j).append(j % 2 == 0 ? " " : ", ");
+            paragraph.addLine(new Line(text.toString(), 1, i * 50, -i * 50, i));
+        }
+        page.addParagraph(paragraph);
+        document.addPage(page);
+
+        List<Line> lines = document.compact().getPages().get(0).getParagraphs().get(0).getLines();
+        for (int i = 0; i < lines.size(); i++)
+        {
+            Line line = paragraph.getLines().get(i);
+            assertEquals(line.getText(), lines.get(i).getText());
+            assertEquals(line.length(), lines.get(i).length());
+            assertEquals(line.getFirstX(), lines.get(i).getFirstX());
+            assertEquals(line.getLastX(), lines.get(i).getLastX());
+        }
+    }
+
+    @Test
+    public void onlyTagsChange()
+    {
+        Document document = new Document();
+        Page page = new Page(1, 612, 792);
+        Paragraph paragraph = new Paragraph();
+        paragraph.addLine(new Line("Header", 1, 0, 10, 20));
+        paragraph.addLine(new Line("Header", 1, 0, 10, 40));
+        page.addParagraph(paragraph);
+        document.addPage(page);
+        Document compact = document.compact();
+
+        Line line = compact.getPages().get(0).getParagraphs().get(0).getLines().get(1);
+        assertNull(line.tag());
+        line.setTag("title");
+        assertEquals("title", compact.getPages().get(0).getParagraphs().get(0).getLines().get(1).tag());
+        assertNull(compact.getPages().get(0).getParagraphs().get(0).getLines().get(0).tag());
+        assertNull(paragraph.getLines().get(1).tag());
+        try
+        {
+            compact.getPages().get(0).getParagraphs().get(0).addLine(line);
+            fail();
+        } catch (UnsupportedOperationException e)
+        {
+            // expected
+        }
+        try
+        {
+            compact.addPage(page);
+            fail();
+        } catch (UnsupportedOperationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void compactDocumentSerializesByField() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        Document document = new PdfReader(1).read(new ByteArrayInputStream(generator.generate(8).getPdf()));
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(JsonMethod.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(JsonMethod.FIELD, JsonAutoDetect.Visibility.ANY);
+
+        Document read = mapper.readValue(mapper.writeValueAsBytes(document.compact()), Document.class);
+        assertTrue(read.isCompact());
+        assertSameDocument(document, read);
+    }
+
+    @Test
+    public void copyOfACompactDocumentCanBeTagged() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        Document document = new PdfReader(1).read(new ByteArrayInputStream(generator.generate(3).getPdf()));
+        Document compact = document.compact();
+        Document copy = compact.copy();
+
+        assertFalse(copy.isCompact());
+        assertSameDocument(document, copy);
+        Line line = copy.getPages().get(0).getParagraphs().get(0).getLines().get(0);
+        line.setTag("title");
+        copy.addPage(new Page(copy.getPages().size() + 1, 612, 792));
+        assertNull(compact.getPages().get(0).getParagraphs().get(0).getLines().get(0).tag());
+        assertEquals(document.getPages().size(), compact.getPages().size());
+    }
+
+    static void assertSameDocument(Document expected, Document actual)
+    {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getContentFontSize(), actual.getContentFontSize());
+        assertEquals(expected.getLeftMargin(), actual.getLeftMargin());
+        assertEquals(expected.getRightMargin(), actual.getRightMargin());
+        assertEquals(expected.isTruncated(), actual.isTruncated());
+        assertEquals(expected.getPages().size(), actual.getPages().size());
+        for (int i = 0; i < expected.getPages().size(); i++)
+        {
+            Page page = expected.getPages().get(i);
+            Page actualPage = actual.getPages().get(i);
+            assertEquals(page.getSerialNo(), actualPage.getSerialNo());
+            assertEquals(page.getWidth(), actualPage.getWidth());
+            assertEquals(page.getHeight(), actualPage.getHeight());
+            assertEquals(page.getParagraphs().size(), actualPage.getParagraphs().size());
+            for (int j = 0; j < page.getParagraphs().size(); j++)
+            {
+                Paragraph paragraph = page.getParagraphs().get(j);
+                Paragraph actualParagraph = actualPage.getParagraphs().get(j);
+                assertEquals(paragraph.text(), actualParagraph.text());
+                assertEquals(paragraph.fontSize(), actualParagraph.fontSize());
+                assertEquals(paragraph.lineCount(), actualParagraph.lineCount());
+                for (int k = 0; k < paragraph.lineCount(); k++)
+                {
+                    Line line = paragraph.getLines().get(k);
+                    Line actualLine = actualParagraph.getLines().get(k);
+                    assertEquals(line.getText(), actualLine.getText());
+                    assertEquals(line.getFontSize(), actualLine.getFontSize());
+                    assertEquals(line.getFirstX(), actualLine.getFirstX());
+                    assertEquals(line.getLastX(), actualLine.getLastX());
+                    assertEquals(line.getY(), actualLine.getY());
+                    assertEquals(line.tag(), actualLine.tag());
+                }
+            }
+        }
+
+        DocumentIterator iterator = expected.iterator();
+        DocumentIterator actualIterator = actual.iterator();
+        while (iterator.hasNextLine())
+        {
+            assertTrue(actualIterator.hasNextLine());
+            assertEquals(iterator.nextLine().getText(), actualIterator.nextLine().getText());
+            assertEquals(iterator.currPage().getSerialNo(), actualIterator.currPage().getSerialNo());
+        }
+        assertFalse(actualIterator.hasNextLine());
+    }
+}
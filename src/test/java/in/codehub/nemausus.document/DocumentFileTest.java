@@ -0,0 +1,128 @@
+package in.codehub.document;
+
+import in.codehub.paperparser.Paper;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DocumentFileTest
+{
+    private File file;
+
+    @Before
+    public void init() throws IOException
+    {
+        file = File.createTempFile("documents", ".bin");
+    }
+
+    @After
+    public void cleanUp()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void documentsReadAsTheyWereWritten() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(3);
+        generator.setRunningHeaders(true);
+        List<Document> documents = new ArrayList<Document>();
+        DocumentFileWriter writer = new DocumentFileWriter(file);
+        for (int i = 0; i < 4; i++)
+        {
+            Document document = new PdfReader(1).read(new ByteArrayInputStream(generator.generate(i).getPdf()));
+            document.setId("paper-" + i);
+            documents.add(document);
+            // compact and plain documents are written alike.
+            writer.add(i % 2 == 0 ? document : document.compact());
+        }
+        writer.add(new Document());
+        documents.add(new Document());
+        writer.close();
+
+        DocumentFile documentFile = new DocumentFile(file);
+        try
+        {
+            assertEquals(documents.size(), documentFile.size());
+            for (int i = 0; i < documents.size(); i++)
+            {
+                Document document = documentFile.get(i);
+                assertTrue(document.isCompact());
+                CompactDocumentTest.assertSameDocument(documents.get(i), document);
+            }
+            for (int i = 0; i < 4; i++)
+            {
+                Paper expected = PaperParser.getInstance().parse(documents.get(i));
+                Paper paper = PaperParser.getInstance().parse(documentFile.getDocuments().get(i));
+                assertEquals(expected.getTitle(), paper.getTitle());
+                assertEquals(expected.getAuthors(), paper.getAuthors());
+                assertEquals(expected.getAbstract(), paper.getAbstract());
+            }
+        } finally
+        {
+            documentFile.close();
+        }
+    }
+
+    @Test
+    public void emptyFile() throws Exception
+    {
+        new DocumentFileWriter(file).close();
+        DocumentFile documentFile = new DocumentFile(file);
+        assertEquals(0, documentFile.size());
+        documentFile.close();
+    }
+
+    @Test
+    public void otherFilesAreRejected() throws Exception
+    {
+        DocumentFileWriter writer = new DocumentFileWriter(file);
+        writer.add(new Document("one"));
+        writer.close();
+        RandomAccessFile data = new RandomAccessFile(file, "rw");
+        try
+        {
+            data.seek(4);
+            data.writeInt(DocumentFile.VERSION + 1);
+        } finally
+        {
+            data.close();
+        }
+        assertRejected();
+
+        data = new RandomAccessFile(file, "rw");
+        try
+        {
+            data.writeInt(0x25504446);
+        } finally
+        {
+            data.close();
+        }
+        assertRejected();
+    }
+
+    private void assertRejected()
+    {
+        try
+        {
+            new DocumentFile(file).close();
+            fail();
+        } catch (IOException e)
+        {
+            // expected
+        }
+    }
+}
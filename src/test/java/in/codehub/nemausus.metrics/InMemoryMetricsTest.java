@@ -0,0 +1,71 @@
+package in.codehub.metrics;
+
+import in.codehub.document.Document;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryMetricsTest
+{
+    @Test
+    public void recordsReadAndParse() throws Exception
+    {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(3);
+        byte[] pdf = generator.generate(3).getPdf();
+
+        Document document = new PdfReader(1, null, metrics).read(new ByteArrayInputStream(pdf));
+        new PaperParser(metrics).parse(document);
+
+        assertEquals(1, metrics.getHistogram(Metrics.Stage.LOAD).getCount());
+        assertEquals(3, metrics.getHistogram(Metrics.Stage.PROCESS_STREAM).getCount());
+        assertEquals(3, metrics.getHistogram(Metrics.Stage.PARSE_PAGE).getCount());
+        assertEquals(3, metrics.getHistogram(Metrics.Stage.LISTENER).getCount());
+        assertEquals(1, metrics.getHistogram(Metrics.Stage.PAPER_PARSE).getCount());
+        assertEquals(3, metrics.getCount(Metrics.Counter.PAGES));
+        assertTrue(metrics.getCount(Metrics.Counter.GLYPHS) > 1000);
+        assertEquals(0, metrics.getCount(Metrics.Counter.SUPPRESSED_GLYPHS));
+
+        int lines = 0;
+        int paragraphs = 0;
+        for (Page page : document.getPages())
+        {
+            paragraphs += page.getParagraphs().size();
+            for (Paragraph paragraph : page.getParagraphs())
+                lines += paragraph.getLines().size();
+        }
+        assertEquals(lines, metrics.getCount(Metrics.Counter.LINES));
+        assertEquals(paragraphs, metrics.getCount(Metrics.Counter.PARAGRAPHS));
+    }
+
+    @Test
+    public void exposedThroughJmx() throws Exception
+    {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        metrics.increment(Metrics.Counter.PAGES, 5);
+        metrics.record(Metrics.Stage.PARSE_PAGE, 2000000);
+        ObjectName name = metrics.registerMBean("in.codehub:type=Metrics,name=test");
+        try
+        {
+            assertEquals(5L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "pages"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "parsePage.count"));
+            assertEquals(2000L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "parsePage.maxMicros"));
+            ManagementFactory.getPlatformMBeanServer().invoke(name, "reset", null, null);
+            assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "pages"));
+        } finally
+        {
+            metrics.unregisterMBean(name);
+        }
+    }
+}
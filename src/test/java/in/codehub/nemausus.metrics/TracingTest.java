@@ -0,0 +1,127 @@
+package in.codehub.metrics;
+
+import in.codehub.document.Document;
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.pdfreader.ReadLimitExceededException;
+import in.codehub.pdfreader.ReadLimits;
+import in.codehub.synthetic.PaperGenerator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TracingTest
+{
+    @Test
+    public void recordsDocumentPageAndPaperEvents() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(2);
+        File pdf = File.createTempFile("paper", ".pdf");
+        File dump = File.createTempFile("events", ".jfr");
+        Recording recording = new Recording();
+        try
+        {
+            generator.generate(5).write(pdf);
+            recording.enable("in.codehub.DocumentRead").withoutThreshold();
+            recording.enable("in.codehub.PageParse").withoutThreshold();
+            recording.enable("in.codehub.PaperParse").withoutThreshold();
+            recording.start();
+            Document document = new PdfReader(1).read(pdf);
+            document.setId(pdf.getName());
+            PaperParser.getInstance().parse(document);
+            recording.stop();
+            recording.dump(dump.toPath());
+
+            List<RecordedEvent> pages = new ArrayList<RecordedEvent>();
+            RecordedEvent read = null;
+            RecordedEvent paper = null;
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath()))
+            {
+                String name = event.getEventType().getName();
+                if (name.equals("in.codehub.DocumentRead"))
+                    read = event;
+                else if (name.equals("in.codehub.PageParse"))
+                    pages.add(event);
+                else if (name.equals("in.codehub.PaperParse"))
+                    paper = event;
+            }
+
+            assertEquals(pdf.getPath(), read.getString("documentId"));
+            assertEquals(pdf.length(), read.getLong("bytes"));
+            assertEquals(2, read.getInt("pages"));
+            assertTrue(read.getLong("glyphs") > 0);
+            assertEquals(2, pages.size());
+            long glyphs = 0;
+            long lines = 0;
+            for (int i = 0; i < pages.size(); i++)
+            {
+                assertEquals(pdf.getPath(), pages.get(i).getString("documentId"));
+                assertEquals(i + 1, pages.get(i).getInt("page"));
+                glyphs += pages.get(i).getLong("glyphs");
+                lines += pages.get(i).getLong("lines");
+            }
+            assertEquals(read.getLong("glyphs"), glyphs);
+            assertEquals(read.getLong("lines"), lines);
+            assertEquals(pdf.getName(), paper.getString("documentId"));
+            assertEquals(lines, paper.getLong("lines"));
+        } finally
+        {
+            recording.close();
+            pdf.delete();
+            dump.delete();
+        }
+    }
+
+    @Test
+    public void recordsFailedReads() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(2);
+        File pdf = File.createTempFile("paper", ".pdf");
+        File dump = File.createTempFile("events", ".jfr");
+        Recording recording = new Recording();
+        try
+        {
+            generator.generate(5).write(pdf);
+            recording.enable("in.codehub.DocumentRead").withoutThreshold();
+            recording.enable("in.codehub.PageParse").withoutThreshold();
+            recording.start();
+            ReadLimits limits = new ReadLimits();
+            limits.setMaxPageGlyphs(100);
+            try
+            {
+                new PdfReader(1, null, null, limits).read(pdf);
+                fail();
+            } catch (ReadLimitExceededException e)
+            {
+                // expected
+            }
+            recording.stop();
+            recording.dump(dump.toPath());
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+            assertEquals(2, events.size());
+            for (RecordedEvent event : events)
+            {
+                assertTrue(event.getBoolean("failed"));
+                assertTrue(event.getBoolean("truncated"));
+                assertEquals(pdf.getPath(), event.getString("documentId"));
+            }
+        } finally
+        {
+            recording.close();
+            pdf.delete();
+            dump.delete();
+        }
+    }
+}
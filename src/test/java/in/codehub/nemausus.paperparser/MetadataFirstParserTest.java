@@ -0,0 +1,114 @@
+package in.codehub.paperparser;
+
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.pdfreader.ReadSession;
+import in.codehub.synthetic.CorpusHarness;
+import in.codehub.synthetic.HarnessReport;
+import in.codehub.synthetic.PaperGenerator;
+import in.codehub.synthetic.SyntheticPaper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class MetadataFirstParserTest
+{
+    private PaperGenerator generator;
+    private PdfReader reader;
+    private MetadataFirstParser parser;
+
+    @Before
+    public void init()
+    {
+        generator = new PaperGenerator();
+        generator.setPages(2);
+        generator.setMetadata(true);
+        reader = new PdfReader(1);
+        parser = new MetadataFirstParser(PaperParser.getInstance());
+    }
+
+    @Test
+    public void trustworthyMetadataSkipsLayout() throws Exception
+    {
+        SyntheticPaper expected = generator.generate(7);
+        Paper paper = parse(expected.getPdf());
+        assertEquals(1, parser.getMetadataPapers());
+        assertEquals(expected.getTitle(), paper.getTitle());
+        assertEquals(expected.getAuthors(), paper.getAuthors());
+        assertEquals(expected.getAbstract(), paper.getAbstract());
+        assertEquals(expected.getKeywords(), paper.getKeywords());
+    }
+
+    @Test
+    public void fileNameTitleFallsThrough() throws Exception
+    {
+        SyntheticPaper expected = generator.generate(7);
+        Paper paper = parse(withInfoTitle(expected.getPdf(), "Microsoft Word - draft3.docx"));
+        assertEquals(1, parser.getLayoutPapers());
+        assertEquals(expected.getTitle(), paper.getTitle());
+    }
+
+    @Test
+    public void metadataOfAnotherPaperFallsThrough() throws Exception
+    {
+        SyntheticPaper expected = generator.generate(7);
+        Paper paper = parse(withInfoTitle(expected.getPdf(), "Sparse Attention for Long Document Retrieval"));
+        assertEquals(1, parser.getLayoutPapers());
+        assertEquals(expected.getTitle(), paper.getTitle());
+    }
+
+    @Test
+    public void harnessReportsTheMetadataFraction() throws Exception
+    {
+        CorpusHarness harness = new CorpusHarness(reader, parser);
+        HarnessReport report = harness.run(generator, 1, 4);
+        assertEquals(1.0, report.getMetadataFraction(), 0);
+        assertEquals(1.0, report.getTitleAccuracy(), 0);
+        assertEquals(1.0, report.getAbstractAccuracy(), 0);
+
+        generator.setMetadata(false);
+        report = harness.run(generator, 1, 4);
+        assertEquals(0.0, report.getMetadataFraction(), 0);
+        assertEquals(1.0, report.getTitleAccuracy(), 0);
+        assertEquals(0.5, parser.getMetadataFraction(), 0);
+    }
+
+    private Paper parse(byte[] pdf) throws IOException
+    {
+        ReadSession session = reader.open(new ByteArrayInputStream(pdf));
+        try
+        {
+            return parser.parse(session, ExtractionPlan.all());
+        } finally
+        {
+            session.close();
+        }
+    }
+
+    /**
+     * The pdf with only an information dictionary, whose title is replaced.
+     */
+    private static byte[] withInfoTitle(byte[] pdf, String title) throws IOException
+    {
+        PDDocument doc = PDDocument.load(new ByteArrayInputStream(pdf));
+        try
+        {
+            doc.getDocumentCatalog().setMetadata(null);
+            doc.getDocumentInformation().setTitle(title);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            doc.save(out);
+            return out.toByteArray();
+        } catch (Exception e)
+        {
+            throw new IOException(e);
+        } finally
+        {
+            doc.close();
+        }
+    }
+}
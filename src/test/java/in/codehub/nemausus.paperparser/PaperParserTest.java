@@ -0,0 +1,161 @@
+package in.codehub.paperparser;
+
+import in.codehub.document.Document;
+import in.codehub.pdfreader.PdfReader;
+import in.codehub.pdfreader.ReadSession;
+import in.codehub.synthetic.PaperGenerator;
+import in.codehub.synthetic.SyntheticPaper;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PaperParserTest
+{
+    private static final String TITLE = "A Paper Without Keywords";
+    private static final String BODY_TEXT =
+            "Every line of this page holds plain body text that runs across most of the width of the page.";
+
+    private PdfReader reader;
+    private PaperParser parser;
+
+    @Before
+    public void init()
+    {
+        reader = new PdfReader(1);
+        parser = PaperParser.getInstance();
+    }
+
+    @Test
+    public void titleOnlyPlanParsesOnePage() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(4);
+        SyntheticPaper expected = generator.generate(7);
+        ReadSession session = reader.open(new ByteArrayInputStream(expected.getPdf()));
+        try
+        {
+            Paper paper = parser.parse(session, new ExtractionPlan(PaperField.TITLE));
+            assertEquals(1, session.getParsedPages());
+            assertEquals(expected.getTitle(), paper.getTitle());
+            assertTrue(paper.getAuthors().isEmpty());
+            assertEquals("", paper.getAbstract());
+        } finally
+        {
+            session.close();
+        }
+    }
+
+    @Test
+    public void keywordsPlanStopsAtMaxPages() throws Exception
+    {
+        ReadSession session = reader.open(new ByteArrayInputStream(withoutKeywords(5)));
+        try
+        {
+            ExtractionPlan plan = new ExtractionPlan(3, PaperField.KEYWORDS);
+            Paper paper = parser.parse(session, plan);
+            assertEquals(plan.getMaxPages(), session.getParsedPages());
+            assertTrue(session.hasMorePages());
+            assertTrue(paper.getKeywords().isEmpty());
+        } finally
+        {
+            session.close();
+        }
+    }
+
+    @Test
+    public void reparsedPagesGiveTheSamePaperAsAFreshParse() throws Exception
+    {
+        byte[] pdf = withoutKeywords(5);
+        ExtractionPlan plan = new ExtractionPlan(3, PaperField.values());
+        Paper reparsed;
+        ReadSession session = reader.open(new ByteArrayInputStream(pdf));
+        try
+        {
+            // every added page re-parses the document, with the tags of the previous parse cleared.
+            reparsed = parser.parse(session, plan);
+            assertEquals(3, session.getParsedPages());
+        } finally
+        {
+            session.close();
+        }
+
+        Paper fresh;
+        session = reader.open(new ByteArrayInputStream(pdf));
+        try
+        {
+            Document document = session.readPages(3);
+            fresh = parser.parse(document, plan);
+        } finally
+        {
+            session.close();
+        }
+
+        assertEquals(TITLE, fresh.getTitle());
+        assertEquals(fresh.getTitle(), reparsed.getTitle());
+        assertEquals(fresh.getAuthors(), reparsed.getAuthors());
+        assertEquals(fresh.getAbstract(), reparsed.getAbstract());
+        assertEquals(fresh.getKeywords(), reparsed.getKeywords());
+    }
+
+    /**
+     * A title and lines of body text on every page, no abstract heading and no keyword section anywhere.
+     */
+    private static byte[] withoutKeywords(int pages) throws IOException
+    {
+        PDDocument document = new PDDocument();
+        try
+        {
+            for (int i = 0; i < pages; i++)
+            {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                PDPageContentStream content = new PDPageContentStream(document, page);
+                float y = 700;
+                if (i == 0)
+                {
+                    // centered over the body text, so it is not taken for a right aligned line.
+                    float x = 72 + (width(BODY_TEXT, 10) - width(TITLE, 18)) / 2;
+                    drawLine(content, 18, x, y, TITLE);
+                    y -= 48;
+                }
+                for (; y > 80; y -= 14)
+                    drawLine(content, 10, 72, y, BODY_TEXT);
+                content.close();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        } catch (COSVisitorException e)
+        {
+            throw new IOException(e);
+        } finally
+        {
+            document.close();
+        }
+    }
+
+    private static float width(String text, float size) throws IOException
+    {
+        return PDType1Font.HELVETICA.getStringWidth(text) / 1000 * size;
+    }
+
+    private static void drawLine(PDPageContentStream content, float size, float x, float y, String text)
+            throws IOException
+    {
+        content.beginText();
+        content.setFont(PDType1Font.HELVETICA, size);
+        content.moveTextPositionByAmount(x, y);
+        content.drawString(text);
+        content.endText();
+    }
+}
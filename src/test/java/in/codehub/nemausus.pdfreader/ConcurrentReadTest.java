@@ -0,0 +1,70 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static in.codehub.pdfreader.ParallelReadTest.assertSameDocument;
+
+public class ConcurrentReadTest
+{
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 3;
+
+    private static final List<byte[]> papers = new ArrayList<byte[]>();
+    private static final List<Document> expected = new ArrayList<Document>();
+
+    @BeforeClass
+    public static void generate() throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(3);
+        for (int seed = 0; seed < 4; seed++)
+        {
+            generator.setColumns(1 + seed % 2);
+            generator.setRunningHeaders(seed % 2 == 0);
+            byte[] paper = generator.generate(seed).getPdf();
+            papers.add(paper);
+            expected.add(new PdfReader(1).read(new ByteArrayInputStream(paper)));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void oneReaderServesManyThreads() throws Exception
+    {
+        // fewer engines than threads, so engines are handed from one read to another.
+        final PdfReader reader = new PdfReader(2);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<Document>> documents = new ArrayList<Future<Document>>();
+            for (int i = 0; i < THREADS * ROUNDS; i++)
+            {
+                final byte[] paper = papers.get(i % papers.size());
+                documents.add(executor.submit(new Callable<Document>()
+                {
+                    @Override
+                    public Document call() throws Exception
+                    {
+                        return reader.read(new ByteArrayInputStream(paper));
+                    }
+                }));
+            }
+            for (int i = 0; i < documents.size(); i++)
+                assertSameDocument(expected.get(i % papers.size()), documents.get(i).get());
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+}
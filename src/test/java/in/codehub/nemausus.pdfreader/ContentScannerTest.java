@@ -0,0 +1,150 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.util.PDFOperator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ContentScannerTest
+{
+    private static final String[] PROCESSED = {"BT", "ET", "cm", "Do", "Tf", "Tj", "TJ", "Td", "'", "\""};
+
+    @Test
+    public void operandsMatchThePdfBoxTokenizer() throws IOException
+    {
+        String content = "q 1 0 0 1 72 720 cm BT /F1 12 Tf 0 -14.5 Td (plain) Tj\n"
+                + "(esc\\(ap\\)ed \\101\\n\\\\ line\\\ncontinued) Tj <48 65 6c6C6f> Tj\n"
+                + "[(A) -120 (W) 33.5 <41>] TJ /Na#6De Do 2 3 (quoted) \" (nested (paren) string) ' ET Q\n"
+                + "% a comment Tj\n"
+                + "/Im1 Do true false null cm .5 -.25 +3 Td";
+        assertEquals(pdfBox(content), scanned(content));
+    }
+
+    @Test
+    public void skippedOperatorsAreCountedWithoutTheirOperands() throws IOException
+    {
+        String content = "0.5 0 0 RG 10 10 m 20 20 l 30 30 40 40 50 50 c S /Sh1 sh BT (x) Tj ET";
+        Recorder recorder = scan(content);
+        assertEquals(6, recorder.skipped);
+        assertEquals("BT [] ET [] Tj [COSString{x}] ", sorted(recorder.operators));
+    }
+
+    @Test
+    public void inlineImageDataIsSkipped() throws IOException
+    {
+        String content = "BT (before) Tj ET q BI /W 4 /H 1 /BPC 8 /CS /G ID \n(Tj) ET BT) EI Q BT (after) Tj ET";
+        Recorder recorder = scan(content);
+        assertEquals(6, recorder.operators.size());
+        assertEquals("BT [] BT [] ET [] ET [] Tj [COSString{after}] Tj [COSString{before}] ", sorted(recorder.operators));
+        assertEquals(3, recorder.skipped);
+    }
+
+    private static String pdfBox(String content) throws IOException
+    {
+        PDFStreamParser parser = new PDFStreamParser(new ByteArrayInputStream(content.getBytes("ISO-8859-1")), null);
+        parser.parse();
+        StringBuilder sb = new StringBuilder();
+        List<COSBase> operands = new ArrayList<COSBase>();
+        for (Object token : parser.getTokens())
+        {
+            if (token instanceof PDFOperator)
+            {
+                String name = ((PDFOperator) token).getOperation();
+                for (String processed : PROCESSED)
+                {
+                    if (processed.equals(name))
+                        sb.append(describe(name, operands));
+                }
+                operands.clear();
+            }
+            else
+            {
+                operands.add((COSBase) token);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String scanned(String content) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        for (String operator : scan(content).operators)
+            sb.append(operator);
+        return sb.toString();
+    }
+
+    private static Recorder scan(String content) throws IOException
+    {
+        Recorder recorder = new Recorder();
+        new ContentScanner(PROCESSED).scan(new ByteArrayInputStream(content.getBytes("ISO-8859-1")), recorder);
+        return recorder;
+    }
+
+    private static String sorted(List<String> operators)
+    {
+        List<String> copy = new ArrayList<String>(operators);
+        Collections.sort(copy);
+        StringBuilder sb = new StringBuilder();
+        for (String operator : copy)
+            sb.append(operator);
+        return sb.toString();
+    }
+
+    private static String describe(String name, List<COSBase> operands) throws IOException
+    {
+        StringBuilder sb = new StringBuilder(name).append(" [");
+        for (int i = 0; i < operands.size(); i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            describe(sb, operands.get(i));
+        }
+        return sb.append("] ").toString();
+    }
+
+    private static void describe(StringBuilder sb, COSBase operand) throws IOException
+    {
+        if (operand instanceof COSArray)
+        {
+            sb.append('[');
+            for (COSBase item : (COSArray) operand)
+            {
+                describe(sb, item);
+                sb.append(' ');
+            }
+            sb.append(']');
+        }
+        else if (operand instanceof COSNumber)
+            sb.append(((COSNumber) operand).floatValue());
+        else if (operand instanceof COSString)
+            sb.append("COSString{").append(new String(((COSString) operand).getBytes(), "ISO-8859-1")).append('}');
+        else
+            sb.append(operand);
+    }
+
+    private static class Recorder implements ContentScanner.Handler
+    {
+        private final List<String> operators = new ArrayList<String>();
+        private int skipped = 0;
+
+        @Override
+        public void operator(String name, List<COSBase> operands) throws IOException
+        {
+            operators.add(describe(name, operands));
+        }
+
+        @Override
+        public void skipped()
+        {
+            skipped++;
+        }
+    }
+}
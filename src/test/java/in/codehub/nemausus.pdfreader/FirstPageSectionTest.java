@@ -0,0 +1,134 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class FirstPageSectionTest
+{
+    @Test
+    public void linearizedStreamIsReadUpToTheFirstPageSection() throws IOException
+    {
+        byte[] pdf = paper(true);
+        CountingStream in = new CountingStream(pdf);
+        Document document = new PdfReader(1).readFirstPage(in);
+        assertEquals(1, document.getPages().size());
+        assertEquals(firstPage(pdf), text(document));
+        assertTrue(in.count < pdf.length / 2);
+    }
+
+    @Test
+    public void otherStreamsAreLoadedInFull() throws IOException
+    {
+        byte[] pdf = paper(false);
+        CountingStream in = new CountingStream(pdf);
+        assertEquals(firstPage(pdf), text(new PdfReader(1).readFirstPage(in)));
+        assertEquals(pdf.length, in.count);
+    }
+
+    @Test
+    public void incompleteFirstPageSectionIsLoadedInFull() throws IOException
+    {
+        byte[] pdf = paper(true);
+        // moves the end of the first page section into its last object.
+        String head = new String(pdf, 0, 200, "ISO-8859-1");
+        int end = head.indexOf("/E ") + 3;
+        int sectionEnd = Integer.parseInt(head.substring(end, end + 10));
+        byte[] offset = String.format("%010d", sectionEnd - 100).getBytes("ISO-8859-1");
+        System.arraycopy(offset, 0, pdf, end, offset.length);
+
+        CountingStream in = new CountingStream(pdf);
+        assertEquals(firstPage(pdf), text(new PdfReader(1).readFirstPage(in)));
+        assertEquals(pdf.length, in.count);
+    }
+
+    @Test
+    public void sectionLengthIsNotTrusted() throws IOException
+    {
+        for (long sectionEnd : new long[]{1999999999L, 9999999L})
+        {
+            // a first page section that ends far beyond the end of the stream.
+            byte[] pdf = paper(true);
+            String head = new String(pdf, 0, 200, "ISO-8859-1");
+            int end = head.indexOf("/E ") + 3;
+            byte[] offset = String.format("%010d", sectionEnd).getBytes("ISO-8859-1");
+            System.arraycopy(offset, 0, pdf, end, offset.length);
+
+            CountingStream in = new CountingStream(pdf);
+            assertEquals(firstPage(pdf), text(new PdfReader(1).readFirstPage(in)));
+            assertEquals(pdf.length, in.count);
+        }
+    }
+
+    private static byte[] paper(boolean linearized) throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setColumns(2);
+        generator.setPages(6);
+        generator.setLinearized(linearized);
+        return generator.generate(17).getPdf();
+    }
+
+    private static String firstPage(byte[] pdf) throws IOException
+    {
+        ReadSession session = new PdfReader(1).open(new ByteArrayInputStream(pdf));
+        try
+        {
+            return text(session.readPages(1));
+        } finally
+        {
+            session.close();
+        }
+    }
+
+    private static String text(Document document)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Page page : document.getPages())
+        {
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                for (Line line : paragraph.getLines())
+                    sb.append(line.getText()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static class CountingStream extends FilterInputStream
+    {
+        private int count = 0;
+
+        private CountingStream(byte[] bytes)
+        {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FontCacheTest
+{
+    @Test
+    public void aFontIsLentToOneUserAtATime() throws Exception
+    {
+        FontCache cache = new FontCache(1 << 20);
+        PDFont first = cache.acquire(font("Helvetica"));
+        PDFont second = cache.acquire(font("Helvetica"));
+        assertNotSame(first, second);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        cache.release(first);
+        assertSame(first, cache.acquire(font("Helvetica")));
+        assertEquals(1, cache.getHits());
+        assertNotSame(second, cache.acquire(font("Helvetica")));
+    }
+
+    @Test
+    public void releasedFontsAreKept() throws Exception
+    {
+        FontCache cache = new FontCache(1 << 20);
+        PDFont first = cache.acquire(font("Helvetica"));
+        PDFont second = cache.acquire(font("Helvetica"));
+        cache.release(first);
+        cache.release(second);
+        assertEquals(2, cache.size());
+
+        PDFont again = cache.acquire(font("Helvetica"));
+        assertTrue(again == first || again == second);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyReleasedFontsAreEvicted() throws Exception
+    {
+        // room for two fonts without streams.
+        FontCache cache = new FontCache(2048);
+        PDFont helvetica = cache.acquire(font("Helvetica"));
+        PDFont times = cache.acquire(font("Times-Roman"));
+        PDFont courier = cache.acquire(font("Courier"));
+        cache.release(helvetica);
+        cache.release(times);
+        cache.release(courier);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+
+        assertNotSame(helvetica, cache.acquire(font("Helvetica")));
+        assertSame(courier, cache.acquire(font("Courier")));
+    }
+
+    @Test
+    public void type3FontsAreNotCached() throws Exception
+    {
+        FontCache cache = new FontCache(1 << 20);
+        COSDictionary type3 = new COSDictionary();
+        type3.setItem(COSName.TYPE, COSName.FONT);
+        type3.setItem(COSName.SUBTYPE, COSName.TYPE3);
+        cache.release(cache.acquire(type3));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMisses());
+    }
+
+    private static COSDictionary font(String baseFont)
+    {
+        COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        font.setItem(COSName.BASE_FONT, COSName.getPDFName(baseFont));
+        return font;
+    }
+}
@@ -0,0 +1,65 @@
+package in.codehub.pdfreader;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FontSizeVoteTest
+{
+    @Test
+    public void countGoingNegativeWithinARun()
+    {
+        assertEquals(vote(new int[]{3, 1, 1, 2, 2}, new int[]{1, 2, 3, 3, 1}),
+                runVote(new int[]{3, 1, 1, 2, 2}, new int[]{1, 2, 3, 3, 1}));
+        assertEquals(2, runVote(new int[]{3, 1, 1, 2, 2}, new int[]{1, 2, 3, 3, 1}));
+    }
+
+    @Test
+    public void matchesTheVoteGlyphByGlyph()
+    {
+        Random random = new Random(7);
+        for (int line = 0; line < 100000; line++)
+        {
+            int runs = 1 + random.nextInt(8);
+            int[] fontSizes = new int[runs];
+            int[] glyphs = new int[runs];
+            for (int run = 0; run < runs; run++)
+            {
+                // few sizes, 0 included, so runs often repeat the current one.
+                fontSizes[run] = random.nextInt(4);
+                glyphs[run] = 1 + random.nextInt(random.nextBoolean() ? 4 : 40);
+            }
+            assertEquals(vote(fontSizes, glyphs), runVote(fontSizes, glyphs));
+        }
+    }
+
+    private static int runVote(int[] fontSizes, int[] glyphs)
+    {
+        FontSizeVote vote = new FontSizeVote();
+        vote.add(5, 3);
+        vote.clear();
+        for (int run = 0; run < fontSizes.length; run++)
+            vote.add(fontSizes[run], glyphs[run]);
+        return vote.get();
+    }
+
+    /**
+     * The vote of the reader before lines were handed over in runs, one glyph at a time.
+     */
+    private static int vote(int[] fontSizes, int[] glyphs)
+    {
+        int maxFontSize = 0;
+        int count = 0;
+        for (int run = 0; run < fontSizes.length; run++)
+        {
+            for (int glyph = 0; glyph < glyphs[run]; glyph++)
+            {
+                count += (fontSizes[run] == maxFontSize ? 1 : -1);
+                if (count < 0) maxFontSize = fontSizes[run];
+            }
+        }
+        return maxFontSize;
+    }
+}
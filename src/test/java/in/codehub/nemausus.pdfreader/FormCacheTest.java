@@ -0,0 +1,146 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.metrics.InMemoryMetrics;
+import in.codehub.metrics.Metrics;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObjectForm;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class FormCacheTest
+{
+    private static final String HEADER = "Running header";
+
+    @Test
+    public void formIsReplayedAtEachPosition() throws Exception
+    {
+        String[] pages = new String[4];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = "q 1 0 0 1 72 " + (700 - i * 10) + " cm /Hd Do Q BT /F1 12 Tf 72 400 Td (Body " + i + ") Tj ET";
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Document document = read(pdf("BT /F1 9 Tf 0 0 Td (" + HEADER + ") Tj ET", pages), metrics);
+
+        Line first = line(document.getPages().get(0), HEADER);
+        for (int i = 0; i < pages.length; i++)
+        {
+            Line header = line(document.getPages().get(i), HEADER);
+            assertEquals(first.getFirstX(), header.getFirstX());
+            assertEquals(first.getLastX(), header.getLastX());
+            assertEquals(first.getY() + i * 10, header.getY());
+            assertEquals(first.getFontSize(), header.getFontSize());
+            assertNotNull(line(document.getPages().get(i), "Body " + i));
+        }
+        assertEquals(3 * HEADER.length(), metrics.getCount(Metrics.Counter.REPLAYED_GLYPHS));
+    }
+
+    @Test
+    public void formIsInterpretedAgainWhenTheStateItInheritsChanges() throws Exception
+    {
+        // the form uses the font of the page that draws it, it is kept for both fonts.
+        String[] pages = {"BT /F1 12 Tf ET /Hd Do", "BT /F2 20 Tf ET /Hd Do", "BT /F1 12 Tf ET /Hd Do",
+                "BT /F2 20 Tf ET /Hd Do"};
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Document document = read(pdf("BT 72 700 Td (" + HEADER + ") Tj ET", pages), metrics);
+
+        int fontSize = line(document.getPages().get(0), HEADER).getFontSize();
+        assertNotEquals(fontSize, line(document.getPages().get(1), HEADER).getFontSize());
+        assertEquals(fontSize, line(document.getPages().get(2), HEADER).getFontSize());
+        assertEquals(2 * HEADER.length(), metrics.getCount(Metrics.Counter.REPLAYED_GLYPHS));
+    }
+
+    @Test
+    public void replayLeavesTheStateTheFormSets() throws Exception
+    {
+        // the form leaves its font set, the page text after it is drawn with that font.
+        String[] pages = new String[3];
+        for (int i = 0; i < pages.length; i++)
+            pages[i] = "BT /F2 14 Tf ET /Hd Do BT 72 " + (500 - i * 20) + " Td (After the form) Tj ET";
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Document document = read(pdf("/F1 9 Tf BT 72 700 Td (" + HEADER + ") Tj ET", pages), metrics);
+
+        for (Page page : document.getPages())
+            assertEquals(line(page, HEADER).getFontSize(), line(page, "After the form").getFontSize());
+        assertEquals(2 * HEADER.length(), metrics.getCount(Metrics.Counter.REPLAYED_GLYPHS));
+    }
+
+    private static Document read(byte[] pdf, Metrics metrics) throws Exception
+    {
+        return new PdfReader(1, null, metrics).read(new ByteArrayInputStream(pdf));
+    }
+
+    private static Line line(Page page, String text)
+    {
+        for (Paragraph paragraph : page.getParagraphs())
+        {
+            for (Line line : paragraph.getLines())
+            {
+                if (line.getText().trim().equals(text))
+                    return line;
+            }
+        }
+        fail("no line " + text);
+        return null;
+    }
+
+    /**
+     * Pages with the given content that share one form, /Hd.
+     */
+    private static byte[] pdf(String form, String... pages) throws Exception
+    {
+        PDDocument doc = new PDDocument();
+        try
+        {
+            COSDictionary fonts = new COSDictionary();
+            fonts.setItem(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+            fonts.setItem(COSName.getPDFName("F2"), PDType1Font.COURIER);
+            COSDictionary formResources = new COSDictionary();
+            formResources.setItem(COSName.FONT, fonts);
+            PDXObjectForm header = new PDXObjectForm(new PDStream(doc));
+            header.setBBox(new PDRectangle(612, 792));
+            header.setResources(new PDResources(formResources));
+            OutputStream out = header.getCOSStream().createUnfilteredStream();
+            out.write(form.getBytes("ISO-8859-1"));
+            out.close();
+
+            COSDictionary xObjects = new COSDictionary();
+            xObjects.setItem(COSName.getPDFName("Hd"), header.getCOSStream());
+            COSDictionary resources = new COSDictionary();
+            resources.setItem(COSName.FONT, fonts);
+            resources.setItem(COSName.XOBJECT, xObjects);
+            for (String content : pages)
+            {
+                PDPage page = new PDPage();
+                page.setResources(new PDResources(resources));
+                PDStream stream = new PDStream(doc);
+                out = stream.getStream().createUnfilteredStream();
+                out.write(content.getBytes("ISO-8859-1"));
+                out.close();
+                page.setContents(stream);
+                doc.addPage(page);
+            }
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            doc.save(pdf);
+            return pdf.toByteArray();
+        } finally
+        {
+            doc.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package in.codehub.pdfreader;
+
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.TextPosition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GlyphBufferTest
+{
+    @Test
+    public void textSurvivesGrowingWhileAGlyphIsAdded()
+    {
+        // 3000 glyphs fit the columns, their 4500 chars do not fit the text buffer.
+        assertText(new GlyphBuffer(new FontMetricsCache(), Integer.MAX_VALUE), glyphs(3000, 0), 1);
+    }
+
+    @Test
+    public void textSurvivesGrowingTheColumns()
+    {
+        GlyphBuffer buffer = new GlyphBuffer(new FontMetricsCache(), Integer.MAX_VALUE);
+        List<TextPosition> glyphs = glyphs(3000, 0);
+        buffer.addArticle(glyphs.subList(0, 1000), false);
+        buffer.addArticle(glyphs.subList(1000, 3000), false);
+        buffer.addArticle(glyphs(6000, 3000), false);
+        glyphs.addAll(glyphs(6000, 3000));
+        assertText(buffer, glyphs, 3);
+    }
+
+    @Test
+    public void textSurvivesGrowingOffHeap()
+    {
+        GlyphBuffer buffer = new GlyphBuffer(new FontMetricsCache(), 5000);
+        List<TextPosition> glyphs = glyphs(3000, 0);
+        buffer.addArticle(glyphs, false);
+        buffer.addArticle(glyphs(9000, 3000), false);
+        glyphs.addAll(glyphs(9000, 3000));
+        assertText(buffer, glyphs, 2);
+    }
+
+    @Test
+    public void clearStartsTheTextOver()
+    {
+        GlyphBuffer buffer = new GlyphBuffer(new FontMetricsCache(), Integer.MAX_VALUE);
+        buffer.addArticle(glyphs(5000, 0), false);
+        buffer.clear();
+        assertText(buffer, glyphs(3000, 1), 1);
+    }
+
+    private static void assertText(GlyphBuffer buffer, List<TextPosition> glyphs, int articles)
+    {
+        if (buffer.size() == 0)
+            buffer.addArticle(glyphs, false);
+        assertEquals(glyphs.size(), buffer.size());
+        assertEquals(articles, buffer.articleCount());
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < glyphs.size(); i++)
+        {
+            assertEquals(glyphs.get(i).getCharacter(), buffer.text(i).toString());
+            assertEquals(glyphs.get(i).getX(), buffer.plainX(i), 0);
+            assertEquals(glyphs.get(i).getY(), buffer.plainY(i), 0);
+            assertEquals(expected.length(), buffer.textStart(i));
+            expected.append(glyphs.get(i).getCharacter());
+            assertEquals(expected.length(), buffer.textEnd(i));
+        }
+        assertEquals(expected.toString(), buffer.text().duplicate().position(0).limit(expected.length()).toString());
+    }
+
+    /**
+     * Glyphs alternating between two chars and one char, from the given index on.
+     */
+    private static List<TextPosition> glyphs(int count, int from)
+    {
+        List<TextPosition> glyphs = new ArrayList<TextPosition>();
+        for (int i = from; i < count + from; i++)
+        {
+            String character = i % 2 == 0 ? "ab" : "c";
+            float x = 10 + i % 100 * 5;
+            float y = 10 + i / 100 * 12;
+            glyphs.add(new TextPosition(0, 612, 792, new Matrix(), x + 5, y, 10, 5, 3, character, null, 10, 10));
+        }
+        return glyphs;
+    }
+}
@@ -0,0 +1,135 @@
+package in.codehub.pdfreader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphGridTest
+{
+    private GlyphGrid grid;
+
+    @Before
+    public void init()
+    {
+        grid = new GlyphGrid();
+    }
+
+    @Test
+    public void suppressesSameCharacterWithinTolerance()
+    {
+        assertTrue(grid.addIfAbsent("a", 100f, 200f, 2f));
+        assertFalse(grid.addIfAbsent("a", 101.5f, 198.5f, 2f));
+        assertTrue(grid.addIfAbsent("b", 100f, 200f, 2f));
+        assertTrue(grid.addIfAbsent("a", 103f, 200f, 2f));
+    }
+
+    @Test
+    public void rangesAreHalfOpen()
+    {
+        assertTrue(grid.addIfAbsent("a", 10f, 10f, 1f));
+        // [x - tolerance, x + tolerance): an earlier glyph at x - tolerance matches, one at x + tolerance does not.
+        assertFalse(grid.addIfAbsent("a", 11f, 10f, 1f));
+        assertTrue(grid.addIfAbsent("a", 9f, 10f, 1f));
+    }
+
+    @Test
+    public void suppressesAcrossCellBorders()
+    {
+        assertTrue(grid.addIfAbsent("x", 7.9f, 15.9f, 1f));
+        assertFalse(grid.addIfAbsent("x", 8.1f, 16.1f, 1f));
+    }
+
+    @Test
+    public void clearForgetsGlyphs()
+    {
+        assertTrue(grid.addIfAbsent("a", 1f, 1f, 1f));
+        grid.clear();
+        assertEquals(0, grid.size());
+        assertTrue(grid.addIfAbsent("a", 1f, 1f, 1f));
+    }
+
+    @Test
+    public void trimForgetsTheGlyphsOfAGrownGrid()
+    {
+        for (int i = 0; i < 10000; i++)
+            assertTrue(grid.addIfAbsent("a", i * 8 + 1, 1f, 1f));
+        grid.trim();
+        assertEquals(0, grid.size());
+        for (int i = 0; i < 10000; i++)
+            assertTrue(grid.addIfAbsent("a", i * 8 + 1, 1f, 1f));
+        assertFalse(grid.addIfAbsent("a", 1f, 1f, 1f));
+    }
+
+    @Test(timeout = 10000)
+    public void lookupsEndAfterTheTableGrows()
+    {
+        // a glyph per cell until the table grows, then one more glyph in every cell, too far to be a duplicate.
+        for (int i = 0; i < 1000; i++)
+            assertTrue(grid.addIfAbsent("a", i * 8 + 1, 1f, 1f));
+        for (int i = 0; i < 1000; i++)
+            assertTrue(grid.addIfAbsent("a", i * 8 + 5, 1f, 1f));
+        assertEquals(2000, grid.size());
+    }
+
+    @Test
+    public void matchesTreeMapLookupOnRandomGlyphs()
+    {
+        Random random = new Random(42);
+        String[] characters = {"a", "b", "c", "fi", "é"};
+        for (int page = 0; page < 20; page++)
+        {
+            TreeMapGlyphIndex reference = new TreeMapGlyphIndex();
+            grid.clear();
+            for (int i = 0; i < 5000; i++)
+            {
+                String character = characters[random.nextInt(characters.length)];
+                float x = random.nextInt(600) + random.nextInt(4) * .25f;
+                float y = random.nextInt(800) + random.nextInt(4) * .25f;
+                float tolerance = random.nextInt(10) == 0 ? random.nextFloat() * 100 : random.nextFloat() * 4;
+                assertEquals(reference.addIfAbsent(character, x, y, tolerance),
+                        grid.addIfAbsent(character, x, y, tolerance));
+            }
+        }
+    }
+
+    @Test
+    public void matchesTreeMapLookupOnSpecialValues()
+    {
+        float[] values = {0f, -0f, 1f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MAX_VALUE,
+                -Float.MAX_VALUE, 1e30f};
+        for (float x : values)
+        {
+            for (float y : values)
+            {
+                for (float tolerance : new float[]{0f, 1f, Float.NaN, Float.POSITIVE_INFINITY})
+                {
+                    TreeMapGlyphIndex reference = new TreeMapGlyphIndex();
+                    grid.clear();
+                    for (float storedX : values)
+                    {
+                        for (float storedY : values)
+                        {
+                            reference.addIfAbsent("a", storedX, storedY, 0f);
+                            grid.addIfAbsent("a", storedX, storedY, 0f);
+                        }
+                    }
+                    boolean expected;
+                    try
+                    {
+                        expected = reference.addIfAbsent("a", x, y, tolerance);
+                    } catch (IllegalArgumentException e)
+                    {
+                        // TreeMap rejects ranges like [NaN, Infinity), they are empty for the grid.
+                        expected = true;
+                    }
+                    assertEquals(expected, grid.addIfAbsent("a", x, y, tolerance));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.synthetic.PaperGenerator;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.exceptions.COSVisitorException;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LazyLoadingTest
+{
+    private static byte[] paper;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void generate() throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setColumns(2);
+        generator.setPages(5);
+        paper = generator.generate(5).getPdf();
+    }
+
+    @Test
+    public void lazyFileReadMatchesEagerRead() throws IOException
+    {
+        File file = write(paper);
+        assertEquals(text(new PdfReader(1).read(file)), text(lazyReader().read(file)));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void lazyStreamReadMatchesEagerRead() throws IOException
+    {
+        Document eager = new PdfReader(1).read(new ByteArrayInputStream(paper));
+        Document lazy = lazyReader().read(new ByteArrayInputStream(paper));
+        assertEquals(5, lazy.getPages().size());
+        assertEquals(text(eager), text(lazy));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void pagesInheritResourcesFromThePageTree() throws IOException
+    {
+        byte[] inherited = inheritResources(paper);
+        Document eager = new PdfReader(1).read(new ByteArrayInputStream(inherited));
+        assertEquals(text(new PdfReader(1).read(new ByteArrayInputStream(paper))), text(eager));
+        assertEquals(text(eager), text(lazyReader().read(new ByteArrayInputStream(inherited))));
+    }
+
+    @Test
+    public void sessionParsesOnlyTheRequestedPages() throws IOException
+    {
+        ReadSession session = lazyReader().open(write(linkToLastPage(paper)));
+        try
+        {
+            assertEquals(5, session.getPageCount());
+            assertEquals(1, session.readPages(1).getPages().size());
+            assertLoaded((LazyDocument) session.getPdf(), 1);
+
+            // the link on the first page leads to the last one, which is not parsed with it.
+            PDPage first = (PDPage) LazyDocument.getPages(session.getPdf()).get(0);
+            COSDictionary link = (COSDictionary) ((COSArray) first.getCOSDictionary()
+                    .getDictionaryObject(COSName.ANNOTS)).getObject(0);
+            COSBase last = ((COSArray) link.getDictionaryObject(COSName.DEST)).get(0);
+            COSDictionary lastPage = (COSDictionary) ((COSObject) last).getObject();
+            assertNull(((COSObject) lastPage.getItem(COSName.CONTENTS)).getObject());
+
+            assertEquals(3, session.readPages(3).getPages().size());
+            assertLoaded((LazyDocument) session.getPdf(), 3);
+        } finally
+        {
+            session.close();
+        }
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    private static void assertLoaded(LazyDocument doc, int pages)
+    {
+        for (int i = 0; i < doc.getNumberOfPages(); i++)
+            assertEquals("page " + (i + 1), i < pages, doc.isLoaded(i));
+    }
+
+    private PdfReader lazyReader()
+    {
+        LoadOptions options = new LoadOptions();
+        options.setLazy(true);
+        options.setScratchDirectory(folder.getRoot());
+        return new PdfReader(1, null, null, null, options);
+    }
+
+    private File write(byte[] pdf) throws IOException
+    {
+        File file = folder.newFile("paper.pdf");
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            out.write(pdf);
+        } finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Moves the resources of the pages, which are all the same, to the root of the page tree.
+     */
+    private static byte[] inheritResources(byte[] pdf) throws IOException
+    {
+        PDDocument document = PDDocument.load(new ByteArrayInputStream(pdf));
+        try
+        {
+            @SuppressWarnings("unchecked")
+            List<PDPage> pages = document.getDocumentCatalog().getAllPages();
+            COSDictionary root = document.getDocumentCatalog().getPages().getDictionary();
+            root.setItem(COSName.RESOURCES, pages.get(0).getCOSDictionary().getItem(COSName.RESOURCES));
+            for (PDPage page : pages)
+                page.getCOSDictionary().removeItem(COSName.RESOURCES);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        } catch (COSVisitorException e)
+        {
+            throw new IOException(e);
+        } finally
+        {
+            document.close();
+        }
+    }
+
+    /**
+     * Adds a link to the last page on the first page.
+     */
+    private static byte[] linkToLastPage(byte[] pdf) throws IOException
+    {
+        PDDocument document = PDDocument.load(new ByteArrayInputStream(pdf));
+        try
+        {
+            @SuppressWarnings("unchecked")
+            List<PDPage> pages = document.getDocumentCatalog().getAllPages();
+            PDPageFitDestination destination = new PDPageFitDestination();
+            destination.setPage(pages.get(pages.size() - 1));
+            PDAnnotationLink link = new PDAnnotationLink();
+            link.setRectangle(new PDRectangle(100, 100));
+            link.setDestination(destination);
+            link.setPage(pages.get(0));
+            pages.get(0).getAnnotations().add(link);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return out.toByteArray();
+        } catch (COSVisitorException e)
+        {
+            throw new IOException(e);
+        } finally
+        {
+            document.close();
+        }
+    }
+
+    private static String text(Document document)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Page page : document.getPages())
+        {
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                for (Line line : paragraph.getLines())
+                    sb.append(line.getText()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
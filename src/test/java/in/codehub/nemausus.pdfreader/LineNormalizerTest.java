@@ -0,0 +1,98 @@
+package in.codehub.pdfreader;
+
+import in.codehub.synthetic.PaperGenerator;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.util.TextNormalize;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineNormalizerTest
+{
+    // ligatures, presentation forms, controls, format chars, private use, unassigned, surrogates and spaces.
+    private static final String ODD_CHARS = "\uFB01\uFB02\uFB00\uFE8D\uFDF2\u0627\uFE70\uFEFF\uFDFF\u0000\t\n\r"
+            + "\u007F\u0085\u00AD\u200B\u200E\u2028\uE000\uF8FF\u0378\uFFFF\uD835\uDC00\uD800\uDC00\uDBFF \u00A0"
+            + "\u3000\u00E9\u0301";
+
+    @Test
+    public void matchesTheRegexOverPaperLines() throws Exception
+    {
+        TextNormalize normalize = new TextNormalize("UTF-8");
+        LineNormalizer normalizer = new LineNormalizer(normalize);
+        List<String> lines = paperLines();
+        for (String line : lines)
+            assertEquals(line, expected(normalize, line), normalizer.toString(line));
+    }
+
+    @Test
+    public void matchesTheRegexOverOddText() throws Exception
+    {
+        TextNormalize normalize = new TextNormalize("UTF-8");
+        LineNormalizer normalizer = new LineNormalizer(normalize);
+        Random random = new Random(11);
+        for (int i = 0; i < 20000; i++)
+        {
+            StringBuilder line = new StringBuilder();
+            int length = random.nextInt(i < 100 ? 4 : 600);
+            for (int j = 0; j < length; j++)
+            {
+                line.append(random.nextInt(3) == 0 ? ODD_CHARS.charAt(random.nextInt(ODD_CHARS.length()))
+                        : (char) (' ' + random.nextInt(95)));
+            }
+            String text = line.toString();
+            assertEquals(text, expected(normalize, text), normalizer.toString(text));
+        }
+    }
+
+    private static String expected(TextNormalize normalize, String line)
+    {
+        return normalize.normalizePres(line).replaceAll("\\p{C}", "").trim();
+    }
+
+    /**
+     * The lines of generated papers as the parser passes them, before normalization.
+     */
+    private static List<String> paperLines() throws Exception
+    {
+        final List<String> lines = new ArrayList<String>();
+        PdfReader reader = new PdfReader(1);
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(3);
+        for (int columns = 1; columns <= 2; columns++)
+        {
+            generator.setColumns(columns);
+            PDDocument doc = PDDocument.load(new ByteArrayInputStream(generator.generate(columns).getPdf()));
+            PDFParser parser = reader.acquireParser();
+            try
+            {
+                parser.setListener(new PDFParserListener()
+                {
+                    @Override
+                    void newLine(TextLine line)
+                    {
+                        StringBuilder sb = new StringBuilder();
+                        for (int run = 0; run < line.runCount(); run++)
+                        {
+                            if (line.isSeparator(run))
+                                sb.append(' ');
+                            else
+                                line.appendText(run, sb);
+                        }
+                        lines.add(sb.toString());
+                    }
+                });
+                parser.parse(doc);
+            } finally
+            {
+                reader.releaseParser(parser);
+                doc.close();
+            }
+        }
+        return lines;
+    }
+}
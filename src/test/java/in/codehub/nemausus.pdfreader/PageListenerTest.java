@@ -0,0 +1,94 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Page;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageListenerTest
+{
+    private byte[] pdf;
+    private PdfReader reader;
+
+    @Before
+    public void init() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(4);
+        pdf = generator.generate(3).getPdf();
+        reader = new PdfReader(1);
+    }
+
+    @Test
+    public void pagesArePassedAsTheyAreParsed() throws Exception
+    {
+        final List<Page> pages = new ArrayList<Page>();
+        final List<Integer> fontSizes = new ArrayList<Integer>();
+        Document document = reader.read(new ByteArrayInputStream(pdf), new PageListener()
+        {
+            @Override
+            public boolean pageRead(Page page, Document document)
+            {
+                assertSame(page, document.getPages().get(document.getPages().size() - 1));
+                pages.add(page);
+                fontSizes.add(document.getContentFontSize());
+                return true;
+            }
+        });
+        Document full = reader.read(new ByteArrayInputStream(pdf));
+
+        assertEquals(pages, document.getPages());
+        assertEquals(full.getPages().size(), pages.size());
+        assertEquals(full.getContentFontSize(), (int) fontSizes.get(fontSizes.size() - 1));
+        assertEquals(full.getLeftMargin(), document.getLeftMargin());
+        assertEquals(full.getRightMargin(), document.getRightMargin());
+    }
+
+    @Test
+    public void stopsAfterTheFirstPage() throws Exception
+    {
+        final int[] calls = {0};
+        Document document = reader.read(new ByteArrayInputStream(pdf), new PageListener()
+        {
+            @Override
+            public boolean pageRead(Page page, Document document)
+            {
+                calls[0]++;
+                assertTrue(document.getContentFontSize() > 0);
+                return false;
+            }
+        });
+        assertEquals(1, calls[0]);
+        assertEquals(1, document.getPages().size());
+        assertEquals(1, document.getPages().get(0).getSerialNo());
+    }
+
+    @Test
+    public void sessionStopsWithItsListener() throws Exception
+    {
+        ReadSession session = reader.open(new ByteArrayInputStream(pdf));
+        try
+        {
+            session.setPageListener(new PageListener()
+            {
+                @Override
+                public boolean pageRead(Page page, Document document)
+                {
+                    return page.getSerialNo() < 2;
+                }
+            });
+            assertEquals(2, session.readAll().getPages().size());
+            assertFalse(session.hasMorePages());
+        } finally
+        {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class ParallelReadTest
+{
+    private static byte[] paper;
+
+    @BeforeClass
+    public static void generate() throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(9);
+        generator.setColumns(2);
+        generator.setRunningHeaders(true);
+        paper = generator.generate(7).getPdf();
+    }
+
+    @Test
+    public void parallelReadMatchesRead() throws Exception
+    {
+        Document expected = new PdfReader(1).read(new ByteArrayInputStream(paper));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            for (int parallelism = 1; parallelism <= 4; parallelism++)
+                assertSameDocument(expected, new PdfReader(4).readParallel(paper, executor, parallelism));
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void readFromATaskOfTheSameExecutor() throws Exception
+    {
+        Document expected = new PdfReader(1).read(new ByteArrayInputStream(paper));
+        final ExecutorService executor = Executors.newFixedThreadPool(1);
+        try
+        {
+            // the only thread of the executor reads, the workers it submits never start.
+            Document document = executor.submit(new Callable<Document>()
+            {
+                @Override
+                public Document call() throws Exception
+                {
+                    return new PdfReader(4).readParallel(paper, executor, 4);
+                }
+            }).get();
+            assertSameDocument(expected, document);
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    static void assertSameDocument(Document expected, Document actual)
+    {
+        assertEquals(expected.getContentFontSize(), actual.getContentFontSize());
+        assertEquals(expected.getLeftMargin(), actual.getLeftMargin());
+        assertEquals(expected.getRightMargin(), actual.getRightMargin());
+        assertEquals(expected.getTopMargin(), actual.getTopMargin());
+        assertEquals(expected.getBottomMargin(), actual.getBottomMargin());
+        assertEquals(expected.isTruncated(), actual.isTruncated());
+        assertEquals(expected.getPages().size(), actual.getPages().size());
+        for (int i = 0; i < expected.getPages().size(); i++)
+        {
+            Page page = expected.getPages().get(i);
+            Page actualPage = actual.getPages().get(i);
+            assertEquals(page.getSerialNo(), actualPage.getSerialNo());
+            assertEquals(page.getParagraphs().size(), actualPage.getParagraphs().size());
+            for (int j = 0; j < page.getParagraphs().size(); j++)
+            {
+                Paragraph paragraph = page.getParagraphs().get(j);
+                Paragraph actualParagraph = actualPage.getParagraphs().get(j);
+                assertEquals(paragraph.lineCount(), actualParagraph.lineCount());
+                for (int k = 0; k < paragraph.lineCount(); k++)
+                {
+                    Line line = paragraph.getLines().get(k);
+                    Line actualLine = actualParagraph.getLines().get(k);
+                    assertEquals(line.getText(), actualLine.getText());
+                    assertEquals(line.getFontSize(), actualLine.getFontSize());
+                    assertEquals(line.getFirstX(), actualLine.getFirstX());
+                    assertEquals(line.getLastX(), actualLine.getLastX());
+                    assertEquals(line.getY(), actualLine.getY());
+                }
+            }
+        }
+    }
+}
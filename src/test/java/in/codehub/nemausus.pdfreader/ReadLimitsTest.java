@@ -0,0 +1,302 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.synthetic.PaperGenerator;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.xobject.PDXObjectForm;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class ReadLimitsTest
+{
+    private static byte[] paper;
+    private static int glyphs;
+
+    @BeforeClass
+    public static void generate() throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(6);
+        paper = generator.generate(11).getPdf();
+        glyphs = countGlyphs(new PdfReader(1).read(new ByteArrayInputStream(paper)));
+    }
+
+    @Test
+    public void unlimitedReadIsComplete() throws IOException
+    {
+        Document document = read(new ReadLimits());
+        assertFalse(document.isTruncated());
+        assertEquals(6, document.getPages().size());
+        assertEquals(glyphs, countGlyphs(document));
+    }
+
+    @Test
+    public void pageGlyphBudgetFails() throws IOException
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxPageGlyphs(100);
+        try
+        {
+            read(limits);
+            fail();
+        } catch (ReadLimitExceededException e)
+        {
+            assertEquals(ReadLimits.Limit.PAGE_GLYPHS, e.getLimit());
+            assertEquals(1, e.getPageNo());
+        }
+    }
+
+    @Test
+    public void pageGlyphBudgetTruncatesEveryPage() throws IOException
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxPageGlyphs(500);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        Document document = read(limits);
+        assertTrue(document.isTruncated());
+        assertEquals(6, document.getPages().size());
+        assertTrue(countGlyphs(document) <= 6 * 500);
+    }
+
+    @Test
+    public void documentGlyphBudgetSkipsRemainingPages() throws IOException
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxDocumentGlyphs(glyphs / 3);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        Document document = read(limits);
+        assertTrue(document.isTruncated());
+        assertTrue(document.getPages().size() < 6);
+        assertTrue(countGlyphs(document) <= glyphs / 3);
+    }
+
+    @Test
+    public void documentGlyphBudgetIsSharedByParallelWorkers() throws Exception
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxDocumentGlyphs(glyphs / 3);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Document document = new PdfReader(3, null, null, limits).readParallel(paper, executor, 3);
+            assertTrue(document.isTruncated());
+            assertTrue(countGlyphs(document) <= glyphs / 3 + 2 * ReadLimits.CHECK_GLYPHS);
+
+            limits.setAction(ReadLimits.Action.FAIL);
+            try
+            {
+                new PdfReader(3, null, null, limits).readParallel(paper, executor, 3);
+                fail();
+            } catch (ReadLimitExceededException e)
+            {
+                assertEquals(ReadLimits.Limit.DOCUMENT_GLYPHS, e.getLimit());
+            }
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void documentDeadlineIsSharedByParallelWorkers() throws Exception
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(40);
+        generator.setGlyphDensity(3);
+        ReadLimits limits = new ReadLimits();
+        limits.setDocumentDeadlineMillis(1);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            Document document = new PdfReader(4, null, null, limits)
+                    .readParallel(generator.generate(1).getPdf(), executor, 4);
+            assertTrue(document.isTruncated());
+            assertTrue(document.getPages().size() < 40);
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void pageMemoryBudget() throws IOException
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxPageBytes(2000 * ReadLimits.BYTES_PER_GLYPH);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        Document document = read(limits);
+        assertTrue(document.isTruncated());
+        assertEquals(6, document.getPages().size());
+    }
+
+    @Test
+    public void documentDeadlineStopsReading() throws IOException
+    {
+        PaperGenerator generator = new PaperGenerator();
+        generator.setPages(40);
+        generator.setGlyphDensity(3);
+        ReadLimits limits = new ReadLimits();
+        limits.setDocumentDeadlineMillis(1);
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        Document document = new PdfReader(1, null, null, limits)
+                .read(new ByteArrayInputStream(generator.generate(1).getPdf()));
+        assertTrue(document.isTruncated());
+        assertTrue(document.getPages().size() < 40);
+    }
+
+    @Test
+    public void selfDrawingFormStops() throws Exception
+    {
+        ReadLimits limits = new ReadLimits();
+        limits.setMaxFormDepth(8);
+        try
+        {
+            new PdfReader(1, null, null, limits).read(new ByteArrayInputStream(selfDrawingForm()));
+            fail();
+        } catch (ReadLimitExceededException e)
+        {
+            assertEquals(ReadLimits.Limit.FORM_DEPTH, e.getLimit());
+        }
+
+        limits.setAction(ReadLimits.Action.TRUNCATE);
+        Document document = new PdfReader(1, null, null, limits).read(new ByteArrayInputStream(selfDrawingForm()));
+        assertTrue(document.isTruncated());
+        assertEquals(1, document.getPages().size());
+    }
+
+    @Test
+    public void reachedBudgetsStopTheStreamWithoutLogging() throws Exception
+    {
+        final List<LogRecord> logged = new ArrayList<LogRecord>();
+        Handler handler = new Handler()
+        {
+            @Override
+            public void publish(LogRecord record)
+            {
+                logged.add(record);
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        Logger logger = Logger.getLogger("org.apache.pdfbox");
+        logger.addHandler(handler);
+        try
+        {
+            ReadLimits limits = new ReadLimits();
+            limits.setMaxPageGlyphs(100);
+            limits.setAction(ReadLimits.Action.TRUNCATE);
+            Document document = read(limits);
+            assertTrue(document.isTruncated());
+            assertTrue(countGlyphs(document) <= 6 * (100 + ReadLimits.CHECK_GLYPHS));
+
+            limits = new ReadLimits();
+            limits.setMaxFormDepth(8);
+            limits.setAction(ReadLimits.Action.TRUNCATE);
+            assertTrue(new PdfReader(1, null, null, limits).read(new ByteArrayInputStream(selfDrawingForm()))
+                    .isTruncated());
+            limits.setAction(ReadLimits.Action.FAIL);
+            try
+            {
+                new PdfReader(1, null, null, limits).read(new ByteArrayInputStream(selfDrawingForm()));
+                fail();
+            } catch (ReadLimitExceededException e)
+            {
+                assertEquals(ReadLimits.Limit.FORM_DEPTH, e.getLimit());
+            }
+        } finally
+        {
+            logger.removeHandler(handler);
+        }
+        assertEquals(0, logged.size());
+    }
+
+    private static Document read(ReadLimits limits) throws IOException
+    {
+        return new PdfReader(1, null, null, limits).read(new ByteArrayInputStream(paper));
+    }
+
+    private static int countGlyphs(Document document)
+    {
+        int count = 0;
+        for (in.codehub.document.Page page : document.getPages())
+        {
+            for (in.codehub.document.Paragraph paragraph : page.getParagraphs())
+            {
+                for (in.codehub.document.Line line : paragraph.getLines())
+                    count += line.length();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A page that draws a form that writes a word and then draws itself.
+     */
+    private static byte[] selfDrawingForm() throws Exception
+    {
+        PDDocument doc = new PDDocument();
+        try
+        {
+            PDXObjectForm form = new PDXObjectForm(new PDStream(doc));
+            form.setBBox(new PDRectangle(612, 792));
+            COSDictionary fonts = new COSDictionary();
+            fonts.setItem(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+            COSDictionary xObjects = new COSDictionary();
+            xObjects.setItem(COSName.getPDFName("Fm1"), form.getCOSStream());
+            COSDictionary resources = new COSDictionary();
+            resources.setItem(COSName.FONT, fonts);
+            resources.setItem(COSName.XOBJECT, xObjects);
+            form.setResources(new PDResources(resources));
+            OutputStream out = form.getCOSStream().createUnfilteredStream();
+            out.write("BT /F1 12 Tf 72 700 Td (loop) Tj ET /Fm1 Do".getBytes("ISO-8859-1"));
+            out.close();
+
+            PDPage page = new PDPage();
+            page.setResources(new PDResources(resources));
+            PDStream content = new PDStream(doc);
+            out = content.getStream().createUnfilteredStream();
+            out.write("/Fm1 Do".getBytes("ISO-8859-1"));
+            out.close();
+            page.setContents(content);
+            doc.addPage(page);
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+            doc.save(pdf);
+            return pdf.toByteArray();
+        } finally
+        {
+            doc.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package in.codehub.pdfreader;
+
+import in.codehub.document.Document;
+import in.codehub.document.Line;
+import in.codehub.document.Page;
+import in.codehub.document.Paragraph;
+import in.codehub.synthetic.PaperGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.*;
+
+public class TextSinkTest
+{
+    private PaperGenerator generator;
+    private PdfReader reader;
+
+    @Before
+    public void init()
+    {
+        generator = new PaperGenerator();
+        generator.setPages(3);
+        reader = new PdfReader(1);
+    }
+
+    @Test
+    public void textIsTheTextOfTheDocument() throws Exception
+    {
+        for (int columns = 1; columns <= 2; columns++)
+        {
+            generator.setColumns(columns);
+            byte[] pdf = generator.generate(columns).getPdf();
+            String expected = text(reader.read(new ByteArrayInputStream(pdf)));
+
+            StringBuilder builder = new StringBuilder();
+            reader.readText(new ByteArrayInputStream(pdf), builder);
+            assertEquals(expected, builder.toString());
+
+            StringWriter writer = new StringWriter();
+            reader.readText(new ByteArrayInputStream(pdf), writer);
+            assertEquals(expected, writer.toString());
+
+            CharBuffer buffer = CharBuffer.allocate(expected.length());
+            reader.readText(new ByteArrayInputStream(pdf), buffer);
+            buffer.flip();
+            assertEquals(expected, buffer.toString());
+        }
+    }
+
+    @Test
+    public void outputErrorStopsTheRead() throws Exception
+    {
+        byte[] pdf = generator.generate(1).getPdf();
+        final int[] writes = {0};
+        Writer failing = new Writer()
+        {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException
+            {
+                writes[0]++;
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+        try
+        {
+            reader.readText(new ByteArrayInputStream(pdf), failing);
+            fail();
+        } catch (IOException e)
+        {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertEquals(1, writes[0]);
+    }
+
+    @Test
+    public void fullCharBufferFailsTheRead() throws Exception
+    {
+        byte[] pdf = generator.generate(1).getPdf();
+        String expected = text(reader.read(new ByteArrayInputStream(pdf)));
+        CharBuffer buffer = CharBuffer.allocate(expected.length() / 2);
+        try
+        {
+            reader.readText(new ByteArrayInputStream(pdf), buffer);
+            fail();
+        } catch (IOException e)
+        {
+            assertTrue(e.getCause() instanceof BufferOverflowException);
+        }
+        buffer.flip();
+        assertTrue(expected.startsWith(buffer.toString()));
+    }
+
+    /**
+     * The lines of the document a row each with a blank row between paragraphs.
+     */
+    private static String text(Document document)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Page page : document.getPages())
+        {
+            for (Paragraph paragraph : page.getParagraphs())
+            {
+                if (sb.length() > 0)
+                    sb.append('\n');
+                for (Line line : paragraph.getLines())
+                    sb.append(line.getText()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package in.codehub.pdfreader;
+
+import java.util.*;
+
+/**
+ * The duplicate glyph lookup PDFParser used before GlyphGrid, the reference GlyphGridTest compares it against.
+ */
+class TreeMapGlyphIndex
+{
+    private Map<String, TreeMap<Float, TreeSet<Float>>> characterListMapping =
+            new HashMap<String, TreeMap<Float, TreeSet<Float>>>();
+
+    boolean addIfAbsent(String textCharacter, float textX, float textY, float tolerance)
+    {
+        TreeMap<Float, TreeSet<Float>> sameTextCharacters = characterListMapping.get(textCharacter);
+        if (sameTextCharacters == null)
+        {
+            sameTextCharacters = new TreeMap<Float, TreeSet<Float>>();
+            characterListMapping.put(textCharacter, sameTextCharacters);
+        }
+
+        SortedMap<Float, TreeSet<Float>> xMatches =
+                sameTextCharacters.subMap(textX - tolerance, textX + tolerance);
+        for (TreeSet<Float> xMatch : xMatches.values())
+        {
+            SortedSet<Float> yMatches =
+                    xMatch.subSet(textY - tolerance, textY + tolerance);
+            if (!yMatches.isEmpty())
+            {
+                return false;
+            }
+        }
+
+        TreeSet<Float> ySet = sameTextCharacters.get(textX);
+        if (ySet == null)
+        {
+            ySet = new TreeSet<Float>();
+            sameTextCharacters.put(textX, ySet);
+        }
+        ySet.add(textY);
+        return true;
+    }
+
+    void clear()
+    {
+        characterListMapping.clear();
+    }
+}
@@ -0,0 +1,247 @@
+package in.codehub.pipeline;
+
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class BatchPipelineTest
+{
+    private static final int FILES = 100;
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test(timeout = 10000)
+    public void loaderFailuresAreReported() throws Exception
+    {
+        BatchPipeline<String, String> pipeline = pipeline(new BatchPipeline.Loader<String>()
+        {
+            @Override
+            public String load(File file) throws IOException
+            {
+                if (index(file) % 3 == 0)
+                    throw new IOException("cannot load " + file);
+                return file.getName();
+            }
+        }, new Upper());
+
+        BatchReport report = pipeline.run(files(FILES));
+
+        assertEquals(66, report.getSucceeded());
+        assertEquals(34, report.getFailed());
+        assertEquals(66, written.size());
+        for (File file : report.getFailures().keySet())
+        {
+            assertEquals(0, index(file) % 3);
+            assertTrue(report.getFailures().get(file) instanceof IOException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void processorFailuresAreReported() throws Exception
+    {
+        BatchPipeline<String, String> pipeline = pipeline(new Name(), new BatchPipeline.Processor<String, String>()
+        {
+            @Override
+            public String process(File file, String source)
+            {
+                // not an IOException, every Throwable is caught.
+                if (index(file) % 2 == 1)
+                    throw new IllegalStateException("cannot process " + file);
+                return source.toUpperCase();
+            }
+        });
+
+        BatchReport report = pipeline.run(files(FILES));
+
+        assertEquals(50, report.getSucceeded());
+        assertEquals(50, report.getFailed());
+        assertEquals(50, written.size());
+        for (File file : report.getFailures().keySet())
+        {
+            assertEquals(1, index(file) % 2);
+            assertTrue(report.getFailures().get(file) instanceof IllegalStateException);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void everyFileIsWritten() throws Exception
+    {
+        BatchReport report = pipeline(new Name(), new Upper()).run(files(FILES));
+
+        assertEquals(FILES, report.getSucceeded());
+        assertEquals(0, report.getFailed());
+        assertEquals(FILES, written.size());
+        assertTrue(written.contains("F42"));
+    }
+
+    @Test(timeout = 10000)
+    public void emptyInput() throws Exception
+    {
+        BatchReport report = pipeline(new Name(), new Upper()).run(Collections.<File>emptyList());
+
+        assertEquals(0, report.getSucceeded());
+        assertEquals(0, report.getFailed());
+        assertTrue(written.isEmpty());
+        assertTrue(report.getElapsedMillis() >= 0);
+    }
+
+    @Test(timeout = 10000)
+    public void interruptedRunStopsAndClosesWhatIsLeft() throws Exception
+    {
+        final List<Source> sources = Collections.synchronizedList(new ArrayList<Source>());
+        final CountDownLatch writing = new CountDownLatch(1);
+        final BatchPipeline<Source, String> pipeline = new BatchPipeline<Source, String>(
+                new BatchPipeline.Loader<Source>()
+                {
+                    @Override
+                    public Source load(File file)
+                    {
+                        Source source = new Source();
+                        sources.add(source);
+                        return source;
+                    }
+                },
+                new BatchPipeline.Processor<Source, String>()
+                {
+                    @Override
+                    public String process(File file, Source source)
+                    {
+                        source.processed = true;
+                        return file.getName();
+                    }
+                },
+                new BatchPipeline.Writer<String>()
+                {
+                    @Override
+                    public void write(File file, String result) throws IOException
+                    {
+                        writing.countDown();
+                        try
+                        {
+                            // stuck until the run is interrupted, the queues fill up behind it.
+                            Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e)
+                        {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                });
+        pipeline.setLoadThreads(4);
+        pipeline.setProcessThreads(3);
+        pipeline.setWriteThreads(2);
+        pipeline.setQueueCapacity(1);
+
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        Thread runner = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    pipeline.run(files(FILES));
+                } catch (InterruptedException e)
+                {
+                    interrupted.set(true);
+                }
+            }
+        };
+        runner.start();
+        writing.await();
+        Thread.sleep(200);
+        runner.interrupt();
+        runner.join();
+        assertTrue(interrupted.get());
+
+        while (stagesRunning())
+            Thread.sleep(10);
+        assertTrue(sources.size() < FILES);
+        for (Source source : sources)
+            assertTrue(source.processed != source.closed);
+    }
+
+    /**
+     * A pipeline with more threads than queue slots, so stages block on each other.
+     */
+    private BatchPipeline<String, String> pipeline(BatchPipeline.Loader<String> loader,
+                                                   BatchPipeline.Processor<String, String> processor)
+    {
+        BatchPipeline<String, String> pipeline = new BatchPipeline<String, String>(loader, processor,
+                new BatchPipeline.Writer<String>()
+                {
+                    @Override
+                    public void write(File file, String result)
+                    {
+                        written.add(result);
+                    }
+                });
+        pipeline.setLoadThreads(4);
+        pipeline.setProcessThreads(3);
+        pipeline.setWriteThreads(2);
+        pipeline.setQueueCapacity(1);
+        return pipeline;
+    }
+
+    private static List<File> files(int count)
+    {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < count; i++)
+            files.add(new File("f" + i));
+        return files;
+    }
+
+    private static int index(File file)
+    {
+        return Integer.parseInt(file.getName().substring(1));
+    }
+
+    private static boolean stagesRunning()
+    {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (thread.getName().startsWith("batch-"))
+                return true;
+        }
+        return false;
+    }
+
+    private static class Source implements Closeable
+    {
+        private volatile boolean processed;
+        private volatile boolean closed;
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    private static class Name implements BatchPipeline.Loader<String>
+    {
+        @Override
+        public String load(File file)
+        {
+            return file.getName();
+        }
+    }
+
+    private static class Upper implements BatchPipeline.Processor<String, String>
+    {
+        @Override
+        public String process(File file, String source)
+        {
+            return source.toUpperCase();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package in.codehub.synthetic;
+
+import in.codehub.paperparser.PaperParser;
+import in.codehub.pdfreader.PdfReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class PaperGeneratorTest
+{
+    private PaperGenerator generator;
+    private CorpusHarness harness;
+
+    @Before
+    public void init()
+    {
+        generator = new PaperGenerator();
+        generator.setPages(2);
+        harness = new CorpusHarness(new PdfReader(1), PaperParser.getInstance());
+    }
+
+    @Test
+    public void sameSeedSamePaper() throws IOException
+    {
+        SyntheticPaper first = generator.generate(42);
+        SyntheticPaper second = generator.generate(42);
+        assertEquals(first.getTitle(), second.getTitle());
+        assertEquals(first.getAuthors(), second.getAuthors());
+        assertEquals(first.getAbstract(), second.getAbstract());
+        assertEquals(first.getKeywords(), second.getKeywords());
+    }
+
+    @Test
+    public void writesRequestedPages() throws IOException
+    {
+        generator.setPages(3);
+        generator.setGlyphDensity(2);
+        SyntheticPaper paper = generator.generate(1);
+        assertEquals(3, new PdfReader(1).read(new ByteArrayInputStream(paper.getPdf())).getPages().size());
+    }
+
+    @Test
+    public void extractsOneColumnPapers() throws IOException
+    {
+        HarnessReport report = harness.run(generator, 1, 5);
+        assertEquals(5, report.getDocuments());
+        assertEquals(1.0, report.getTitleAccuracy(), 0);
+        assertEquals(1.0, report.getAuthorAccuracy(), 0);
+        assertEquals(1.0, report.getAbstractAccuracy(), 0);
+        assertEquals(1.0, report.getKeywordAccuracy(), 0);
+    }
+
+    @Test
+    public void extractsTwoColumnPapers() throws IOException
+    {
+        generator.setColumns(2);
+        HarnessReport report = harness.run(generator, 1, 5);
+        assertEquals(1.0, report.getTitleAccuracy(), 0);
+        assertEquals(1.0, report.getAuthorAccuracy(), 0);
+        assertEquals(1.0, report.getAbstractAccuracy(), 0);
+        assertEquals(1.0, report.getKeywordAccuracy(), 0);
+    }
+}